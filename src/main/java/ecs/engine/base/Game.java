@@ -1,5 +1,7 @@
 package ecs.engine.base;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.scene.Group;
@@ -29,6 +31,9 @@ public class Game {
   // Stage for the game
   private final Stage stage;
 
+  // Replay recording of the game
+  private GameReplayRecorder replayRecorder;
+
   // Time tracking for the game loop
   private static final double TIME_PER_FRAME = 1.0 / MAX_FRAME_RATE;
   private long lastLogicUpdateTime = System.nanoTime();
@@ -47,10 +52,9 @@ public class Game {
     setupCanvases(scene);
     GameScene.setInnerScene(scene);
 
-    // Set the stage
+    // Set the stage (it is shown when the game starts)
     stage.setTitle(TITLE);
     stage.setScene(scene);
-    stage.show();
   }
 
   private void setupCanvases(Scene scene) {
@@ -65,10 +69,25 @@ public class Game {
   }
 
   private void startGameLoop() {
+    lastLogicUpdateTime = System.nanoTime();
+    lastFixedUpdateTime = lastLogicUpdateTime;
+
     // Start the Logic loop
     Thread gameLoopThread = new Thread(() -> {
       while (true) {
         long beginTime = System.nanoTime();
+
+        if (GameScene.isDeterministic()) {
+          // The wall clock only decides when to tick, never how long a tick is
+          if (beginTime - lastFixedUpdateTime >= 1_000_000_000 * FIXED_TIME_STEP) {
+            GameScene.tick(FIXED_TIME_STEP);
+
+            // Advance by exactly one step so that the missed ticks are caught up
+            lastFixedUpdateTime += (long) (1_000_000_000 * FIXED_TIME_STEP);
+          }
+          continue;
+        }
+
         double elapsedTime = (beginTime - lastLogicUpdateTime) / 1_000_000_000.0;
         double fixedElapsedTime = (beginTime - lastFixedUpdateTime) / 1_000_000_000.0;
 
@@ -115,6 +134,74 @@ public class Game {
     startGameLoop();
   }
 
+  /**
+   * Run the game in the deterministic mode with the given seed.
+   * Every frame becomes a fixed tick of FIXED_TIME_STEP and every scene gets a seeded random generator.
+   * This should be called before the game starts.
+   * @param seed The seed of the simulation
+   */
+  public void setDeterministic(long seed) {
+    GameScene.setDeterministic(seed);
+  }
+
+  /**
+   * Record the inputs and seeds of every tick into the given replay file while the game runs.
+   * The game must be in the deterministic mode. The recording stops when the stage is closed.
+   * @param replayFile The file to write the replay into
+   */
+  public void recordReplay(Path replayFile) throws IOException {
+    if (!GameScene.isDeterministic()) {
+      throw new RuntimeException("Replays can only be recorded in the deterministic mode.");
+    }
+    stopRecording();
+
+    replayRecorder = new GameReplayRecorder(replayFile, GameScene.getDeterministicSeed(), FIXED_TIME_STEP);
+    GameScene.setReplayRecorder(replayRecorder);
+    stage.setOnHidden(e -> stopRecording());
+  }
+
+  /**
+   * Stop the replay recording and flush the replay file.
+   */
+  public void stopRecording() {
+    if (replayRecorder == null) {
+      return;
+    }
+    GameScene.setReplayRecorder(null);
+    try {
+      replayRecorder.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot close the replay file.", e);
+    }
+    replayRecorder = null;
+  }
+
+  /**
+   * Play back a replay file headlessly on the calling thread, through GameScene.tick().
+   * Nothing is shown or rendered, and the ticks are stepped as fast as possible instead of in real time.
+   * This needs neither a Game nor a Stage, so it runs without a display: set the headless size, add the scenes and
+   * set the start scene through GameScene before playing.
+   * @param replayFile The replay file to play
+   * @return The number of played ticks, the time they took and the state hash after the last tick
+   */
+  public static ReplayResult playReplay(Path replayFile) throws IOException {
+    long beginTime = System.nanoTime();
+    long beginTick = GameScene.getTickCount();
+    try (GameReplayPlayer player = new GameReplayPlayer(replayFile)) {
+      GameScene.setDeterministic(player.getSeed());
+      GameScene.setReplayPlayer(player);
+      try {
+        while (player.hasNextTick()) {
+          GameScene.tick(player.getFixedTimeStep());
+        }
+      } finally {
+        GameScene.setReplayPlayer(null);
+      }
+    }
+    return new ReplayResult(GameScene.getTickCount() - beginTick, System.nanoTime() - beginTime,
+        GameScene.getStateHash());
+  }
+
   /**
    * Add a game scene to the game
    * @param sceneClass The class of the scene to add
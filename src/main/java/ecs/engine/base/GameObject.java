@@ -3,7 +3,8 @@ package ecs.engine.base;
 import ecs.engine.component.Transform;
 import ecs.engine.tag.ObjectTag;
 import java.lang.reflect.Field;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -20,8 +21,8 @@ public abstract class GameObject {
   private final Map<Class<? extends GameComponent>, GameComponent> attachedComponents;
 
   protected GameObject() {
-    // Initialize gamecomponents
-    this.attachedComponents = new HashMap<>();
+    // Initialize gamecomponents (keep the attaching order so that the scene registers them in a stable order)
+    this.attachedComponents = new LinkedHashMap<>();
 
     // Transform component is a default component for every GameObject
     transform = attachComponent(Transform.class);
@@ -143,7 +144,8 @@ public abstract class GameObject {
    * Detach all components from the GameObject.
    */
   protected void detachAllComponents() { // This method is called in GameScene using reflection
-    for (GameComponent component : attachedComponents.values()) {
+    // Detaching removes the component from the map, so the components are copied first
+    for (GameComponent component : new ArrayList<>(attachedComponents.values())) {
       detachComponent(component.getClass());
     }
   }
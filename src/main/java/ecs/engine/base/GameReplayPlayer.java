@@ -0,0 +1,240 @@
+package ecs.engine.base;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import javafx.geometry.Point2D;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+/**
+ * Plays back a replay file written by the GameReplayRecorder.
+ * The file is memory mapped and decoded one tick at a time.
+ * A replay without the end marker, such as one cut off by a crash, ends where its input runs out, and a record that
+ * was only partly written is dropped.
+ */
+public class GameReplayPlayer implements AutoCloseable {
+
+  // readonly variables
+  private final long seed;
+  private final double fixedTimeStep;
+
+  // instance variables
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private long idleTicks;
+  private int pendingFlags;
+  private boolean hasPendingRecord;
+  private boolean ended;
+  private final ArrayList<KeyCode> keyTable = new ArrayList<>();
+  private final ArrayList<MouseButton> mouseTable = new ArrayList<>();
+
+  // The decoded fields of the pending record, applied when its tick begins
+  private KeyCode pendingKey;
+  private MouseButton pendingMouse;
+  private long pendingCursorX;
+  private long pendingCursorY;
+  private long[] pendingSeeds = new long[4];
+  private int pendingSeedCount;
+
+  // The decoded state of the current tick
+  private KeyCode key;
+  private MouseButton mouse;
+  private long cursorX;
+  private long cursorY;
+  private long[] seeds = new long[4];
+  private int seedCount;
+  private int seedIndex;
+
+  /**
+   * Open the given replay file.
+   *
+   * @param file The replay file
+   */
+  public GameReplayPlayer(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+    // Read the header
+    if (buffer.remaining() < Integer.BYTES + 1 + Long.BYTES + Double.BYTES
+        || buffer.getInt() != GameReplayRecorder.MAGIC) {
+      throw new IOException("Not a replay file: " + file);
+    }
+    byte version = buffer.get();
+    if (version != GameReplayRecorder.VERSION) {
+      throw new IOException("Unsupported replay version: " + version);
+    }
+    seed = buffer.getLong();
+    fixedTimeStep = buffer.getDouble();
+  }
+
+  /**
+   * Get the seed of the deterministic mode that the replay was recorded with.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Get the fixed time step of every tick.
+   */
+  public double getFixedTimeStep() {
+    return fixedTimeStep;
+  }
+
+  /**
+   * Whether there is another tick to play.
+   */
+  public boolean hasNextTick() {
+    readRecordHeader();
+    return idleTicks > 0 || hasPendingRecord;
+  }
+
+  /**
+   * Apply the recorded inputs of the next tick onto the scene.
+   */
+  void beginTick(GameScene scene) {
+    readRecordHeader();
+    seedCount = 0;
+    seedIndex = 0;
+
+    if (idleTicks > 0) {
+      idleTicks--;
+    } else if (hasPendingRecord) {
+      hasPendingRecord = false;
+      applyRecord();
+    }
+
+    scene.setInputs(key, mouse, new Point2D(
+        cursorX / GameReplayRecorder.CURSOR_PRECISION,
+        cursorY / GameReplayRecorder.CURSOR_PRECISION
+    ));
+  }
+
+  /**
+   * Get the next recorded seed of the current tick.
+   * If the replay has no more seeds in this tick (the run has diverged), the requested seed is used instead.
+   */
+  long nextSeed(long requestedSeed) {
+    if (seedIndex < seedCount) {
+      return seeds[seedIndex++];
+    }
+    return requestedSeed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void readRecordHeader() {
+    if (idleTicks > 0 || hasPendingRecord || ended) {
+      return;
+    }
+    if (!buffer.hasRemaining()) {
+      ended = true;
+      return;
+    }
+    try {
+      idleTicks = readVarLong();
+      pendingFlags = buffer.get() & 0xFF;
+      if ((pendingFlags & GameReplayRecorder.FLAG_END) != 0) {
+        ended = true;
+      } else {
+        // The whole record is decoded now, so that a record cut off in the middle is never applied
+        readRecordFields();
+        hasPendingRecord = true;
+      }
+    } catch (BufferUnderflowException e) {
+      // The input ran out before the end marker, the unchanged ticks before the cut are still played
+      ended = true;
+    }
+  }
+
+  private void readRecordFields() {
+    pendingKey = key;
+    pendingMouse = mouse;
+    pendingCursorX = cursorX;
+    pendingCursorY = cursorY;
+    pendingSeedCount = 0;
+    if ((pendingFlags & GameReplayRecorder.FLAG_KEY) != 0) {
+      pendingKey = readName(KeyCode.class, keyTable);
+    }
+    if ((pendingFlags & GameReplayRecorder.FLAG_MOUSE) != 0) {
+      pendingMouse = readName(MouseButton.class, mouseTable);
+    }
+    if ((pendingFlags & GameReplayRecorder.FLAG_CURSOR) != 0) {
+      pendingCursorX += unzigzag(readVarLong());
+      pendingCursorY += unzigzag(readVarLong());
+    }
+    if ((pendingFlags & GameReplayRecorder.FLAG_SEED) != 0) {
+      int count = (int) readVarLong();
+      if (pendingSeeds.length < count) {
+        pendingSeeds = new long[count];
+      }
+      for (int i = 0; i < count; i++) {
+        pendingSeeds[i] = unzigzag(readVarLong());
+      }
+      pendingSeedCount = count;
+    }
+  }
+
+  private void applyRecord() {
+    key = pendingKey;
+    mouse = pendingMouse;
+    cursorX = pendingCursorX;
+    cursorY = pendingCursorY;
+
+    // The seed arrays are swapped, so that neither is copied
+    long[] tickSeeds = pendingSeeds;
+    pendingSeeds = seeds;
+    seeds = tickSeeds;
+    seedCount = pendingSeedCount;
+  }
+
+  private <T extends Enum<T>> T readName(Class<T> type, ArrayList<T> table) {
+    long index = readVarLong();
+    if (index == 0) {
+      return null;
+    }
+    if (index == table.size() + 1) {
+      // The first use of the name adds it to the table
+      long length = readVarLong();
+      if (length > buffer.remaining()) {
+        throw new BufferUnderflowException();
+      }
+      byte[] name = new byte[(int) length];
+      buffer.get(name);
+      String constant = new String(name, StandardCharsets.US_ASCII);
+      try {
+        table.add(Enum.valueOf(type, constant));
+      } catch (IllegalArgumentException e) {
+        throw new RuntimeException("Unknown " + type.getSimpleName() + " in the replay: " + constant, e);
+      }
+    } else if (index > table.size()) {
+      throw new RuntimeException("Corrupt replay: no " + type.getSimpleName() + " at index " + index + ".");
+    }
+    return table.get((int) index - 1);
+  }
+
+  private long readVarLong() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,256 @@
+package ecs.engine.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import javafx.geometry.Point2D;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+/**
+ * Records the inputs and random seeds of every deterministic tick into a compact binary replay file.
+ * The file is streamed to disk while the game is running.
+ *
+ * <p>The file starts with a header (magic, version, seed, fixed time step), followed by one record per tick
+ * in which something changed. A record is the number of unchanged ticks before it (varint), a flag byte, and the
+ * changed fields only. The cursor is stored as a zigzag varint delta in 1/16 pixels.
+ * The key and the mouse button are stored by their names rather than their ordinals, so that a replay still plays
+ * when JavaFX adds constants: a field is 0 for none or the index of the name in a table that starts empty, and the
+ * first use of a name writes the next index followed by the name (varint length and ASCII bytes).
+ * The records are written to the file every FLUSH_INTERVAL ticks, with a record without flags for an unchanged tick
+ * when needed, so a replay cut off by a crash still plays up to the last write.
+ */
+public class GameReplayRecorder implements AutoCloseable {
+
+  ////////////// Replay Constants //////////////
+
+  /// The magic number at the beginning of every replay file ("ECSR").
+  public static final int MAGIC = 0x45435352;
+  /// The version of the replay format.
+  public static final byte VERSION = 2;
+  /// The number of steps per pixel that the cursor is quantized to.
+  public static final double CURSOR_PRECISION = 16;
+  /// The number of ticks between two writes of the records to the file, the most that a crash can lose.
+  public static final int FLUSH_INTERVAL = 50;
+
+  /// The flags of the changed fields in a record.
+  static final int FLAG_KEY = 1;
+  static final int FLAG_MOUSE = 1 << 1;
+  static final int FLAG_CURSOR = 1 << 2;
+  static final int FLAG_SEED = 1 << 3;
+  static final int FLAG_END = 1 << 7;
+
+  //////////////////////////////////////////////
+
+  // The size of the write buffer, and the largest single field that can be written
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_FIELD_SIZE = 10;
+
+  // instance variables
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private boolean closed;
+  private final HashMap<Enum<?>, Integer> keyIndices = new HashMap<>();
+  private final HashMap<Enum<?>, Integer> mouseIndices = new HashMap<>();
+
+  // The state of the last written record
+  private KeyCode lastKey;
+  private MouseButton lastMouse;
+  private long lastCursorX;
+  private long lastCursorY;
+
+  // The state of the current tick
+  private int idleTicks;
+  private int ticksSinceFlush;
+  private KeyCode tickKey;
+  private MouseButton tickMouse;
+  private long tickCursorX;
+  private long tickCursorY;
+  private long[] tickSeeds = new long[4];
+  private int tickSeedCount;
+
+  /**
+   * Create a recorder that writes into the given file.
+   * The file is created or truncated.
+   *
+   * @param file The replay file
+   * @param seed The seed of the deterministic mode
+   * @param fixedTimeStep The fixed time step of every tick
+   */
+  public GameReplayRecorder(Path file, long seed, double fixedTimeStep) throws IOException {
+    channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Write the header
+    buffer.putInt(MAGIC);
+    buffer.put(VERSION);
+    buffer.putLong(seed);
+    buffer.putDouble(fixedTimeStep);
+  }
+
+  /**
+   * Capture the inputs of the scene at the beginning of a tick.
+   * The cursor of the scene is quantized so that the recorded run sees exactly what the replayed run will see.
+   */
+  synchronized void beginTick(GameScene scene) {
+    KeyCode key = scene.peekKeyInput();
+    MouseButton mouse = scene.peekMouseInput();
+    Point2D cursor = scene.getMouseCursor();
+
+    tickKey = key;
+    tickMouse = mouse;
+    tickCursorX = Math.round(cursor.getX() * CURSOR_PRECISION);
+    tickCursorY = Math.round(cursor.getY() * CURSOR_PRECISION);
+    tickSeedCount = 0;
+
+    scene.setInputs(key, mouse, new Point2D(tickCursorX / CURSOR_PRECISION, tickCursorY / CURSOR_PRECISION));
+  }
+
+  /**
+   * Record a seed that the scene random generator is reseeded with in the current tick.
+   */
+  synchronized void recordSeed(long seed) {
+    if (tickSeedCount == tickSeeds.length) {
+      long[] grown = new long[tickSeeds.length * 2];
+      System.arraycopy(tickSeeds, 0, grown, 0, tickSeedCount);
+      tickSeeds = grown;
+    }
+    tickSeeds[tickSeedCount++] = seed;
+  }
+
+  /**
+   * Write the record of the current tick, or count it as unchanged.
+   * Every FLUSH_INTERVAL ticks, the record is written even if unchanged, and the buffer is written to the file.
+   */
+  synchronized void endTick() {
+    if (closed) {
+      return;
+    }
+
+    int flags = 0;
+    if (tickKey != lastKey) {
+      flags |= FLAG_KEY;
+    }
+    if (tickMouse != lastMouse) {
+      flags |= FLAG_MOUSE;
+    }
+    if (tickCursorX != lastCursorX || tickCursorY != lastCursorY) {
+      flags |= FLAG_CURSOR;
+    }
+    if (tickSeedCount > 0) {
+      flags |= FLAG_SEED;
+    }
+
+    boolean isFlushTick = ++ticksSinceFlush >= FLUSH_INTERVAL;
+    if (flags == 0 && !isFlushTick) {
+      idleTicks++;
+      return;
+    }
+
+    try {
+      writeVarLong(idleTicks);
+      ensureCapacity(1);
+      buffer.put((byte) flags);
+
+      if ((flags & FLAG_KEY) != 0) {
+        writeName(tickKey, keyIndices);
+      }
+      if ((flags & FLAG_MOUSE) != 0) {
+        writeName(tickMouse, mouseIndices);
+      }
+      if ((flags & FLAG_CURSOR) != 0) {
+        writeVarLong(zigzag(tickCursorX - lastCursorX));
+        writeVarLong(zigzag(tickCursorY - lastCursorY));
+      }
+      if ((flags & FLAG_SEED) != 0) {
+        writeVarLong(tickSeedCount);
+        for (int i = 0; i < tickSeedCount; i++) {
+          writeVarLong(zigzag(tickSeeds[i]));
+        }
+      }
+      if (isFlushTick) {
+        flush();
+        ticksSinceFlush = 0;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot write the replay record.", e);
+    }
+
+    idleTicks = 0;
+    lastKey = tickKey;
+    lastMouse = tickMouse;
+    lastCursorX = tickCursorX;
+    lastCursorY = tickCursorY;
+  }
+
+  /**
+   * Write the end marker and close the replay file.
+   * The ticks after the last change are kept in the end marker so that the replay has the same length.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    writeVarLong(idleTicks);
+    ensureCapacity(1);
+    buffer.put((byte) FLAG_END);
+    flush();
+    channel.close();
+  }
+
+  private void writeName(Enum<?> constant, HashMap<Enum<?>, Integer> indices) throws IOException {
+    if (constant == null) {
+      writeVarLong(0);
+      return;
+    }
+    Integer index = indices.get(constant);
+    if (index != null) {
+      writeVarLong(index);
+      return;
+    }
+
+    // The first use of the name adds it to the table
+    index = indices.size() + 1;
+    indices.put(constant, index);
+    byte[] name = constant.name().getBytes(StandardCharsets.US_ASCII);
+    writeVarLong(index);
+    writeVarLong(name.length);
+    ensureCapacity(name.length);
+    buffer.put(name);
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    ensureCapacity(MAX_FIELD_SIZE);
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private void ensureCapacity(int size) throws IOException {
+    if (buffer.remaining() < size) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+}
@@ -1,13 +1,27 @@
 package ecs.engine.base;
 
+import ecs.engine.component.Camera;
+import ecs.engine.component.Collider;
 import ecs.engine.component.EntityBehavior;
+import ecs.engine.component.PhysicsHandler;
+import ecs.engine.component.RenderHandler;
+import ecs.engine.component.Transform;
+import ecs.engine.physics.PhysicsWorld;
+import ecs.engine.physics.RaycastHit;
+import ecs.engine.render.NodeRenderBackend;
+import ecs.engine.render.RenderBackend;
+import ecs.engine.render.RenderGrid;
+import ecs.engine.render.RenderQueue;
+import ecs.engine.render.StaticLayer;
 import ecs.engine.tag.ComponentUpdateTag;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Point2D;
@@ -16,6 +30,7 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
+import javafx.scene.transform.Affine;
 
 /**
  * The base class for the game scene.
@@ -43,29 +58,56 @@ public abstract class GameScene {
   private static Scene FXscene;
   private static GameScene previousScene;
   private static GameScene currentScene;
+  private static Long deterministicSeed; // null unless the deterministic mode is on
+  private static GameReplayRecorder replayRecorder;
+  private static GameReplayPlayer replayPlayer;
+  private static RenderBackend activeRenderBackend; // The backend that holds the render pane
+  private static final Affine IDENTITY_VIEW = new Affine();
+  private static double headlessWidth = 800; // The size of the scenes without a JavaFX scene
+  private static double headlessHeight = 600;
+  private static final ArrayList<RenderHandler> visibleRenderers = new ArrayList<>();
+  private static long renderFrame; // The number of the frame that the visible render handlers are marked with
 
   // readonly variables
   private static double deltaTime;
   private static double fixedDeltaTime;
+  private static long tickCount;
+  private static long stateHash;
   private boolean isActive;
 
   // instance variables
   private final ArrayList<GameObject> allObjects;
+  private final Random random;
+  private final PhysicsWorld physicsWorld;
+  private RenderBackend renderBackend = new NodeRenderBackend();
+  private final RenderGrid renderGrid = new RenderGrid();
+  private final RenderQueue renderQueue = new RenderQueue();
+  private final StaticLayer staticLayer = new StaticLayer();
+  private Camera camera;
   
   // Inputs
   private KeyCode keyInput;
   private MouseButton mouseInput;
   private Point2D mouseCursor;
 
+  // Pending inputs (written by the JavaFX thread, latched at the beginning of every step)
+  private volatile KeyCode pendingKeyInput;
+  private volatile MouseButton pendingMouseInput;
+  private volatile Point2D pendingMouseCursor;
+  private volatile boolean keyInputChanged;
+  private volatile boolean mouseInputChanged;
+
   public GameScene() {
     // Initialize the scene attributes
-    width = FXscene.getWidth();
-    height = FXscene.getHeight();
+    width = FXscene == null ? headlessWidth : FXscene.getWidth();
+    height = FXscene == null ? headlessHeight : FXscene.getHeight();
     uW = width / 100;
     uH = height / 100;
 
     // Initialize the instance variables
     allObjects = new ArrayList<>();
+    random = deterministicSeed == null ? new Random() : new Random(sceneSeed(deterministicSeed, getClass()));
+    physicsWorld = new PhysicsWorld();
 
     // Initialize the component list
     GameComponent.allComponents.put(this, new HashMap<>());
@@ -76,22 +118,73 @@ public abstract class GameScene {
     // Initialize the input handler
     keyInput = null;
     mouseCursor = new Point2D(0, 0);
+    pendingMouseCursor = mouseCursor;
   }
 
   private void updateInputHandler() {
-    FXscene.setOnKeyPressed(e -> keyInput = e.getCode());
+    FXscene.setOnKeyPressed(e -> {
+      pendingKeyInput = e.getCode();
+      keyInputChanged = true;
+    });
     FXscene.setOnKeyReleased(e -> {
-      if (e.getCode() == keyInput) {
-        keyInput = null;
+      if (e.getCode() == pendingKeyInput) {
+        pendingKeyInput = null;
+        keyInputChanged = true;
       }
     });
-    FXscene.setOnMousePressed(e -> mouseInput = e.getButton());
+    FXscene.setOnMousePressed(e -> {
+      pendingMouseInput = e.getButton();
+      mouseInputChanged = true;
+    });
     FXscene.setOnMouseReleased(e -> {
-      if (e.getButton() == mouseInput) {
-        mouseInput = null;
+      if (e.getButton() == pendingMouseInput) {
+        pendingMouseInput = null;
+        mouseInputChanged = true;
       }
     });
-    FXscene.setOnMouseMoved(e -> mouseCursor = new Point2D(e.getX(), e.getY()));
+    FXscene.setOnMouseMoved(e -> pendingMouseCursor = new Point2D(e.getX(), e.getY()));
+  }
+
+  private void latchInputs() {
+    // Inputs only change between steps, so a step always sees the same inputs from start to end
+    if (keyInputChanged) {
+      keyInputChanged = false;
+      keyInput = pendingKeyInput;
+    }
+    if (mouseInputChanged) {
+      mouseInputChanged = false;
+      mouseInput = pendingMouseInput;
+    }
+    mouseCursor = pendingMouseCursor;
+  }
+
+  private static long sceneSeed(long seed, Class<? extends GameScene> sceneClass) {
+    // The class name hash is stable across runs, unlike the identity hash of the class
+    return seed * 31 + sceneClass.getName().hashCode();
+  }
+
+  private static long computeStateHash() {
+    // FNV-1a over the raw bits of every transform and velocity, in component order
+    long hash = 0xcbf29ce484222325L;
+    for (GameComponent component : GameComponent.allComponents.get(currentScene).get(ComponentUpdateTag.TRANSFORM)) {
+      Transform transform = (Transform) component;
+      hash = mixHash(hash, Double.doubleToLongBits(transform.position.getX()));
+      hash = mixHash(hash, Double.doubleToLongBits(transform.position.getY()));
+      hash = mixHash(hash, Double.doubleToLongBits(transform.rotation));
+      hash = mixHash(hash, Double.doubleToLongBits(transform.scale.getX()));
+      hash = mixHash(hash, Double.doubleToLongBits(transform.scale.getY()));
+    }
+    for (GameComponent component : GameComponent.allComponents.get(currentScene).get(ComponentUpdateTag.PHYSICS)) {
+      PhysicsHandler physicsHandler = (PhysicsHandler) component;
+      hash = mixHash(hash, Double.doubleToLongBits(physicsHandler.velocity.getX()));
+      hash = mixHash(hash, Double.doubleToLongBits(physicsHandler.velocity.getY()));
+      hash = mixHash(hash, Double.doubleToLongBits(physicsHandler.angularVelocity));
+    }
+    return hash;
+  }
+
+  private static long mixHash(long hash, long value) {
+    return (hash ^ value) * 0x100000001b3L;
   }
 
   /* API BELOW */
@@ -103,6 +196,16 @@ public abstract class GameScene {
     GameScene.FXscene = scene;
   }
 
+  /**
+   * Set the size of the scenes when the game runs without a JavaFX scene, such as when the frames are rendered
+   * offscreen by a SoftwareRenderBackend on a machine without a display. This should be called before the scenes
+   * are added, and the game is then driven by calling tick() and renderStep().
+   */
+  public static void setHeadlessSize(double width, double height) {
+    headlessWidth = width;
+    headlessHeight = height;
+  }
+
   /**
    * Add a new scene to the game. The first scene added will be the current scene.
    * Once the scene is added, there is NO WAY you can remove it.
@@ -126,6 +229,47 @@ public abstract class GameScene {
     }
   }
 
+  /**
+   * Turn on the deterministic mode with the given seed.
+   * Every scene's random generator is reseeded from this seed, so two runs with the same seed and the same inputs
+   * produce the same simulation. This should be called before the game starts.
+   */
+  public static void setDeterministic(long seed) {
+    deterministicSeed = seed;
+    for (GameScene scene : allScenes.values()) {
+      scene.random.setSeed(sceneSeed(seed, scene.getClass()));
+    }
+  }
+
+  /**
+   * Whether the deterministic mode is on.
+   */
+  public static boolean isDeterministic() {
+    return deterministicSeed != null;
+  }
+
+  /**
+   * Get the seed of the deterministic mode, or null if the deterministic mode is off.
+   */
+  public static Long getDeterministicSeed() {
+    return deterministicSeed;
+  }
+
+  /**
+   * Get the number of deterministic ticks that have been stepped so far.
+   */
+  public static long getTickCount() {
+    return tickCount;
+  }
+
+  /**
+   * Get the state hash of the current scene after the last deterministic tick.
+   * Two runs diverge at the first tick where their hashes differ.
+   */
+  public static long getStateHash() {
+    return stateHash;
+  }
+
   /**
    * Get the delta time between the current frame and the previous frame.
    */
@@ -164,10 +308,15 @@ public abstract class GameScene {
       subscribedActions.add(event -> { currentScene.isActive = true; currentScene.onActive(); });
 
       // passing inputs
-      currentScene.updateInputHandler();
+      if (FXscene != null) {
+        currentScene.updateInputHandler();
+      }
       currentScene.mouseCursor = previousScene.mouseCursor;
       currentScene.keyInput = previousScene.keyInput;
       currentScene.mouseInput = previousScene.mouseInput;
+      currentScene.pendingMouseCursor = previousScene.pendingMouseCursor;
+      currentScene.pendingKeyInput = previousScene.pendingKeyInput;
+      currentScene.pendingMouseInput = previousScene.pendingMouseInput;
 
       return;
     }
@@ -176,12 +325,20 @@ public abstract class GameScene {
 
   /**
    * Get the render Canvas Group of the game.
-   * The render canvas is automatically cleared in every frame.
+   * The render canvas is managed by the render backend of the current scene.
    */
   public static Pane getRenderCanvas() {
     return (Pane) ((StackPane) FXscene.getRoot()).getChildren().get(1);
   }
 
+  /**
+   * Get the background Canvas Group of the game.
+   * The background canvas is managed by the static layer of the current scene.
+   */
+  public static Pane getBackgroundCanvas() {
+    return (Pane) ((StackPane) FXscene.getRoot()).getChildren().get(0);
+  }
+
   /**
    * The actions that will be performed for current scene in every frame.
    */
@@ -195,7 +352,12 @@ public abstract class GameScene {
 
     // Update with the following sequence
     // 1. Update the input handler
-    // TODO: Implement the input handler (UI)
+    currentScene.latchInputs();
+    if (replayPlayer != null) {
+      replayPlayer.beginTick(currentScene);
+    } else if (replayRecorder != null) {
+      replayRecorder.beginTick(currentScene);
+    }
 
     // 2. Update the events and actions、
     int size = subscribedActions.size();
@@ -260,9 +422,55 @@ public abstract class GameScene {
       for (GameComponent component : GameComponent.allComponents.get(currentScene).get(order)) {
         component.fixedUpdate();
       }
+
+      // The bodies are integrated in a batch once all the physics handlers have been updated,
+      // and the collisions are detected once all the colliders have been updated
+      if (order == ComponentUpdateTag.PHYSICS) {
+        currentScene.physicsWorld.integrate(GameComponent.allComponents.get(currentScene).get(order));
+      } else if (order == ComponentUpdateTag.COLLISION) {
+        currentScene.physicsWorld.detectCollisions(GameComponent.allComponents.get(currentScene).get(order));
+      }
+    }
+
+    // Update the scene-wide physics
+    currentScene.physicsWorld.postFixedStep(GameComponent.allComponents.get(currentScene));
+
+    // The collision events are dispatched once the step is over, so the callbacks can destroy objects
+    currentScene.physicsWorld.dispatchEvents();
+  }
+
+  /**
+   * Step the current scene by exactly one deterministic tick.
+   * Both the logic step and the fixed step use the given fixed time step,
+   * so the result never depends on the wall clock.
+   * The state hash is updated at the end of the tick.
+   */
+  public static void tick(double fixedElapsedTime) {
+    step(fixedElapsedTime);
+    fixedStep(fixedElapsedTime);
+
+    tickCount++;
+    stateHash = computeStateHash();
+
+    if (replayRecorder != null && replayPlayer == null) {
+      replayRecorder.endTick();
     }
   }
 
+  /**
+   * Set the recorder that records the inputs and seeds of every deterministic tick, or null to stop recording.
+   */
+  static void setReplayRecorder(GameReplayRecorder recorder) {
+    replayRecorder = recorder;
+  }
+
+  /**
+   * Set the player that feeds the recorded inputs and seeds into every deterministic tick, or null to stop playing.
+   */
+  static void setReplayPlayer(GameReplayPlayer player) {
+    replayPlayer = player;
+  }
+
   /**
    * Render the current scene.
    * This method will be called in the main thread to render the scene.
@@ -271,16 +479,57 @@ public abstract class GameScene {
     if (currentScene == null) {
       throw new RuntimeException("No scene is currently active.");
     }
-    // Clear the render canvas (keep the root)
-    Pane renderCanvas = getRenderCanvas();
-    renderCanvas.getChildren().clear();
+    // Hand the render canvas over if the scene or its backend has been changed
+    RenderBackend renderBackend = currentScene.renderBackend;
+    if (renderBackend != activeRenderBackend) {
+      Pane renderCanvas = FXscene == null ? null : getRenderCanvas();
+      if (activeRenderBackend != null) {
+        activeRenderBackend.detach(renderCanvas);
+      }
+      renderBackend.attach(renderCanvas);
+      activeRenderBackend = renderBackend;
+    }
 
-    // Update the components based on the order
+    // The camera of the scene decides the view, and which render handlers are drawn
+    Camera camera = currentScene.getCamera();
+    boolean isCulling = camera != null && camera.isCulling;
+    if (camera != null) {
+      camera.updateView(currentScene.width, currentScene.height);
+    }
+    if (isCulling) {
+      // The render handlers in the view are only marked, so the draw order is culled without being sorted again
+      renderFrame++;
+      currentScene.renderGrid.query(camera.getViewMinX(), camera.getViewMinY(), camera.getViewMaxX(),
+          camera.getViewMaxY(), visibleRenderers);
+      for (RenderHandler renderer : visibleRenderers) {
+        renderer.markVisible(renderFrame);
+      }
+      visibleRenderers.clear();
+    }
+
+    // Update the components based on the order, the render handlers draw themselves through the backend
+    Affine view = camera == null ? IDENTITY_VIEW : camera.getViewTransform();
+    renderBackend.beginFrame(view);
     for (ComponentUpdateTag order : ComponentUpdateTag.values()) {
+      if (order == ComponentUpdateTag.RENDER) {
+        // The render handlers are drawn in the buckets of the render queue, in the render order
+        for (RenderHandler renderer : currentScene.renderQueue.getDrawOrder()) {
+          if (!isCulling || renderer.isVisibleIn(renderFrame)) {
+            renderer.renderUpdate();
+          }
+        }
+        continue;
+      }
       for (GameComponent component : GameComponent.allComponents.get(currentScene).get(order)) {
         component.renderUpdate();
       }
     }
+    renderBackend.endFrame();
+
+    // The static render handlers are drawn last, so their images have left the render pane of the backend
+    if (FXscene != null && !renderBackend.drawsStaticRenderers()) {
+      currentScene.staticLayer.update(getBackgroundCanvas(), view);
+    }
   }
 
   /**
@@ -335,8 +584,7 @@ public abstract class GameScene {
 
     try {
       // detach all the components from the object
-      Class<?> clazz = object.getClass();
-      Method method = clazz.getDeclaredMethod("detachAllComponents");
+      Method method = GameObject.class.getDeclaredMethod("detachAllComponents");
       method.setAccessible(true);
       method.invoke(object);
 
@@ -375,6 +623,138 @@ public abstract class GameScene {
     subscribedActions.add(action);
   }
 
+  /**
+   * Get the random generator of this scene.
+   * In the deterministic mode this generator is seeded, so all the gameplay randomness should come from here.
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * Get the physics world of this scene.
+   */
+  public PhysicsWorld getPhysicsWorld() {
+    return physicsWorld;
+  }
+
+  /**
+   * Get the camera of this scene, or null if the scene has no camera and shows the world as the screen.
+   */
+  public Camera getCamera() {
+    if (camera != null && camera.gameObject == null) {
+      camera = null;
+    }
+    return camera;
+  }
+
+  /**
+   * Set the camera of this scene, or null to show the world as the screen. Called by the camera when it starts.
+   */
+  public void setCamera(Camera camera) {
+    this.camera = camera;
+  }
+
+  /**
+   * Get the render grid that the render handlers of this scene are culled with.
+   */
+  public RenderGrid getRenderGrid() {
+    return renderGrid;
+  }
+
+  /**
+   * Get the render queue that keeps the render handlers of this scene in their render order.
+   */
+  public RenderQueue getRenderQueue() {
+    return renderQueue;
+  }
+
+  /**
+   * Get the cached layer that the static render handlers of this scene are drawn into.
+   */
+  public StaticLayer getStaticLayer() {
+    return staticLayer;
+  }
+
+  /**
+   * Get the render backend of this scene.
+   */
+  public RenderBackend getRenderBackend() {
+    return renderBackend;
+  }
+
+  /**
+   * Set the render backend of this scene. The backend takes over the render canvas in the next frame.
+   * The default backend is a NodeRenderBackend.
+   */
+  public void setRenderBackend(RenderBackend renderBackend) {
+    this.renderBackend = renderBackend;
+  }
+
+  /**
+   * Cast a ray against the colliders of this scene and write the closest hit into the given hit.
+   * See PhysicsWorld.raycast().
+   */
+  public boolean raycast(double originX, double originY, double directionX, double directionY, double maxDistance,
+      long mask, RaycastHit hit) {
+    return physicsWorld.raycast(originX, originY, directionX, directionY, maxDistance, mask, hit);
+  }
+
+  /**
+   * Find the colliders of this scene that overlap the circle. See PhysicsWorld.overlapCircle().
+   */
+  public int overlapCircle(double centerX, double centerY, double radius, long mask, List<Collider<?>> results) {
+    return physicsWorld.overlapCircle(centerX, centerY, radius, mask, results);
+  }
+
+  /**
+   * Find the colliders of this scene that overlap the axis-aligned box. See PhysicsWorld.overlapBox().
+   */
+  public int overlapBox(double minX, double minY, double maxX, double maxY, long mask, List<Collider<?>> results) {
+    return physicsWorld.overlapBox(minX, minY, maxX, maxY, mask, results);
+  }
+
+  /**
+   * Find the k colliders of this scene that are the nearest to the point. See PhysicsWorld.nearest().
+   */
+  public int nearest(double x, double y, int k, double maxDistance, long mask, List<Collider<?>> results) {
+    return physicsWorld.nearest(x, y, k, maxDistance, mask, results);
+  }
+
+  /**
+   * Find the colliders of this scene that contain the point. See PhysicsWorld.pointQuery().
+   */
+  public int pointQuery(double x, double y, long mask, List<Collider<?>> results) {
+    return physicsWorld.pointQuery(x, y, mask, results);
+  }
+
+  /**
+   * Find the colliders of this scene that are under the mouse cursor.
+   */
+  public int pointQuery(long mask, List<Collider<?>> results) {
+    if (mouseCursor == null) {
+      results.clear();
+      return 0;
+    }
+    // The cursor is on the screen, which is only the world without a camera
+    Camera camera = getCamera();
+    Point2D point = camera == null ? mouseCursor : camera.screenToWorld(mouseCursor.getX(), mouseCursor.getY());
+    return physicsWorld.pointQuery(point.getX(), point.getY(), mask, results);
+  }
+
+  /**
+   * Reseed the random generator of this scene.
+   */
+  public void setRandomSeed(long seed) {
+    // The seed of a replayed run always comes from the replay, even if the game picked a different one
+    if (replayPlayer != null) {
+      seed = replayPlayer.nextSeed(seed);
+    } else if (replayRecorder != null) {
+      replayRecorder.recordSeed(seed);
+    }
+    random.setSeed(seed);
+  }
+
   /**
    * Whether the scene is currently active.
    */
@@ -408,6 +788,26 @@ public abstract class GameScene {
     return mouseCursor;
   }
 
+  /**
+   * Peek the latched inputs without consuming them. This is used by the replay recorder.
+   */
+  KeyCode peekKeyInput() {
+    return keyInput;
+  }
+
+  MouseButton peekMouseInput() {
+    return mouseInput;
+  }
+
+  /**
+   * Overwrite the latched inputs. This is used by the replay recorder and player.
+   */
+  void setInputs(KeyCode keyInput, MouseButton mouseInput, Point2D mouseCursor) {
+    this.keyInput = keyInput;
+    this.mouseInput = mouseInput;
+    this.mouseCursor = mouseCursor;
+  }
+
   /* OVERRIDABLE METHODS BELOW */
 
   /**
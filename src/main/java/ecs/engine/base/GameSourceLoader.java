@@ -1,5 +1,6 @@
 package ecs.engine.base;
 
+import ecs.engine.render.SpriteAtlas;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -12,6 +13,7 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -21,8 +23,14 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
 /**
@@ -31,9 +39,12 @@ import javafx.scene.image.ImageView;
 public class GameSourceLoader {
   private static final GameSourceLoader instance = new GameSourceLoader();
 
-  private final Map<String, ImageView> IMAGES = new HashMap<>();
-  private final Map<String, char[][]> LEVELS = new HashMap<>();
+  private final Map<String, URL> IMAGES = new ConcurrentHashMap<>(); // The images are decoded on demand
+  private final Map<String, char[][]> LEVELS = new ConcurrentHashMap<>();
   private final Map<String, Object> PROPERTIES = new HashMap<>();
+  private final ImageCache imageCache = new ImageCache(GameSourceLoader::decodeImage);
+  private volatile SpriteAtlas atlas; // Packed on demand, from all the images
+  private volatile long lastLoadMillis;
 
   /////////////////////////////////////////////////
   ///////////// PUBLIC GETTER METHODS /////////////
@@ -43,16 +54,86 @@ public class GameSourceLoader {
    * Load all images and levels from the given directories
    */
   public static void loadAll(String imageDirectory, String levelDirectory) {
-    loadAllImages(imageDirectory);
-    loadAllLevels(levelDirectory);
+    loadAssets(imageDirectory, levelDirectory);
     loadAllSerializableProperties();
   }
 
   /**
-   * Get image from the image pool by name
+   * Get the time that the last loading of the assets took, in milliseconds
+   */
+  public static long getLastLoadMillis() {
+    return instance.lastLoadMillis;
+  }
+
+  /**
+   * Get image from the image pool by name, which is decoded the first time it is asked for
    */
   public static ImageView getImage(String imageName) {
-    return new ImageView(instance.IMAGES.get(imageName).getImage());
+    Image image = instance.imageCache.get(imageName);
+    if (image == null) {
+      throw new RuntimeException("Image not found: " + imageName);
+    }
+    return new ImageView(image);
+  }
+
+  /**
+   * Pin the images of the current scene, so they are decoded in parallel now and never evicted from the image cache
+   */
+  public static void pinImages(String... imageNames) {
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      ArrayList<Future<Image>> images = new ArrayList<>();
+      for (String imageName : imageNames) {
+        images.add(executor.submit(() -> instance.imageCache.pin(imageName)));
+      }
+      for (int i = 0; i < imageNames.length; i++) {
+        if (images.get(i).get() == null) {
+          System.err.println("Failed to pin image: " + imageNames[i]);
+        }
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Cannot pin the images", e);
+    }
+  }
+
+  /**
+   * Unpin the images of a scene, so they can be evicted from the image cache again
+   */
+  public static void unpinImages(String... imageNames) {
+    for (String imageName : imageNames) {
+      instance.imageCache.unpin(imageName);
+    }
+  }
+
+  /**
+   * Get the cache of the decoded images, for its memory budget and its counters
+   */
+  public static ImageCache getImageCache() {
+    return instance.imageCache;
+  }
+
+  /**
+   * Get a sprite of the image by name, which shares its texture with the other images of the same atlas page
+   */
+  public static ImageView getSprite(String imageName) {
+    return getAtlas().createSprite(imageName);
+  }
+
+  /**
+   * Get the atlas that all the loaded images are packed into.
+   * The atlas is packed the first time it is asked for, which decodes all the images once.
+   */
+  public static SpriteAtlas getAtlas() {
+    SpriteAtlas atlas = instance.atlas;
+    if (atlas == null) {
+      synchronized (instance) {
+        atlas = instance.atlas;
+        if (atlas == null) {
+          atlas = packAtlas();
+          instance.atlas = atlas;
+        }
+      }
+    }
+    return atlas;
   }
 
   /**
@@ -70,41 +151,129 @@ public class GameSourceLoader {
   }
 
   ////////////////////////////////////////////////////
-  ///////////// LOAD ALL THE IMAGES HERE /////////////
+  ///////////// LOAD ALL THE ASSETS HERE /////////////
   ////////////////////////////////////////////////////
 
   /**
-   * Load all images from the specified directory.
+   * Load the images and the levels from the given directories, either of which can be null.
+   * Every directory is listed once, and a JAR is opened and scanned once for both of them.
+   * The images are only indexed, to be decoded on demand by the image cache. The levels are decoded in parallel on
+   * virtual threads, and the total load time is reported.
    */
-  public static void loadAllImages(String imageDirectory) {
+  public static void loadAssets(String imageDirectory, String levelDirectory) {
+    long startTime = System.nanoTime();
+    int imageCount = instance.IMAGES.size();
+    int levelCount = instance.LEVELS.size();
+
+    Map<String, JarFile> jarFiles = new HashMap<>();
+    try {
+      // Closing the executor waits for all the files to be decoded
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        String imageJarPath = submitDirectory(imageDirectory, true, executor);
+        String levelJarPath = submitDirectory(levelDirectory, false, executor);
+        for (String jarPath : new String[] {imageJarPath, levelJarPath}) {
+          if (jarPath == null || jarFiles.containsKey(jarPath)) {
+            continue;
+          }
+          System.out.println("Loading assets from JAR: " + jarPath);
+          JarFile jarFile = new JarFile(new File(jarPath));
+          jarFiles.put(jarPath, jarFile);
+          jarFile.stream().forEach(entry -> {
+            if (jarPath.equals(imageJarPath) && isValidImageEntry(entry, imageDirectory)) {
+              indexImageFromJar(entry);
+            } else if (jarPath.equals(levelJarPath) && isValidLevelEntry(entry, levelDirectory)) {
+              executor.submit(() -> loadLevelFromJar(jarFile, entry));
+            }
+          });
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to scan the JAR of the assets");
+      e.printStackTrace();
+    } finally {
+      for (JarFile jarFile : jarFiles.values()) {
+        try {
+          jarFile.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+
+    if (imageDirectory != null) {
+      instance.atlas = null;
+    }
+    instance.lastLoadMillis = (System.nanoTime() - startTime) / 1_000_000;
+    System.out.println("Indexed " + (instance.IMAGES.size() - imageCount) + " images and loaded "
+        + (instance.LEVELS.size() - levelCount) + " levels in " + instance.lastLoadMillis + " ms");
+  }
+
+  /**
+   * Indexes the images and submits the decoding of the levels of a directory on the filesystem,
+   * or returns the path of the JAR that the directory is in, to be scanned once for all the directories.
+   */
+  private static String submitDirectory(String directory, boolean isImageDirectory, ExecutorService executor) {
+    if (directory == null) {
+      return null;
+    }
+    String assetType = isImageDirectory ? "images" : "levels";
     try {
       // Get the directory as a URL
-      URL resourceUrl = GameSourceLoader.class.getClassLoader().getResource(imageDirectory);
+      URL resourceUrl = GameSourceLoader.class.getClassLoader().getResource(directory);
       if (resourceUrl == null) {
-        throw new IOException("Directory not found: " + imageDirectory);
+        throw new IOException("Directory not found: " + directory);
       }
 
       if (resourceUrl.toString().startsWith("jar")) {
         // Handle resources inside a JAR
-        String jarPath = resourceUrl.getPath().substring(5, resourceUrl.getPath().indexOf("!"));
-        System.out.println("Loading images from JAR: " + jarPath);
-        try (JarFile jarFile = new JarFile(new File(jarPath))) {
-          jarFile.stream()
-              .filter(entry -> isValidImageEntry(entry, imageDirectory))
-              .forEach(entry -> loadImageFromJar(entry));
-        }
-      } else {
-        // Handle resources on the filesystem
-        Path directoryPath = Paths.get(resourceUrl.toURI());
-        Files.list(directoryPath)
-            .filter(Files::isRegularFile)
-            .filter(file -> isValidImageFile(file.getFileName().toString()))
-            .forEach(file -> loadImageFromFile(file));
+        return resourceUrl.getPath().substring(5, resourceUrl.getPath().indexOf("!"));
+      }
+
+      // Handle resources on the filesystem
+      try (Stream<Path> files = Files.list(Paths.get(resourceUrl.toURI()))) {
+        files.filter(Files::isRegularFile).forEach(file -> {
+          String fileName = file.getFileName().toString();
+          if (isImageDirectory && isValidImageFile(fileName)) {
+            indexImageFromFile(file);
+          } else if (!isImageDirectory && fileName.endsWith(".level")) {
+            executor.submit(() -> loadLevelFromFile(file));
+          }
+        });
       }
     } catch (Exception e) {
-      System.err.println("Failed to load images from directory: " + imageDirectory);
+      System.err.println("Failed to load " + assetType + " from directory: " + directory);
       e.printStackTrace();
     }
+    return null;
+  }
+
+  ////////////////////////////////////////////////////
+  ///////////// LOAD ALL THE IMAGES HERE /////////////
+  ////////////////////////////////////////////////////
+
+  /**
+   * Load all images from the specified directory.
+   */
+  public static void loadAllImages(String imageDirectory) {
+    loadAssets(imageDirectory, null);
+  }
+
+  /**
+   * Packs all the loaded images into a new atlas.
+   * The images are decoded directly instead of through the image cache, so packing neither evicts the working set
+   * of the cache nor counts as its misses, and the decoded images are only kept by the atlas pages.
+   */
+  private static SpriteAtlas packAtlas() {
+    Map<String, Image> images = new HashMap<>();
+    for (String imageName : instance.IMAGES.keySet()) {
+      Image image = decodeImage(imageName);
+      if (image != null) {
+        images.put(imageName, image);
+      }
+    }
+    SpriteAtlas atlas = SpriteAtlas.pack(images, SpriteAtlas.DEFAULT_PAGE_SIZE);
+    System.out.println("Packed " + images.size() + " images into " + atlas.getPages().size() + " atlas pages");
+    return atlas;
   }
 
   /**
@@ -125,51 +294,57 @@ public class GameSourceLoader {
   }
 
   /**
-   * Loads an image from a JAR entry.
+   * Indexes an image of a JAR entry, which has to be on the classpath.
    */
-  private static void loadImageFromJar(JarEntry entry) {
-    String imagePath = entry.getName();
-    try (InputStream is = GameSourceLoader.class.getClassLoader().getResourceAsStream(imagePath)) {
-      if (is != null) {
-        loadImage(imagePath, is);
-      } else {
-        System.err.println("Failed to load image from JAR: " + imagePath);
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
+  private static void indexImageFromJar(JarEntry entry) {
+    URL url = GameSourceLoader.class.getClassLoader().getResource(entry.getName());
+    if (url != null) {
+      indexImage(entry.getName(), url);
+    } else {
+      System.err.println("Failed to load image from JAR: " + entry.getName());
     }
   }
 
   /**
-   * Loads an image from a file on the filesystem.
+   * Indexes an image of a file on the filesystem.
    */
-  private static void loadImageFromFile(Path file) {
-    try (InputStream is = Files.newInputStream(file)) {
-      loadImage(file.toString(), is);
-    } catch (IOException e) {
+  private static void indexImageFromFile(Path file) {
+    try {
+      indexImage(file.toString(), file.toUri().toURL());
+    } catch (MalformedURLException e) {
       e.printStackTrace();
     }
   }
 
   /**
-   * Loads an image from the InputStream and stores it in the IMAGES map.
+   * Stores the URL of the image in the IMAGES map, so it can be decoded when it is first asked for.
    */
-  private static void loadImage(String imagePath, InputStream inputStream) {
-    try {
-      // Load the image from the input stream
-      javafx.scene.image.Image image = new javafx.scene.image.Image(inputStream);
-
-      // Create an ImageView and associate it with the image
-      ImageView imageView = new ImageView(image);
-
-      // Store the imageView in the IMAGES map, using the part of the imagePath after the last '/' and before the first '.'
-      String imageName = imagePath.substring(imagePath.lastIndexOf('/') + 1, imagePath.indexOf('.'));
-      instance.IMAGES.put(imageName, imageView);
+  private static void indexImage(String imagePath, URL url) {
+    // Use the part of the imagePath after the last '/' and before the first '.' as the name
+    String fileName = imagePath.substring(imagePath.lastIndexOf(File.separatorChar) + 1);
+    fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
+    String imageName = fileName.substring(0, fileName.indexOf('.'));
+    instance.IMAGES.put(imageName, url);
+  }
 
-      System.out.println("Successfully loaded image: " + image);
+  /**
+   * Decodes the image by name, which is called by the image cache on a miss and when the atlas is packed.
+   */
+  private static Image decodeImage(String imageName) {
+    URL url = instance.IMAGES.get(imageName);
+    if (url == null) {
+      return null;
+    }
+    try (InputStream is = url.openStream()) {
+      Image image = new Image(is);
+      if (image.isError()) {
+        throw new IOException("Cannot decode the image", image.getException());
+      }
+      return image;
     } catch (Exception e) {
-      System.err.println("Failed to load image from path: " + imagePath);
+      System.err.println("Failed to load image from path: " + url);
       e.printStackTrace();
+      return null;
     }
   }
 
@@ -178,35 +353,11 @@ public class GameSourceLoader {
   ///////////// LOAD ALL THE LEVELS HERE ///////////
   //////////////////////////////////////////////////
 
+  /**
+   * Load all levels from the specified directory.
+   */
   public static void loadAllLevels(String levelDirectory) {
-    try {
-      // Get the directory as a URL
-      URL resourceUrl = GameSourceLoader.class.getClassLoader().getResource(levelDirectory);
-      if (resourceUrl == null) {
-        throw new IOException("Directory not found: " + levelDirectory);
-      }
-
-      if (resourceUrl.toString().startsWith("jar")) {
-        // Handle resources inside a JAR
-        String jarPath = resourceUrl.getPath().substring(5, resourceUrl.getPath().indexOf("!"));
-        System.out.println("Loading levels from JAR: " + jarPath);
-        try (JarFile jarFile = new JarFile(new File(jarPath))) {
-          jarFile.stream()
-              .filter(entry -> isValidLevelEntry(entry, levelDirectory))
-              .forEach(entry -> loadLevelFromJar(entry));
-        }
-      } else {
-        // Handle resources on the filesystem
-        Path directoryPath = Paths.get(resourceUrl.toURI());
-        Files.list(directoryPath)
-            .filter(Files::isRegularFile)
-            .filter(file -> file.getFileName().toString().endsWith(".level"))
-            .forEach(file -> loadLevelFromFile(file));
-      }
-    } catch (Exception e) {
-      System.err.println("Failed to load levels from directory: " + levelDirectory);
-      e.printStackTrace();
-    }
+    loadAssets(null, levelDirectory);
   }
 
   /**
@@ -221,9 +372,9 @@ public class GameSourceLoader {
   /**
    * Loads a level from a JAR entry.
    */
-  private static void loadLevelFromJar(JarEntry entry) {
+  private static void loadLevelFromJar(JarFile jarFile, JarEntry entry) {
     String levelPath = entry.getName();
-    try (InputStream is = GameSourceLoader.class.getClassLoader().getResourceAsStream(levelPath)) {
+    try (InputStream is = jarFile.getInputStream(entry)) {
       if (is != null) {
         loadLevelFromStream(levelPath, is);
       } else {
@@ -246,7 +397,7 @@ public class GameSourceLoader {
   }
 
   /**
-   * Loads level data from an InputStream.
+   * Loads level data from an InputStream, and reports the level by path if it cannot be read or parsed.
    */
   private static void loadLevelFromStream(String levelPath, InputStream inputStream) {
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
@@ -259,7 +410,9 @@ public class GameSourceLoader {
       String levelName = Paths.get(levelPath).getFileName().toString().split("\\.")[0];
       instance.LEVELS.put(levelName, parseLevelData(levelData.toString()));
       System.out.println("Loaded level: " + levelName);
-    } catch (IOException e) {
+    } catch (IOException | RuntimeException e) {
+      // The level is loaded on a virtual thread whose future is not kept, so a malformed level is reported here
+      System.err.println("Failed to load level: " + levelPath);
       e.printStackTrace();
     }
   }
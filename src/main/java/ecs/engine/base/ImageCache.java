@@ -0,0 +1,240 @@
+package ecs.engine.base;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import javafx.scene.image.Image;
+
+/**
+ * The cache of the decoded images, which decodes an image the first time it is asked for, and keeps the decoded
+ * pixels within a memory budget by evicting the least recently used images.
+ * An evicted image can be kept behind a soft reference, so it is only decoded again once the garbage collector has
+ * actually needed the memory. A pinned image, such as an asset of the current scene, is never evicted.
+ * The images are decoded outside of the lock, so the threads only wait for each other on the bookkeeping.
+ */
+public class ImageCache {
+
+  ////////////// Cache Settings //////////////
+
+  /// Whether the evicted images are kept behind soft references until the garbage collector clears them.
+  public boolean isSoftFallback = true;
+
+  ////////////// Cache Constants //////////////
+
+  /// The default memory budget of the decoded pixels.
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  /////////////////////////////////////////////
+
+  // readonly variables
+  private final Function<String, Image> decoder;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long softHits;
+  private long evictions;
+
+  // instance variables
+  private long maxBytes = DEFAULT_MAX_BYTES; // The pinned images can exceed it
+  private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(16, 0.75f, true); // In the access order
+  private final HashMap<String, SoftReference<Image>> softImages = new HashMap<>();
+  private final HashMap<String, Integer> pinCounts = new HashMap<>();
+
+  /**
+   * @param decoder The function that decodes an image by name, or returns null if there is no such image
+   */
+  public ImageCache(Function<String, Image> decoder) {
+    this.decoder = decoder;
+  }
+
+  /**
+   * Get the image by name, and decode it if it is not in the cache.
+   *
+   * @param name The name of the image
+   * @return The image, or null if there is no such image
+   */
+  public Image get(String name) {
+    synchronized (this) {
+      Image image = images.get(name);
+      if (image != null) {
+        hits++;
+        return image;
+      }
+
+      // The evicted image is brought back if the garbage collector has not cleared it yet
+      SoftReference<Image> softImage = softImages.remove(name);
+      image = softImage == null ? null : softImage.get();
+      if (image != null) {
+        softHits++;
+        put(name, image);
+        return image;
+      }
+      misses++;
+    }
+
+    Image image = decoder.apply(name);
+    if (image == null) {
+      return null;
+    }
+    synchronized (this) {
+      // Another thread may have decoded the same image in the meantime
+      Image cachedImage = images.get(name);
+      if (cachedImage != null) {
+        return cachedImage;
+      }
+      put(name, image);
+      return image;
+    }
+  }
+
+  /**
+   * Pin the image, so it is never evicted until it is unpinned as many times as it has been pinned.
+   * The image is decoded if it is not in the cache.
+   *
+   * @return The image, or null if there is no such image
+   */
+  public Image pin(String name) {
+    synchronized (this) {
+      pinCounts.merge(name, 1, Integer::sum);
+    }
+    Image image = get(name);
+    if (image == null) {
+      unpin(name);
+    }
+    return image;
+  }
+
+  /**
+   * Unpin the image, which can then be evicted once it has been unpinned as many times as it has been pinned.
+   */
+  public synchronized void unpin(String name) {
+    Integer pinCount = pinCounts.get(name);
+    if (pinCount == null) {
+      return;
+    }
+    if (pinCount > 1) {
+      pinCounts.put(name, pinCount - 1);
+    } else {
+      pinCounts.remove(name);
+      evict();
+    }
+  }
+
+  /**
+   * Check if the image is pinned.
+   */
+  public synchronized boolean isPinned(String name) {
+    return pinCounts.containsKey(name);
+  }
+
+  /**
+   * Evict all the images that are not pinned.
+   */
+  public synchronized void clear() {
+    long budget = maxBytes;
+    maxBytes = 0;
+    evict();
+    maxBytes = budget;
+  }
+
+  /**
+   * Set the maximum number of bytes of the decoded pixels of the cached images, which the pinned images can exceed.
+   * The images over the new budget are evicted right away.
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  /**
+   * Get the maximum number of bytes of the decoded pixels of the cached images.
+   */
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Get the number of bytes of the decoded pixels of the cached images.
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Get the number of the cached images.
+   */
+  public synchronized int size() {
+    return images.size();
+  }
+
+  /**
+   * Get the number of the times an image was found in the cache.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Get the number of the times an image had to be decoded.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Get the number of the times an evicted image was brought back from its soft reference.
+   */
+  public synchronized long getSoftHits() {
+    return softHits;
+  }
+
+  /**
+   * Get the number of the images that have been evicted.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Reset the hit, miss, soft hit and eviction counters.
+   */
+  public synchronized void resetCounters() {
+    hits = 0;
+    misses = 0;
+    softHits = 0;
+    evictions = 0;
+  }
+
+  /* private methods below */
+
+  private void put(String name, Image image) {
+    images.put(name, image);
+    bytes += byteSize(image);
+    evict();
+  }
+
+  private void evict() {
+    // The least recently used images are evicted first, the pinned ones are skipped
+    Iterator<Map.Entry<String, Image>> iterator = images.entrySet().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Image> entry = iterator.next();
+      if (pinCounts.containsKey(entry.getKey())) {
+        continue;
+      }
+      iterator.remove();
+      bytes -= byteSize(entry.getValue());
+      evictions++;
+      if (isSoftFallback) {
+        softImages.put(entry.getKey(), new SoftReference<>(entry.getValue()));
+      }
+    }
+  }
+
+  private static long byteSize(Image image) {
+    // The images are decoded into 4 bytes per pixel
+    return 4L * (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight());
+  }
+}
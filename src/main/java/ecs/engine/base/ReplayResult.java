@@ -0,0 +1,46 @@
+package ecs.engine.base;
+
+/**
+ * The outcome of a replay played back by Game.playReplay(), for the caller to report or compare.
+ */
+public class ReplayResult {
+
+  // readonly variables
+  private final long tickCount;
+  private final long elapsedNanos;
+  private final long stateHash;
+
+  /**
+   * Create the result of a played replay.
+   *
+   * @param tickCount The number of ticks that were played
+   * @param elapsedNanos The wall clock time that the playback took, in nanoseconds
+   * @param stateHash The state hash after the last tick
+   */
+  public ReplayResult(long tickCount, long elapsedNanos, long stateHash) {
+    this.tickCount = tickCount;
+    this.elapsedNanos = elapsedNanos;
+    this.stateHash = stateHash;
+  }
+
+  /**
+   * Get the number of ticks that were played.
+   */
+  public long getTickCount() {
+    return tickCount;
+  }
+
+  /**
+   * Get the wall clock time that the playback took, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Get the state hash after the last tick, see GameScene.getStateHash().
+   */
+  public long getStateHash() {
+    return stateHash;
+  }
+}
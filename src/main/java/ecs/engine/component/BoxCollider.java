@@ -16,6 +16,10 @@ public class BoxCollider extends Collider<Rectangle> {
   public static final double MAX_CORNER_DETECTION_DISTANCE = 6;
   /////////////////////////////////////////////////
 
+  // The corners clockwise on the screen, from the top left before the rotation
+  private static final double[] CORNER_SIGN_X = { -1, 1, 1, -1 };
+  private static final double[] CORNER_SIGN_Y = { -1, -1, 1, 1 };
+
   // readonly variables
   public double width;
   public double height;
@@ -24,6 +28,12 @@ public class BoxCollider extends Collider<Rectangle> {
   public Point2D bottomLeft;
   public Point2D bottomRight;
 
+  // The corners and the outward normals of the edges after them, cached for the exact collision tests
+  final double[] cornerX = new double[4];
+  final double[] cornerY = new double[4];
+  final double[] edgeNormalX = new double[4];
+  final double[] edgeNormalY = new double[4];
+
   @Override
   public void updateColliderAttributes() {
     // calculate the width and height of the shape
@@ -74,6 +84,8 @@ public class BoxCollider extends Collider<Rectangle> {
     topRight = points.get(1);
     bottomLeft = points.get(2);
     bottomRight = points.get(3);
+
+    updateCorners();
   }
 
 
@@ -135,12 +147,38 @@ public class BoxCollider extends Collider<Rectangle> {
     }
 
     Point2D edge = edges[closestEdgeIndex];
-
-    System.out.println("normal: " + new Point2D(-edge.getY(), edge.getX()).normalize());
     return new Point2D(-edge.getY(), edge.getX()).normalize();
 
   }
 
+  @Override
+  boolean hasPrimitiveShape() {
+    return true;
+  }
+
+  private void updateCorners() {
+    double cos = transform.getRotationCos();
+    double sin = transform.getRotationSin();
+    double halfWidth = rawWidth * Math.abs(transform.scale.getX()) / 2;
+    double halfHeight = rawHeight * Math.abs(transform.scale.getY()) / 2;
+    double centerX = transform.position.getX();
+    double centerY = transform.position.getY();
+    for (int i = 0; i < 4; i++) {
+      double localX = CORNER_SIGN_X[i] * halfWidth;
+      double localY = CORNER_SIGN_Y[i] * halfHeight;
+      cornerX[i] = centerX + localX * cos - localY * sin;
+      cornerY[i] = centerY + localX * sin + localY * cos;
+    }
+    edgeNormalX[0] = sin;
+    edgeNormalY[0] = -cos;
+    edgeNormalX[1] = cos;
+    edgeNormalY[1] = sin;
+    edgeNormalX[2] = -sin;
+    edgeNormalY[2] = cos;
+    edgeNormalX[3] = -cos;
+    edgeNormalY[3] = -sin;
+  }
+
   private Point2D pointToTransformedPoint(Point2D point, double centerX, double centerY) {
     // Apply Translation
     double translatedX = point.getX() + (transform.position.getX() - centerX);
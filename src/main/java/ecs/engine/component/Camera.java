@@ -0,0 +1,171 @@
+package ecs.engine.component;
+
+import javafx.geometry.Point2D;
+import javafx.scene.transform.Affine;
+
+/**
+ * The component that makes its object the camera of the scene.
+ * The position of the object is shown at the center of the viewport, the view is rotated by the rotation of the
+ * object and scaled by the zoom. Only the render handlers in the view are drawn while the scene has a camera.
+ * A scene has at most one camera, the one that has been started last.
+ * The view is updated on the JavaFX thread and read on the logic thread, so every view update publishes an immutable
+ * snapshot of it, and the conversions and the AABB of the view are computed from that snapshot only.
+ */
+public class Camera extends EntityBehavior {
+
+  ////////////// Component Settings //////////////
+
+  /// Whether the render handlers out of the view are skipped.
+  public boolean isCulling = true;
+  /// The margin around the view in the world, so the objects moving in are drawn in time.
+  public double cullingMargin = 32;
+
+  ///////////////////////////////////////////////
+
+  // readonly variables
+  private final Affine viewTransform = new Affine();
+  private volatile View view = new View(1, 0, 0, 0, 0, 0, 0, 0);
+
+  // instance variables
+  private volatile double zoom = 1; // Set on the logic thread, read by the view update on the JavaFX thread
+
+  @Override
+  public void awake() {}
+
+  @Override
+  public void start() {
+    gameObject.getScene().setCamera(this);
+  }
+
+  @Override
+  public void update() {}
+
+  /* API BELOW */
+
+  /**
+   * Update the view for the viewport of the given size. This is called by the scene before every frame.
+   */
+  public void updateView(double viewportWidth, double viewportHeight) {
+    // Move the position to the origin, rotate it back, zoom and move it to the center of the viewport
+    double angle = Math.toRadians(-transform.rotation);
+    double cos = Math.cos(angle) * zoom;
+    double sin = Math.sin(angle) * zoom;
+    double positionX = transform.position.getX();
+    double positionY = transform.position.getY();
+    double tx = viewportWidth / 2 - cos * positionX + sin * positionY;
+    double ty = viewportHeight / 2 - sin * positionX - cos * positionY;
+    viewTransform.setToTransform(cos, -sin, tx, sin, cos, ty);
+
+    // The AABB of the viewport in the world
+    double halfWidth = viewportWidth / 2 / zoom;
+    double halfHeight = viewportHeight / 2 / zoom;
+    double absCos = Math.abs(cos / zoom);
+    double absSin = Math.abs(sin / zoom);
+    double extentX = halfWidth * absCos + halfHeight * absSin + cullingMargin;
+    double extentY = halfWidth * absSin + halfHeight * absCos + cullingMargin;
+    view = new View(cos, sin, tx, ty, positionX - extentX, positionY - extentY, positionX + extentX,
+        positionY + extentY);
+  }
+
+  /**
+   * Set the scale of the view. The bigger the zoom, the bigger the objects on the screen.
+   *
+   * @param zoom The scale of the view, which must be greater than 0
+   */
+  public void setZoom(double zoom) {
+    if (!(zoom > 0)) {
+      throw new RuntimeException("The zoom of the camera must be greater than 0, got " + zoom + ".");
+    }
+    this.zoom = zoom;
+  }
+
+  /**
+   * Get the scale of the view.
+   */
+  public double getZoom() {
+    return zoom;
+  }
+
+  /**
+   * Get the transform from the world to the screen, as of the last frame.
+   * The transform is rewritten on the JavaFX thread in every frame, so it must only be used on that thread.
+   */
+  public Affine getViewTransform() {
+    return viewTransform;
+  }
+
+  /**
+   * Convert a point on the screen to the world, as of the last frame.
+   */
+  public Point2D screenToWorld(double x, double y) {
+    // The view is a rotation and a uniform zoom, so its inverse is its transpose divided by the zoom squared
+    View view = this.view;
+    double zoomSquared = view.cos * view.cos + view.sin * view.sin;
+    double relX = x - view.tx;
+    double relY = y - view.ty;
+    return new Point2D((view.cos * relX + view.sin * relY) / zoomSquared,
+        (view.cos * relY - view.sin * relX) / zoomSquared);
+  }
+
+  /**
+   * Convert a point in the world to the screen, as of the last frame.
+   */
+  public Point2D worldToScreen(double x, double y) {
+    View view = this.view;
+    return new Point2D(view.cos * x - view.sin * y + view.tx, view.sin * x + view.cos * y + view.ty);
+  }
+
+  /**
+   * Get the minimum X of the AABB of the view in the world, including the culling margin.
+   */
+  public double getViewMinX() {
+    return view.minX;
+  }
+
+  /**
+   * Get the minimum Y of the AABB of the view in the world, including the culling margin.
+   */
+  public double getViewMinY() {
+    return view.minY;
+  }
+
+  /**
+   * Get the maximum X of the AABB of the view in the world, including the culling margin.
+   */
+  public double getViewMaxX() {
+    return view.maxX;
+  }
+
+  /**
+   * Get the maximum Y of the AABB of the view in the world, including the culling margin.
+   */
+  public double getViewMaxY() {
+    return view.maxY;
+  }
+
+  /**
+   * The view of a frame, which is never changed once it has been published.
+   */
+  private static class View {
+
+    private final double cos; // The cosine and sine of the rotation of the view, multiplied by the zoom
+    private final double sin;
+    private final double tx;
+    private final double ty;
+    private final double minX; // The AABB of the view in the world, including the culling margin
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    View(double cos, double sin, double tx, double ty, double minX, double minY, double maxX, double maxY) {
+      this.cos = cos;
+      this.sin = sin;
+      this.tx = tx;
+      this.ty = ty;
+      this.minX = minX;
+      this.minY = minY;
+      this.maxX = maxX;
+      this.maxY = maxY;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package ecs.engine.component;
 
+import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.scene.shape.Circle;
 
@@ -12,12 +13,23 @@ public class CircleCollider extends Collider<Circle>{
   private double radius;
   private double radiusX;
   private double radiusY;
+  private double centerX;
+  private double centerY;
 
   @Override
   protected void updateColliderAttributes() {
-    radiusX = shape.getBoundsInParent().getWidth() / 2;
-    radiusY = shape.getBoundsInParent().getHeight() / 2;
+    Bounds bounds = shape.getBoundsInParent();
+    radiusX = bounds.getWidth() / 2;
+    radiusY = bounds.getHeight() / 2;
     radius = Math.min(radiusX, radiusY);
+    centerX = bounds.getMinX() + radiusX;
+    centerY = bounds.getMinY() + radiusY;
+  }
+
+  @Override
+  boolean hasPrimitiveShape() {
+    // An ellipse is left to Shape.intersect()
+    return radiusX == radiusY;
   }
 
   @Override
@@ -52,6 +64,20 @@ public class CircleCollider extends Collider<Circle>{
     return radius;
   }
 
+  /**
+   * Get the X of the center of the circle collider in the world.
+   */
+  public double getCenterX() {
+    return centerX;
+  }
+
+  /**
+   * Get the Y of the center of the circle collider in the world.
+   */
+  public double getCenterY() {
+    return centerY;
+  }
+
   /**
    * Get the radius of the circle collider in the X axis
    */
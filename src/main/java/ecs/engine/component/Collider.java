@@ -1,15 +1,21 @@
 package ecs.engine.component;
 
 import ecs.engine.base.GameComponent;
+import ecs.engine.physics.Broadphase;
+import ecs.engine.physics.CollisionEventBuffer;
+import ecs.engine.physics.CollisionFilter;
+import ecs.engine.physics.ContactManifold;
+import ecs.engine.physics.ContinuousCollision;
+import ecs.engine.physics.PhysicsWorld;
 import ecs.engine.tag.ComponentUpdateTag;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.scene.shape.Shape;
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Scale;
-import javafx.scene.transform.Translate;
+import javafx.scene.transform.Affine;
 
 /**
  * The component that handles the collision of the entity.
@@ -21,7 +27,19 @@ public abstract class Collider<T extends Shape> extends GameComponent {
   /// Whether the collider is a trigger.
   public boolean isTrigger = false;
   /// Whether the colliders with the same tag can collide with each other.
+  /// Both colliders have to allow it for a collision between the same tag.
   public boolean canCollideSameTag = false;
+  /// The collision layer bits that the collider belongs to.
+  public int categoryBits = 1;
+  /// The collision layer bits that the collider collides with.
+  public int maskBits = -1;
+  /// Whether the collider sweeps its motion to avoid tunneling through thin colliders when moving fast.
+  public boolean continuousDetection = false;
+
+  ////////////// Component Constants //////////////
+
+  /// The depth that a swept collider is moved into the collider it hits, so the discrete detection can respond.
+  public static final double CONTINUOUS_PENETRATION = 1;
 
   ////////////////////////////////////////////////
 
@@ -32,17 +50,44 @@ public abstract class Collider<T extends Shape> extends GameComponent {
 
   // instance variables
   private final ArrayList<Collider<?>> onCollideColliders = new ArrayList<>();
-  private Point2D collisionVelocityToBeSet; // THis will be set in the next frame
+  private final List<Collider<?>> collidingCollidersView = Collections.unmodifiableList(onCollideColliders);
+  private final ArrayList<Collider<?>> candidateColliders = new ArrayList<>();
+  private final ArrayList<Collider<?>> touchedColliders = new ArrayList<>(); // The colliders touched in this step
+  private PhysicsWorld physicsWorld; // The physics world of the scene of the collider
+  private Broadphase broadphase; // The broadphase that holds the proxy of this collider
+  private int proxyId = -1;
+  private int colliderId = -1; // The id of the collider in the physics world of the scene
+  private long filterCategory;
+  private long filterMask;
   private Point2D triggerIntersectCenter;
   private Consumer<Collider<?>> onTriggerEnter;
   private Consumer<Collider<?>> onTriggerStay;
   private Consumer<Collider<?>> onTriggerExit;
   private boolean isTriggering;
 
+  // The static baking (a baked collider is kept in the static BVH of the scene instead of the broadphase)
+  private boolean isBaked;
+  private boolean canBake = true;
+  private Point2D bakedPosition;
+  private double bakedRotation;
+  private Point2D bakedScale;
+
+  // The only transform of the shape, which is only written when the transform of the object has been changed
+  private final Affine affine = new Affine();
+  private Point2D affinePosition;
+  private double affineRotation;
+  private Point2D affineScale;
+
   // collider attributes
   protected Shape shape;
   protected double rawWidth;
   protected double rawHeight;
+  protected double localCenterX;
+  protected double localCenterY;
+  protected double minX;
+  protected double minY;
+  protected double maxX;
+  protected double maxY;
 
   @Override
   public final ComponentUpdateTag COMPONENT_UPDATE_TAG() {
@@ -58,25 +103,40 @@ public abstract class Collider<T extends Shape> extends GameComponent {
 
   @Override
   public final void transformUpdate() {
+    // The shape of a sleeping object cannot change
+    if (isSleeping()) {
+      return;
+    }
+
+    // A baked collider that stays in place has nothing to update but its filter
+    if (isBaked && isInBakedPlace() && isStaticBody()) {
+      updateBakedFilter();
+      return;
+    }
     handleColliderShape();
   }
 
   @Override
   public final void fixedUpdate() {
-    if (shape == null) {
-      return;
-    }
-
-    // Update the collider physics
-    handleColliderPhysics();
-
-    // Handle the collision events
-    handleCollisionEvents();
+    // The collisions of all the colliders are detected at once by the physics world of the scene
   }
 
   @Override
   public final void onDetached() {
-    // DO NOTHING
+    // Remove the proxy from the broadphase
+    if (broadphase != null) {
+      broadphase.destroyProxy(proxyId);
+      broadphase = null;
+      proxyId = -1;
+    }
+
+    // Remove the collider from the static BVH, which wakes up the bodies that rest on it
+    if (isBaked) {
+      physicsWorld.removeStatic(this);
+      isBaked = false;
+    } else if (physicsWorld != null) {
+      physicsWorld.wakeUpContacts(this);
+    }
   }
 
   private void handleColliderShape() {
@@ -88,171 +148,160 @@ public abstract class Collider<T extends Shape> extends GameComponent {
     double centerX = bounds.getMinX() + bounds.getWidth() / 2;
     double centerY = bounds.getMinY() + bounds.getHeight() / 2;
 
-    shape.getTransforms().clear();
-    shape.getTransforms().addAll(
-        new Translate(
-            transform.position.getX() - centerX,
-            transform.position.getY() - centerY
-        ),
-        new Rotate(
-            transform.rotation,
-            centerX,
-            centerY
-        ),
-        new Scale(
-            transform.scale.getX(),
-            transform.scale.getY(),
-            centerX,
-            centerY
-        )
-    );
+    if (shape.getTransforms().size() != 1 || shape.getTransforms().get(0) != affine) {
+      shape.getTransforms().setAll(affine);
+      affinePosition = null;
+    }
+    if (!transform.position.equals(affinePosition) || transform.rotation != affineRotation
+        || !transform.scale.equals(affineScale) || centerX != localCenterX || centerY != localCenterY) {
+      // Scale and rotate around the center, then move the center to the position
+      affinePosition = transform.position;
+      affineRotation = transform.rotation;
+      affineScale = transform.scale;
+      transform.writeAffine(affine, centerX, centerY);
+    }
+    localCenterX = centerX;
+    localCenterY = centerY;
 
     updateColliderAttributes();
+    updateColliderProxy();
   }
 
-  private void handleColliderPhysics() {
-    if (shape == null || !this.isTriggering) {
+  private void updateBakedFilter() {
+    // The BVH keeps a copy of the filter of its colliders, so a changed layer or mask is baked again
+    long category = CollisionFilter.packCategory(gameObject.OBJECT_TAG(), categoryBits);
+    long mask = physicsWorld.getFilterMask(this);
+    if (category != filterCategory || mask != filterMask) {
+      filterCategory = category;
+      filterMask = mask;
+      physicsWorld.invalidateStaticBvh();
+    }
+  }
+
+  private void updateColliderProxy() {
+    // Update the AABB of the collider
+    Bounds bounds = shape.getBoundsInParent();
+    minX = bounds.getMinX();
+    minY = bounds.getMinY();
+    maxX = bounds.getMaxX();
+    maxY = bounds.getMaxY();
+
+    if (gameObject.getScene() == null) {
       return;
     }
 
-    // Handle the collision velocity
-    if (collisionVelocityToBeSet != null) {
-      PhysicsHandler physicsHandler = getComponent(PhysicsHandler.class);
-      if (physicsHandler != null) {
-        physicsHandler.velocity = collisionVelocityToBeSet;
-        collisionVelocityToBeSet = null;
-      }
+    physicsWorld = gameObject.getScene().getPhysicsWorld();
+    if (colliderId < 0) {
+      colliderId = physicsWorld.nextColliderId();
     }
-  }
 
-  private void handleCollisionEvents() {
-    boolean onCollision = false;
+    // Update the collision filter
+    filterCategory = CollisionFilter.packCategory(gameObject.OBJECT_TAG(), categoryBits);
+    filterMask = physicsWorld.getFilterMask(this);
 
-    for (GameComponent otherCollier : GameComponent.allComponents.get(gameObject.getScene()).get(
-        ComponentUpdateTag.COLLISION)) {
-      Collider<?> other = (Collider<?>) otherCollier;
+    // A baked collider only gets here if it has been moved or its shape has been changed
+    if (isBaked) {
+      physicsWorld.removeStatic(this);
+      isBaked = false;
 
-      if ((!canCollideSameTag && other.gameObject.OBJECT_TAG() == gameObject.OBJECT_TAG())) {
-        continue;
+      // A static collider that moves is demoted to the broadphase for good
+      if (!isInBakedPlace()) {
+        canBake = false;
       }
+    }
 
-      if (other != this) {
-        Shape intersection = Shape.intersect(this.shape, other.shape);
-
-        if (intersection.getBoundsInLocal().getWidth() != -1) {
-          onCollision = true;
-
-          // Calculate the center of the intersection
-          Bounds bounds = intersection.getBoundsInLocal();
-          double intersectX = bounds.getMinX() + bounds.getWidth() / 2;
-          double intersectY = bounds.getMinY() + bounds.getHeight() / 2;
-          triggerIntersectCenter = new Point2D(intersectX, intersectY);
-
-          // The first entry
-          if (!this.isTriggering) {
-            this.isTriggering = true;
-            triggerStartPoint = new Point2D(intersectX, intersectY);
-            triggerEndPoint = null;
-          }
-
-          // The first time the collider enters a new collision
-          if (!onCollideColliders.contains(other)) {
-            onCollideColliders.add(other);
-
-            if (!other.isTrigger) {
-              collisionPoint = new Point2D(intersectX, intersectY);
-            }
-
-            // Physics collision check
-            if (!isTrigger && !other.isTrigger) {
-              ///////////////// HERE TO SET THE COLLISION PHYSICS /////////////////
-              // Update the velocity for the collision
-              collisionVelocityToBeSet = updateColliderVelocity(other);
-
-              /////////////////////////////////////////////////////////////////////
-            }
-
-            // Trigger onCollisionEnter() only when the collider first enters a new collision
-            if (onTriggerEnter != null) {
-              onTriggerEnter.accept(other);
-            }
-          }
-
-          // Trigger onCollision() every frame while colliding
-          if (this.onTriggerStay != null) {
-            this.onTriggerStay.accept(other);
-          }
-
-        } else {
-          if (onCollideColliders.contains(other)) {
-            onCollideColliders.remove(other);
-
-            // Trigger onCollisionExit() when the collider exits a collision
-            if (collisionPoint != null && onTriggerExit != null) {
-              onTriggerExit.accept(other);
-            }
-
-            if (!other.isTrigger) {
-              collisionPoint = null;
-            }
-          }
-        }
+    // Bake the static collider into the static BVH instead of the broadphase
+    if (canBake && isStaticBody()) {
+      if (broadphase != null) {
+        broadphase.destroyProxy(proxyId);
+        broadphase = null;
+        proxyId = -1;
       }
+      physicsWorld.addStatic(this);
+      isBaked = true;
+      bakedPosition = transform.position;
+      bakedRotation = transform.rotation;
+      bakedScale = transform.scale;
+      return;
     }
 
-    // The final exit
-    if (!onCollision && this.isTriggering) {
-      this.isTriggering = false;
-
-      triggerEndPoint = triggerIntersectCenter;
-      triggerIntersectCenter = null;
-      triggerStartPoint = null;
+    // (Re)create the proxy if the collider is new or the broadphase of the scene has been changed
+    Broadphase sceneBroadphase = physicsWorld.getBroadphase();
+    if (broadphase != sceneBroadphase) {
+      if (broadphase != null) {
+        broadphase.destroyProxy(proxyId);
+      }
+      broadphase = sceneBroadphase;
+      proxyId = broadphase.createProxy(this, minX, minY, maxX, maxY);
+    } else {
+      broadphase.moveProxy(proxyId, minX, minY, maxX, maxY);
     }
+    broadphase.setProxyFilter(proxyId, filterCategory, filterMask);
   }
 
-  private Point2D updateColliderVelocity(Collider<?> other) {
-    if (shape == null || other.shape == null) {
-      return null;
-    }
-
+  private boolean isStaticBody() {
     PhysicsHandler physicsHandler = getComponent(PhysicsHandler.class);
-    if (physicsHandler == null || physicsHandler.isStatic) {
-      return null;
-    }
+    return physicsHandler == null || physicsHandler.isStatic;
+  }
 
-    PhysicsHandler otherPhysicsHandler = other.getComponent(PhysicsHandler.class);
+  private boolean isInBakedPlace() {
+    return transform.position.equals(bakedPosition) && transform.rotation == bakedRotation
+        && transform.scale.equals(bakedScale);
+  }
 
-    // get the center of the normal vector
-    Point2D normal = getNormalVector(collisionPoint);
-    if(normal == null) {
-      normal = other.getNormalVector(collisionPoint);
-    }
-    if(normal == null) {
-      return null;
+  private void exitCollision(Collider<?> other) {
+    onCollideColliders.remove(other);
+
+    // Record onCollisionExit() when the collider exits a collision
+    if (collisionPoint != null) {
+      physicsWorld.getEventBuffer().add(CollisionEventBuffer.EXIT, this, other, Double.NaN, Double.NaN);
     }
 
-    // get the relative velocity
-    Point2D velocity = physicsHandler.velocity;
-    Point2D otherVelocity;
-    if (otherPhysicsHandler == null) {
-      otherVelocity = Point2D.ZERO;
-    } else {
-      otherVelocity = otherPhysicsHandler.velocity;
+    if (!other.isTrigger) {
+      collisionPoint = null;
     }
-    Point2D relativeVelocity = velocity.subtract(otherVelocity);
+  }
 
-    // calculate the dot product
-    Point2D parallel = normal.multiply(relativeVelocity.dotProduct(normal));
-    Point2D perpendicular = relativeVelocity.subtract(parallel);
+  private boolean collidePrimitive(Collider<?> other, ContactManifold manifold) {
+    // Only circles and boxes get here, the polygons and the tilemaps answer their collisions themselves
+    if (this instanceof CircleCollider circle && other instanceof CircleCollider otherCircle) {
+      double dx = otherCircle.getCenterX() - circle.getCenterX();
+      double dy = otherCircle.getCenterY() - circle.getCenterY();
+      double distance = Math.hypot(dx, dy);
+      double depth = circle.getRadius() + otherCircle.getRadius() - distance;
+      if (depth < 0) {
+        return false;
+      }
+      manifold.normalX = distance == 0 ? 0 : dx / distance;
+      manifold.normalY = distance == 0 ? 1 : dy / distance;
+      manifold.depth = depth;
+
+      // The contact is halfway into the penetration
+      manifold.centerX = circle.getCenterX() + manifold.normalX * (circle.getRadius() - depth / 2);
+      manifold.centerY = circle.getCenterY() + manifold.normalY * (circle.getRadius() - depth / 2);
+      return true;
+    }
 
-    // calculate the new velocity
-    if (otherPhysicsHandler == null || otherPhysicsHandler.isStatic) {
-      return parallel.multiply(-1).add(perpendicular).add(otherVelocity);
+    if (this instanceof CircleCollider circle) {
+      // The normal of the box points from the box to the circle
+      BoxCollider box = (BoxCollider) other;
+      if (!PolygonCollider.collideConvexCircle(box.cornerX, box.cornerY, box.edgeNormalX, box.edgeNormalY, 4,
+          circle.getCenterX(), circle.getCenterY(), circle.getRadius(), manifold)) {
+        return false;
+      }
+      manifold.normalX = -manifold.normalX;
+      manifold.normalY = -manifold.normalY;
+      return true;
     }
 
-    double mass = physicsHandler.mass;
-    double otherMass = otherPhysicsHandler.mass;
-    return parallel.multiply((mass - otherMass) / (mass + otherMass)).add(perpendicular).add(otherVelocity);
+    BoxCollider box = (BoxCollider) this;
+    if (other instanceof CircleCollider circle) {
+      return PolygonCollider.collideConvexCircle(box.cornerX, box.cornerY, box.edgeNormalX, box.edgeNormalY, 4,
+          circle.getCenterX(), circle.getCenterY(), circle.getRadius(), manifold);
+    }
+    BoxCollider otherBox = (BoxCollider) other;
+    return PolygonCollider.collideConvex(box.cornerX, box.cornerY, box.edgeNormalX, box.edgeNormalY, 4,
+        otherBox.cornerX, otherBox.cornerY, otherBox.edgeNormalX, otherBox.edgeNormalY, 4, manifold);
   }
 
   /* OVERRIDABLE METHODS BELOW */
@@ -272,48 +321,371 @@ public abstract class Collider<T extends Shape> extends GameComponent {
    */
   protected abstract Point2D getNormalVector(Point2D collisionPoint);
 
+  /**
+   * Whether the exact collision tests of the collider only need the primitive geometry that it caches in its
+   * transform update, such as its AABB, center, radius or corners, instead of its JavaFX shape.
+   * This is overridden by the colliders of this package that Collider.collide() knows how to test that way.
+   */
+  boolean hasPrimitiveShape() {
+    return false;
+  }
+
   /* API BELOW */
 
+  /**
+   * Add the colliders whose proxies overlap this collider and pass its filter into the results.
+   * This is called by the physics world to generate the collision pairs of the step.
+   */
+  public void queryCandidates(List<Collider<?>> results) {
+    if (shape != null && broadphase != null) {
+      broadphase.query(minX, minY, maxX, maxY, filterCategory, filterMask, results);
+      physicsWorld.getStaticBvh().query(minX, minY, maxX, maxY, filterCategory, filterMask, results);
+    }
+  }
+
+  /**
+   * Test the exact intersection with the other collider and write the result into the manifold.
+   * The normal is only computed if both colliders are solid.
+   * Only the pairs of canCollideOffThread() may be tested on the worker threads, the others go through the JavaFX
+   * shapes, which must only be touched by the logic thread.
+   *
+   * @param other The other collider
+   * @param manifold The manifold to write into
+   */
+  public boolean collide(Collider<?> other, ContactManifold manifold) {
+    if (shape == null || other.shape == null) {
+      return false;
+    }
+
+    // A tilemap answers the collision by its own grid
+    if (other instanceof TilemapCollider tilemap) {
+      if (!tilemap.collide(this, manifold)) {
+        return false;
+      }
+      manifold.normalX = -manifold.normalX;
+      manifold.normalY = -manifold.normalY;
+      return true;
+    }
+
+    // A polygon answers the collision with the separating axis theorem
+    if (other instanceof PolygonCollider polygon) {
+      if (!polygon.collide(this, manifold)) {
+        return false;
+      }
+      manifold.normalX = -manifold.normalX;
+      manifold.normalY = -manifold.normalY;
+      return true;
+    }
+
+    // The circles and the boxes are tested on their cached geometry
+    if (hasPrimitiveShape() && other.hasPrimitiveShape()) {
+      if (!collidePrimitive(other, manifold)) {
+        return false;
+      }
+      if (isTrigger || other.isTrigger) {
+        manifold.normalX = 0;
+        manifold.normalY = 0;
+        manifold.depth = 0;
+      }
+      return true;
+    }
+
+    Bounds intersection = Shape.intersect(shape, other.shape).getBoundsInLocal();
+    if (intersection.getWidth() == -1) {
+      return false;
+    }
+
+    // Calculate the center of the intersection
+    manifold.centerX = intersection.getMinX() + intersection.getWidth() / 2;
+    manifold.centerY = intersection.getMinY() + intersection.getHeight() / 2;
+    manifold.normalX = 0;
+    manifold.normalY = 0;
+    manifold.depth = 0;
+    if (isTrigger || other.isTrigger) {
+      return true;
+    }
+
+    // The normal points from this collider to the other one
+    double centerX = (minX + maxX) / 2;
+    double centerY = (minY + maxY) / 2;
+    double otherCenterX = (other.minX + other.maxX) / 2;
+    double otherCenterY = (other.minY + other.maxY) / 2;
+    Point2D intersectCenter = new Point2D(manifold.centerX, manifold.centerY);
+    Point2D normal = getNormalVector(intersectCenter);
+    if (normal == null || normal.magnitude() == 0) {
+      normal = other.getNormalVector(intersectCenter);
+      normal = normal == null ? null : normal.multiply(-1);
+    }
+    if (normal == null || normal.magnitude() == 0) {
+      normal = new Point2D(otherCenterX - centerX, otherCenterY - centerY).normalize();
+    }
+    if (normal.getX() * (otherCenterX - centerX) + normal.getY() * (otherCenterY - centerY) < 0) {
+      normal = normal.multiply(-1);
+    }
+    manifold.normalX = normal.getX();
+    manifold.normalY = normal.getY();
+
+    // The depth is exact for two circles, and the thinner side of the intersection otherwise
+    if (this instanceof CircleCollider circle && other instanceof CircleCollider otherCircle) {
+      double distance = Math.hypot(otherCenterX - centerX, otherCenterY - centerY);
+      manifold.depth = Math.max(circle.getRadius() + otherCircle.getRadius() - distance, 0);
+    } else {
+      manifold.depth = Math.min(intersection.getWidth(), intersection.getHeight());
+    }
+    return true;
+  }
+
+  /**
+   * Start the collision events of the step. This is called by the physics world before the events are dispatched.
+   */
+  public void beginCollisions() {
+    touchedColliders.clear();
+  }
+
+  /**
+   * Handle the collision with the other collider in this step. The enter and the stay events are recorded here.
+   * This is called by the physics world in the deterministic order of the pairs.
+   *
+   * @param other The other collider
+   * @param intersectX The X of the center of the intersection
+   * @param intersectY The Y of the center of the intersection
+   */
+  public void handleCollision(Collider<?> other, double intersectX, double intersectY) {
+    touchedColliders.add(other);
+    triggerIntersectCenter = new Point2D(intersectX, intersectY);
+
+    // The first entry
+    if (!this.isTriggering) {
+      this.isTriggering = true;
+      triggerStartPoint = new Point2D(intersectX, intersectY);
+      triggerEndPoint = null;
+    }
+
+    // The first time the collider enters a new collision
+    if (!onCollideColliders.contains(other)) {
+      onCollideColliders.add(other);
+
+      // A contact wakes up the sleeping object
+      PhysicsHandler otherPhysicsHandler = other.getComponent(PhysicsHandler.class);
+      if (otherPhysicsHandler != null && otherPhysicsHandler.isSleeping()) {
+        otherPhysicsHandler.wakeUp();
+      }
+
+      if (!other.isTrigger) {
+        collisionPoint = new Point2D(intersectX, intersectY);
+      }
+
+      // Record onCollisionEnter() only when the collider first enters a new collision
+      physicsWorld.getEventBuffer().add(CollisionEventBuffer.ENTER, this, other, intersectX, intersectY);
+    }
+
+    // Record onCollision() every frame while colliding
+    physicsWorld.getEventBuffer().add(CollisionEventBuffer.STAY, this, other, intersectX, intersectY);
+  }
+
+  /**
+   * End the collision events of the step. The exit events of the colliders that were not touched are recorded here.
+   */
+  public void endCollisions() {
+    for (int i = onCollideColliders.size() - 1; i >= 0; i--) {
+      Collider<?> other = onCollideColliders.get(i);
+
+      // A baked collider never looks for the pairs itself, so it keeps the sleeping colliders until they wake up
+      if (!touchedColliders.contains(other) && !(isBaked && other.isSleeping())) {
+        exitCollision(other);
+      }
+    }
+
+    // The final exit
+    if (touchedColliders.isEmpty() && this.isTriggering) {
+      this.isTriggering = false;
+
+      triggerEndPoint = triggerIntersectCenter;
+      triggerIntersectCenter = null;
+      triggerStartPoint = null;
+    }
+    touchedColliders.clear();
+  }
+
+  /**
+   * Call the consumer of the recorded collision event. This is called by the physics world once the step is over.
+   *
+   * @param type The type of the event, see CollisionEventBuffer
+   * @param other The other collider of the event
+   */
+  public void dispatchEvent(int type, Collider<?> other) {
+    Consumer<Collider<?>> consumer;
+    if (type == CollisionEventBuffer.ENTER) {
+      consumer = onTriggerEnter;
+    } else if (type == CollisionEventBuffer.STAY) {
+      consumer = onTriggerStay;
+    } else {
+      consumer = onTriggerExit;
+    }
+    if (consumer != null) {
+      consumer.accept(other);
+    }
+  }
+
+  /**
+   * Whether the collider is baked into the static BVH of its scene.
+   */
+  public boolean isBaked() {
+    return isBaked;
+  }
+
+  /**
+   * Whether the object of the collider is sleeping.
+   */
+  public boolean isSleeping() {
+    PhysicsHandler physicsHandler = getComponent(PhysicsHandler.class);
+    return physicsHandler != null && physicsHandler.isSleeping();
+  }
+
+  /**
+   * Whether the collision with the other collider can be tested off the logic thread.
+   * This is the case if both colliders have primitive shapes, or if either is a tilemap, so the test never touches
+   * the JavaFX shapes, which are not thread-safe even to read.
+   *
+   * @param other The other collider
+   */
+  public boolean canCollideOffThread(Collider<?> other) {
+    if (this instanceof TilemapCollider || other instanceof TilemapCollider) {
+      return true;
+    }
+    return hasPrimitiveShape() && other.hasPrimitiveShape();
+  }
+
   /**
    * Check if a point is within the collider.
    *
    * @param point The point to check
    */
   public boolean isWithin(Point2D point) {
-    if (shape == null) {
+    return containsPoint(point.getX(), point.getY());
+  }
+
+  /**
+   * Check if a point is within the collider.
+   * The point is moved back into the local space of the shape analytically, so nothing is allocated.
+   *
+   * @param x The X of the point
+   * @param y The Y of the point
+   */
+  public boolean containsPoint(double x, double y) {
+    if (shape == null || x < minX || x > maxX || y < minY || y > maxY) {
       return false;
     }
 
-    // Transform the point back to the local coordinate system manually
-    Point2D localPoint = point;
-    for (var transform : shape.getTransforms()) {
-      if (transform instanceof Translate translate) {
-        localPoint = new Point2D(
-            localPoint.getX() - translate.getX(),
-            localPoint.getY() - translate.getY()
-        );
-      } else if (transform instanceof Scale scale) {
-        localPoint = new Point2D(
-            localPoint.getX() / scale.getX(),
-            localPoint.getY() / scale.getY()
-        );
-      } else if (transform instanceof Rotate rotate) {
-        double angle = -Math.toRadians(rotate.getAngle());
-        double pivotX = rotate.getPivotX();
-        double pivotY = rotate.getPivotY();
-
-        double dx = localPoint.getX() - pivotX;
-        double dy = localPoint.getY() - pivotY;
-
-        double rotatedX = dx * Math.cos(angle) - dy * Math.sin(angle);
-        double rotatedY = dx * Math.sin(angle) + dy * Math.cos(angle);
-
-        localPoint = new Point2D(rotatedX + pivotX, rotatedY + pivotY);
+    // Undo the translation and the rotation around the center, then the scale
+    double angle = Math.toRadians(transform.rotation);
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    double relX = x - transform.position.getX();
+    double relY = y - transform.position.getY();
+    double localX = (relX * cos + relY * sin) / transform.scale.getX();
+    double localY = (-relX * sin + relY * cos) / transform.scale.getY();
+
+    return shape.contains(localCenterX + localX, localCenterY + localY);
+  }
+
+  /**
+   * Sweep the collider by the given displacement against the solid colliders in the broadphase.
+   * Return the fraction of the displacement that the collider can move, which stops right inside the first hit.
+   * The sweep only runs if the displacement is longer than the half extent of the collider,
+   * because shorter moves cannot tunnel.
+   *
+   * @param dx The displacement in the X axis
+   * @param dy The displacement in the Y axis
+   */
+  public double sweep(double dx, double dy) {
+    double extent = Math.min(maxX - minX, maxY - minY) / 2;
+    double distanceSquared = dx * dx + dy * dy;
+    if (shape == null || isTrigger || broadphase == null || distanceSquared <= extent * extent) {
+      return 1;
+    }
+
+    // Gather the candidates along the swept AABB
+    candidateColliders.clear();
+    broadphase.query(
+        Math.min(minX, minX + dx), Math.min(minY, minY + dy),
+        Math.max(maxX, maxX + dx), Math.max(maxY, maxY + dy),
+        filterCategory, filterMask, candidateColliders
+    );
+    physicsWorld.getStaticBvh().query(
+        Math.min(minX, minX + dx), Math.min(minY, minY + dy),
+        Math.max(maxX, maxX + dx), Math.max(maxY, maxY + dy),
+        filterCategory, filterMask, candidateColliders
+    );
+
+    double timeOfImpact = ContinuousCollision.NO_HIT;
+    for (Collider<?> other : candidateColliders) {
+      if (other == this || other.isTrigger || other.shape == null || onCollideColliders.contains(other)) {
+        continue;
       }
+      timeOfImpact = Math.min(timeOfImpact, ContinuousCollision.timeOfImpact(this, other, dx, dy));
     }
 
-    // Check if the transformed point is within the shape
-    return shape.contains(localPoint);
+    if (timeOfImpact == ContinuousCollision.NO_HIT) {
+      return 1;
+    }
+    return Math.min(1, timeOfImpact + CONTINUOUS_PENETRATION / Math.sqrt(distanceSquared));
+  }
+
+  /**
+   * Get the packed collision category of the collider. See CollisionFilter.
+   */
+  public long getFilterCategory() {
+    return filterCategory;
+  }
+
+  /**
+   * Get the id of the collider in the physics world of its scene, or -1 if it has never been in a scene.
+   */
+  public int getColliderId() {
+    return colliderId;
+  }
+
+  /**
+   * Get the minimum X of the AABB of the collider.
+   */
+  public double getMinX() {
+    return minX;
+  }
+
+  /**
+   * Get the minimum Y of the AABB of the collider.
+   */
+  public double getMinY() {
+    return minY;
+  }
+
+  /**
+   * Get the maximum X of the AABB of the collider.
+   */
+  public double getMaxX() {
+    return maxX;
+  }
+
+  /**
+   * Get the maximum Y of the AABB of the collider.
+   */
+  public double getMaxY() {
+    return maxY;
+  }
+
+  /**
+   * Get the width of the shape before the transformation.
+   */
+  public double getRawWidth() {
+    return rawWidth;
+  }
+
+  /**
+   * Get the height of the shape before the transformation.
+   */
+  public double getRawHeight() {
+    return rawHeight;
   }
 
   /**
@@ -359,6 +731,13 @@ public abstract class Collider<T extends Shape> extends GameComponent {
     this.onTriggerExit = onTriggerExit;
   }
 
+  /**
+   * Get the colliders that this collider is currently colliding with.
+   */
+  public List<Collider<?>> getCollidingColliders() {
+    return collidingCollidersView;
+  }
+
   /**
    * Get the start point of the trigger.
    */
@@ -0,0 +1,345 @@
+package ecs.engine.component;
+
+import ecs.engine.base.GameScene;
+import java.util.Random;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * The render handler that emits, moves and draws a pool of particles, such as sparks, trails and explosions.
+ * The particles are not game objects: they are kept in primitive arrays as a ring buffer, from the oldest to the
+ * newest, moved in one loop in fixedUpdate(), and drawn in one pass through the render backend of the scene.
+ * The particles live in the world, so moving the emitter only moves where the new particles are emitted.
+ */
+public class ParticleEmitter extends RenderHandler {
+
+  ////////////// Component Settings //////////////
+
+  /// Whether the emitter emits particles continuously.
+  public boolean isEmitting = true;
+  /// The number of particles emitted per second.
+  public double emissionRate = 100;
+  /// The lifetime of a particle in seconds, and the random variation added to it.
+  public double lifetime = 1;
+  public double lifetimeVariance = 0;
+  /// The speed of a particle when it is emitted, and the random variation added to it.
+  public double speed = 100;
+  public double speedVariance = 0;
+  /// The direction of the emission in degrees, and the angle of the cone around it.
+  public double direction = -90;
+  public double spread = 360;
+  /// The acceleration applied to all the particles.
+  public double gravityX = 0;
+  public double gravityY = 0;
+  /// The ratio of the velocity that a particle loses per second.
+  public double drag = 0;
+  /// The width and height of a particle.
+  public double size = 2;
+  /// The color of a particle when it is emitted, and when it dies. The color in between is interpolated.
+  public Color startColor = Color.WHITE;
+  public Color endColor = Color.TRANSPARENT;
+
+  ////////////// Component Constants //////////////
+
+  /// The default number of particles that can be alive at once.
+  public static final int DEFAULT_CAPACITY = 4096;
+  /// The number of colors that the color of a particle steps through over its life.
+  public static final int COLOR_STEPS = 32;
+
+  ////////////////////////////////////////////////
+
+  // readonly variables
+  private int capacity = DEFAULT_CAPACITY;
+  private int liveCount;
+  private double particleMinX;
+  private double particleMinY;
+  private double particleMaxX;
+  private double particleMaxY;
+
+  // The particles in a ring buffer, the slots from head to head + slotCount are in use, but can be dead
+  private double[] positionX;
+  private double[] positionY;
+  private double[] velocityX;
+  private double[] velocityY;
+  private double[] life; // The remaining lifetime, a particle is dead when it reaches zero
+  private double[] inverseLifetime;
+  private int[] colors; // The index of the color of the particle in the palette
+  private int head;
+  private int slotCount;
+
+  // instance variables
+  private Random random;
+  private double emissionDebt; // The fraction of a particle left over from the previous emissions
+  private final Color[] palette = new Color[COLOR_STEPS];
+  private final int[] paletteArgb = new int[COLOR_STEPS];
+  private Color paletteStartColor;
+  private Color paletteEndColor;
+
+  @Override
+  public void transformUpdate() {
+    super.transformUpdate();
+    synchronized (this) {
+      if (gameObject.getScene() == null) {
+        return;
+      }
+
+      // The AABB of the emitter covers all its particles, so the camera culls the emitter as a whole
+      double half = size / 2;
+      if (liveCount == 0) {
+        moveInRenderGrid(transform.position.getX() - half, transform.position.getY() - half,
+            transform.position.getX() + half, transform.position.getY() + half);
+      } else {
+        moveInRenderGrid(particleMinX - half, particleMinY - half, particleMaxX + half, particleMaxY + half);
+      }
+    }
+  }
+
+  @Override
+  public void fixedUpdate() {
+    synchronized (this) {
+      double deltaTime = GameScene.getFixedDeltaTime();
+      if (isEmitting && emissionRate > 0) {
+        emissionDebt += emissionRate * deltaTime;
+        int count = (int) emissionDebt;
+        emissionDebt -= count;
+        emitParticles(count);
+      }
+      if (slotCount > 0) {
+        updatePalette();
+        simulate(deltaTime);
+      }
+    }
+  }
+
+  @Override
+  public void renderUpdate() {
+    synchronized (this) {
+      if (gameObject == null || liveCount == 0) {
+        return;
+      }
+
+      // Render all the particles through the backend of the scene
+      gameObject.getScene().getRenderBackend().drawParticles(this);
+    }
+  }
+
+  /* API BELOW */
+
+  /**
+   * Emit a burst of particles at the position of the emitter.
+   * When the pool is full, the oldest particles are replaced.
+   *
+   * @param count The number of particles to be emitted
+   */
+  public void emit(int count) {
+    synchronized (this) {
+      emitParticles(count);
+      updatePalette();
+    }
+  }
+
+  /**
+   * Remove all the particles.
+   */
+  public void clear() {
+    synchronized (this) {
+      head = 0;
+      slotCount = 0;
+      liveCount = 0;
+      emissionDebt = 0;
+    }
+  }
+
+  /**
+   * Set the number of particles that can be alive at once. The current particles are removed.
+   */
+  public void setCapacity(int capacity) {
+    if (capacity <= 0) {
+      throw new RuntimeException("The capacity of the particle emitter must be positive: " + capacity);
+    }
+    synchronized (this) {
+      this.capacity = capacity;
+      positionX = null;
+      clear();
+    }
+  }
+
+  /**
+   * Get the number of particles that can be alive at once.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the number of particles that are alive.
+   */
+  public int getParticleCount() {
+    return liveCount;
+  }
+
+  /**
+   * Draw all the particles in one pass, in world coordinates. The fill is only set when the color changes.
+   * This is called by the render backend while the emitter is locked.
+   *
+   * @param graphics The graphics context, whose transform maps the world to its surface
+   */
+  public void paint(GraphicsContext graphics) {
+    double half = size / 2;
+    int color = -1;
+    for (int i = 0, index = head; i < slotCount; i++, index = index + 1 == capacity ? 0 : index + 1) {
+      if (life[index] <= 0) {
+        continue;
+      }
+      if (colors[index] != color) {
+        color = colors[index];
+        graphics.setFill(palette[color]);
+      }
+      graphics.fillRect(positionX[index] - half, positionY[index] - half, size, size);
+    }
+  }
+
+  /**
+   * Copy the positions and the ARGB colors of the live particles, for the render backends that do not draw with a
+   * graphics context. This is called by the render backend while the emitter is locked.
+   *
+   * @param positions The X and Y of the particles, which holds at least twice the number of the particles
+   * @param colors The ARGB colors of the particles, which holds at least the number of the particles
+   * @return The number of the particles
+   */
+  public int copyParticles(double[] positions, int[] colors) {
+    int count = 0;
+    for (int i = 0, index = head; i < slotCount; i++, index = index + 1 == capacity ? 0 : index + 1) {
+      if (life[index] > 0) {
+        positions[2 * count] = positionX[index];
+        positions[2 * count + 1] = positionY[index];
+        colors[count] = paletteArgb[this.colors[index]];
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /* private methods below */
+
+  private void emitParticles(int count) {
+    if (count <= 0) {
+      return;
+    }
+    if (positionX == null) {
+      positionX = new double[capacity];
+      positionY = new double[capacity];
+      velocityX = new double[capacity];
+      velocityY = new double[capacity];
+      life = new double[capacity];
+      inverseLifetime = new double[capacity];
+      colors = new int[capacity];
+    }
+    if (random == null) {
+      random = gameObject == null || gameObject.getScene() == null ? new Random()
+          : new Random(gameObject.getScene().getRandom().nextLong());
+    }
+
+    double x = transform.position.getX();
+    double y = transform.position.getY();
+    if (liveCount == 0) {
+      particleMinX = x;
+      particleMinY = y;
+      particleMaxX = x;
+      particleMaxY = y;
+    } else {
+      particleMinX = Math.min(particleMinX, x);
+      particleMinY = Math.min(particleMinY, y);
+      particleMaxX = Math.max(particleMaxX, x);
+      particleMaxY = Math.max(particleMaxY, y);
+    }
+    for (int i = 0; i < count; i++) {
+      // Replace the oldest particle when the pool is full
+      if (slotCount == capacity) {
+        if (life[head] > 0) {
+          liveCount--;
+        }
+        head = head + 1 == capacity ? 0 : head + 1;
+        slotCount--;
+      }
+
+      int index = head + slotCount;
+      if (index >= capacity) {
+        index -= capacity;
+      }
+      double angle = Math.toRadians(direction + (random.nextDouble() - 0.5) * spread);
+      double particleSpeed = speed + random.nextDouble() * speedVariance;
+      double particleLifetime = Math.max(lifetime + random.nextDouble() * lifetimeVariance, 1e-6);
+      positionX[index] = x;
+      positionY[index] = y;
+      velocityX[index] = Math.cos(angle) * particleSpeed;
+      velocityY[index] = Math.sin(angle) * particleSpeed;
+      life[index] = particleLifetime;
+      inverseLifetime[index] = 1 / particleLifetime;
+      colors[index] = 0;
+      slotCount++;
+      liveCount++;
+    }
+  }
+
+  private void simulate(double deltaTime) {
+    double damping = Math.max(0, 1 - drag * deltaTime);
+    double gravityStepX = gravityX * deltaTime;
+    double gravityStepY = gravityY * deltaTime;
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+
+    for (int i = 0, index = head; i < slotCount; i++, index = index + 1 == capacity ? 0 : index + 1) {
+      if (life[index] <= 0) {
+        continue;
+      }
+      life[index] -= deltaTime;
+      if (life[index] <= 0) {
+        liveCount--;
+        continue;
+      }
+
+      double vx = (velocityX[index] + gravityStepX) * damping;
+      double vy = (velocityY[index] + gravityStepY) * damping;
+      double x = positionX[index] + vx * deltaTime;
+      double y = positionY[index] + vy * deltaTime;
+      velocityX[index] = vx;
+      velocityY[index] = vy;
+      positionX[index] = x;
+      positionY[index] = y;
+      colors[index] = (int) ((1 - life[index] * inverseLifetime[index]) * (COLOR_STEPS - 1) + 0.5);
+
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+    particleMinX = minX;
+    particleMinY = minY;
+    particleMaxX = maxX;
+    particleMaxY = maxY;
+
+    // The dead particles at the head of the ring are released, the ones in between wait until they reach it
+    while (slotCount > 0 && life[head] <= 0) {
+      head = head + 1 == capacity ? 0 : head + 1;
+      slotCount--;
+    }
+  }
+
+  private void updatePalette() {
+    if (startColor == paletteStartColor && endColor == paletteEndColor) {
+      return;
+    }
+    for (int i = 0; i < COLOR_STEPS; i++) {
+      palette[i] = startColor.interpolate(endColor, (double) i / (COLOR_STEPS - 1));
+      paletteArgb[i] = (int) Math.round(palette[i].getOpacity() * 255) << 24
+          | (int) Math.round(palette[i].getRed() * 255) << 16
+          | (int) Math.round(palette[i].getGreen() * 255) << 8
+          | (int) Math.round(palette[i].getBlue() * 255);
+    }
+    paletteStartColor = startColor;
+    paletteEndColor = endColor;
+  }
+}
@@ -24,10 +24,18 @@ public class PhysicsHandler extends GameComponent {
   /// The maximum angular acceleration of the object.
   public static final double MAX_ANGULAR_ACCELERATION = 100;
 
+  /// The speed (and angular speed) below which the object is resting.
+  public static final double SLEEP_SPEED_THRESHOLD = 5;
+
+  /// The number of fixed steps that the object has to rest before it falls asleep.
+  public static final int SLEEP_STEP_COUNT = 50;
+
   ////////////// Component Settings //////////////
 
   /// Whether the object is static.
   public boolean isStatic = false;
+  /// Whether the object falls asleep when it rests.
+  public boolean canSleep = true;
   /// Whether the object is affected by gravity.
   public boolean applyGravity = false;
   /// Whether the object is affected by air resistance.
@@ -49,10 +57,24 @@ public class PhysicsHandler extends GameComponent {
   public double gravitation;
   /// The air resistance per second of the object.
   public double airResistancePercentage; // per second
+  /// The restitution of the object. 1 is a perfectly elastic bounce, 0 is no bounce at all.
+  public double restitution;
+
+  // readonly variables
+  /// The index of the object in the scene-wide physics passes.
+  /// This is assigned by the physics world in every fixed step.
+  public int bodyIndex;
+  /// Whether the linear motion of this step is left to the batch integration of the physics world.
+  public boolean isBatchIntegrated;
 
   // instance variables
   private double oldAirResistancePercentage;
   private double realAirResistancePercentage; // per rate
+  private boolean isSleeping;
+  private int restingSteps;
+  private Point2D sleepPosition; // The transform and velocity at the moment of sleeping, to detect writes
+  private Point2D sleepVelocity;
+  private double sleepRotation;
 
   @Override
   public ComponentUpdateTag COMPONENT_UPDATE_TAG() {
@@ -68,22 +90,44 @@ public class PhysicsHandler extends GameComponent {
     angularAcceleration = 0;
     gravitation = 1000;
     airResistancePercentage = 0.25;
+    restitution = 1;
   }
 
   @Override
   public void fixedUpdate() {
-    // Apply gravitation
-    applyGravity();
+    isBatchIntegrated = false;
+
+    // A sleeping object skips the integration until it is woken up
+    if (isSleeping()) {
+      return;
+    }
+
+    // Count the resting steps with the velocity that the last step ended with
+    if (velocity.magnitude() < SLEEP_SPEED_THRESHOLD && Math.abs(angularVelocity) < SLEEP_SPEED_THRESHOLD) {
+      restingSteps++;
+    } else {
+      restingSteps = 0;
+    }
 
-    // Apply air resistance
-    applyAirResistance();
+    // The linear motion is integrated in a batch by the physics world, unless the object sweeps its move
+    isBatchIntegrated = !hasContinuousCollider();
+    if (!isBatchIntegrated) {
+      // Apply gravitation
+      applyGravity();
 
-    // Apply acceleration
-    applyAcceleration();
+      // Apply air resistance
+      applyAirResistance();
+
+      // Apply acceleration
+      applyAcceleration();
+    }
+    angularAcceleration = Math.min(Math.max(angularAcceleration, -MAX_ANGULAR_ACCELERATION), MAX_ANGULAR_ACCELERATION);
     applyAngularAcceleration();
 
     // Apply velocity
-    applyVelocity();
+    if (!isBatchIntegrated) {
+      applyVelocity();
+    }
     applyAngularVelocity();
   }
 
@@ -95,11 +139,7 @@ public class PhysicsHandler extends GameComponent {
 
   private void applyAirResistance() {
     if (applyAirResistance) {
-      if (oldAirResistancePercentage != airResistancePercentage) {
-        realAirResistancePercentage = 1 - Math.pow(1 - airResistancePercentage, GameScene.getFixedDeltaTime());
-        oldAirResistancePercentage = airResistancePercentage;
-      }
-      velocity = velocity.multiply(1 - realAirResistancePercentage);
+      velocity = velocity.multiply(getDampingFactor());
     }
   }
 
@@ -111,7 +151,6 @@ public class PhysicsHandler extends GameComponent {
     if (velocity.magnitude() > MAX_SPEED) {
       velocity = velocity.normalize().multiply(MAX_SPEED);
     }
-    angularAcceleration = Math.min(Math.max(angularAcceleration, -MAX_ANGULAR_ACCELERATION), MAX_ANGULAR_ACCELERATION);
   }
 
   private void applyAngularAcceleration() {
@@ -120,7 +159,31 @@ public class PhysicsHandler extends GameComponent {
   }
 
   private void applyVelocity() {
-    transform.position = transform.position.add(velocity.multiply(GameScene.getFixedDeltaTime()));
+    double dx = velocity.getX() * GameScene.getFixedDeltaTime();
+    double dy = velocity.getY() * GameScene.getFixedDeltaTime();
+
+    // Clamp the move of a fast continuous collider to its first hit
+    Collider<?> collider = getContinuousCollider();
+    if (collider != null) {
+      double fraction = collider.sweep(dx, dy);
+      dx *= fraction;
+      dy *= fraction;
+    }
+
+    transform.position = transform.position.add(dx, dy);
+  }
+
+  private boolean hasContinuousCollider() {
+    return getContinuousCollider() != null;
+  }
+
+  private Collider<?> getContinuousCollider() {
+    for (GameComponent component : gameObject.getAllComponents().values()) {
+      if (component instanceof Collider<?> collider && collider.continuousDetection) {
+        return collider;
+      }
+    }
+    return null;
   }
 
   private void applyAngularVelocity() {
@@ -129,12 +192,35 @@ public class PhysicsHandler extends GameComponent {
 
   /* API BELOW */
 
+  /**
+   * Get the velocity that the gravity adds in Y in this fixed step. This is used by the batch integration.
+   */
+  public double getGravityStep() {
+    return applyGravity ? gravitation * mass * GameScene.getFixedDeltaTime() : 0;
+  }
+
+  /**
+   * Get the factor that the velocity is multiplied by for the air resistance in this fixed step.
+   * This is used by the batch integration.
+   */
+  public double getDampingFactor() {
+    if (!applyAirResistance) {
+      return 1;
+    }
+    if (oldAirResistancePercentage != airResistancePercentage) {
+      realAirResistancePercentage = 1 - Math.pow(1 - airResistancePercentage, GameScene.getFixedDeltaTime());
+      oldAirResistancePercentage = airResistancePercentage;
+    }
+    return 1 - realAirResistancePercentage;
+  }
+
   /**
    * Applies a force to the object.
    * @param force The force to apply.
    */
   public void applyForce(Point2D force) {
     acceleration = force.multiply(1.0 / mass);
+    wakeUp();
   }
 
   /**
@@ -143,6 +229,7 @@ public class PhysicsHandler extends GameComponent {
    */
   public void applyTorque(double torque) {
     angularAcceleration = torque / mass;
+    wakeUp();
   }
 
   /**
@@ -151,6 +238,7 @@ public class PhysicsHandler extends GameComponent {
    */
   public void applyImpulse(Point2D impulse) {
     velocity = velocity.add(impulse.multiply(1.0 / mass));
+    wakeUp();
   }
 
   /**
@@ -159,5 +247,46 @@ public class PhysicsHandler extends GameComponent {
    */
   public void applyAngularImpulse(double angularImpulse) {
     angularVelocity += angularImpulse / mass;
+    wakeUp();
+  }
+
+  /**
+   * Whether the object is sleeping.
+   * A write to the position, the rotation or the velocity since the object fell asleep wakes it up.
+   */
+  public boolean isSleeping() {
+    if (isSleeping && (transform.position != sleepPosition || transform.rotation != sleepRotation
+        || velocity != sleepVelocity)) {
+      wakeUp();
+    }
+    return isSleeping;
+  }
+
+  /**
+   * Whether the object has been resting long enough to fall asleep.
+   */
+  public boolean isResting() {
+    return canSleep && !isStatic && restingSteps >= SLEEP_STEP_COUNT;
+  }
+
+  /**
+   * Put the object to sleep. The velocity of a sleeping object is zero.
+   */
+  public void sleep() {
+    velocity = Point2D.ZERO;
+    angularVelocity = 0;
+
+    isSleeping = true;
+    sleepPosition = transform.position;
+    sleepVelocity = velocity;
+    sleepRotation = transform.rotation;
+  }
+
+  /**
+   * Wake the object up.
+   */
+  public void wakeUp() {
+    isSleeping = false;
+    restingSteps = 0;
   }
 }
@@ -0,0 +1,539 @@
+package ecs.engine.component;
+
+import ecs.engine.physics.ContactManifold;
+import ecs.engine.physics.ContinuousCollision;
+import ecs.engine.physics.RaycastHit;
+import java.util.List;
+import javafx.geometry.Point2D;
+import javafx.scene.shape.Polygon;
+
+/**
+ * The collider that represents a convex polygon.
+ * The local vertices and the edge normals are cached once per shape, and the world vertices and normals are only
+ * recomputed when the transform changes. The collisions against circles, boxes and other polygons are tested with
+ * the separating axis theorem on primitive arrays, without going through Shape.intersect().
+ */
+public class PolygonCollider extends Collider<Polygon> {
+
+  ////////////// Component Constants //////////////
+
+  /// The distance within which the vertices of a polygon count as the same contact feature,
+  /// so a resting edge makes its contact in the middle of the edge instead of at a corner.
+  public static final double CONTACT_FEATURE_TOLERANCE = 0.5;
+
+  /////////////////////////////////////////////////
+
+  // readonly variables
+  private int vertexCount;
+  private double[] localX = new double[0]; // The vertices relative to the center of the shape, clockwise
+  private double[] localY = new double[0];
+  private double[] localNormalX = new double[0]; // The outward normal of the edge from vertex i to vertex i + 1
+  private double[] localNormalY = new double[0];
+  private double[] worldX = new double[0];
+  private double[] worldY = new double[0];
+  private double[] worldNormalX = new double[0];
+  private double[] worldNormalY = new double[0];
+
+  // instance variables
+  private Polygon cachedShape; // The shape that the local vertices were cached from
+  private Point2D cachedPosition;
+  private double cachedRotation;
+  private Point2D cachedScale;
+
+  @Override
+  protected void updateColliderAttributes() {
+    if (shape != cachedShape) {
+      cacheLocalVertices();
+    } else if (transform.position.equals(cachedPosition) && transform.rotation == cachedRotation
+        && transform.scale.equals(cachedScale)) {
+      return;
+    }
+    cachedPosition = transform.position;
+    cachedRotation = transform.rotation;
+    cachedScale = transform.scale;
+
+    // Scale, then rotate, then translate, like the transforms of the shape
+    double cos = transform.getRotationCos();
+    double sin = transform.getRotationSin();
+    double scaleX = transform.scale.getX();
+    double scaleY = transform.scale.getY();
+    double positionX = transform.position.getX();
+    double positionY = transform.position.getY();
+    for (int i = 0; i < vertexCount; i++) {
+      double x = localX[i] * scaleX;
+      double y = localY[i] * scaleY;
+      worldX[i] = positionX + x * cos - y * sin;
+      worldY[i] = positionY + x * sin + y * cos;
+
+      // The normals are transformed by the inverse transpose, so they stay outward for any scale
+      double normalX = localNormalX[i] / scaleX;
+      double normalY = localNormalY[i] / scaleY;
+      double length = Math.hypot(normalX, normalY);
+      normalX /= length;
+      normalY /= length;
+      worldNormalX[i] = normalX * cos - normalY * sin;
+      worldNormalY[i] = normalX * sin + normalY * cos;
+    }
+  }
+
+  @Override
+  protected Point2D getNormalVector(Point2D collisionPoint) {
+    // The normal of the edge closest to the collision point
+    int closestEdge = 0;
+    double minDistance = Double.MAX_VALUE;
+    for (int i = 0; i < vertexCount; i++) {
+      double distance = Math.abs((collisionPoint.getX() - worldX[i]) * worldNormalX[i]
+          + (collisionPoint.getY() - worldY[i]) * worldNormalY[i]);
+      if (distance < minDistance) {
+        minDistance = distance;
+        closestEdge = i;
+      }
+    }
+    return new Point2D(worldNormalX[closestEdge], worldNormalY[closestEdge]);
+  }
+
+  @Override
+  boolean hasPrimitiveShape() {
+    return true;
+  }
+
+  /* API HERE */
+
+  /**
+   * Set the vertices of the convex polygon.
+   * This needs to be called after the collider is attached to a GameObject.
+   *
+   * @param points The X and Y of the vertices in the local space, in either winding order
+   */
+  public void setVertices(double... points) {
+    setShape(new Polygon(points));
+  }
+
+  /**
+   * Set the vertices of the convex polygon.
+   * This needs to be called after the collider is attached to a GameObject.
+   *
+   * @param points The vertices in the local space, in either winding order
+   */
+  public void setVertices(List<Point2D> points) {
+    double[] coordinates = new double[points.size() * 2];
+    for (int i = 0; i < points.size(); i++) {
+      coordinates[2 * i] = points.get(i).getX();
+      coordinates[2 * i + 1] = points.get(i).getY();
+    }
+    setVertices(coordinates);
+  }
+
+  /**
+   * Get the number of vertices of the polygon.
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * Get the vertex in the world space.
+   *
+   * @param index The index of the vertex, clockwise on the screen
+   */
+  public Point2D getVertex(int index) {
+    return new Point2D(worldX[index], worldY[index]);
+  }
+
+  /**
+   * Get the outward normal of the edge from the vertex to the next one in the world space.
+   *
+   * @param index The index of the edge
+   */
+  public Point2D getEdgeNormal(int index) {
+    return new Point2D(worldNormalX[index], worldNormalY[index]);
+  }
+
+  @Override
+  public boolean containsPoint(double x, double y) {
+    if (shape == null || x < minX || x > maxX || y < minY || y > maxY) {
+      return false;
+    }
+
+    // The point is inside if it is behind every edge
+    for (int i = 0; i < vertexCount; i++) {
+      if ((x - worldX[i]) * worldNormalX[i] + (y - worldY[i]) * worldNormalY[i] > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Test the collision against the other collider with the separating axis theorem.
+   * Circles, boxes and polygons are tested exactly. Any other collider is left to Collider.collide().
+   */
+  @Override
+  public boolean collide(Collider<?> other, ContactManifold manifold) {
+    if (shape == null || other.shape == null) {
+      return false;
+    }
+
+    boolean isColliding;
+    if (other instanceof PolygonCollider polygon) {
+      isColliding = collideConvex(worldX, worldY, worldNormalX, worldNormalY, vertexCount,
+          polygon.worldX, polygon.worldY, polygon.worldNormalX, polygon.worldNormalY, polygon.vertexCount, manifold);
+    } else if (other instanceof BoxCollider box) {
+      // The box is tested as a polygon of the four corners that it caches when its transform changes
+      isColliding = collideConvex(worldX, worldY, worldNormalX, worldNormalY, vertexCount,
+          box.cornerX, box.cornerY, box.edgeNormalX, box.edgeNormalY, 4, manifold);
+    } else if (other instanceof CircleCollider circle) {
+      isColliding = collideConvexCircle(worldX, worldY, worldNormalX, worldNormalY, vertexCount,
+          circle.getCenterX(), circle.getCenterY(), circle.getRadius(), manifold);
+    } else {
+      return super.collide(other, manifold);
+    }
+
+    if (!isColliding) {
+      return false;
+    }
+    if (isTrigger || other.isTrigger) {
+      manifold.normalX = 0;
+      manifold.normalY = 0;
+      manifold.depth = 0;
+    }
+    return true;
+  }
+
+  /**
+   * Cast the segment from the origin to (originX + dx, originY + dy) against the polygon.
+   * Return the fraction of the segment at the hit and write the hit point and normal into the hit,
+   * or return ContinuousCollision.NO_HIT. A segment that starts inside the polygon does not hit it.
+   */
+  public double raycast(double originX, double originY, double dx, double dy, RaycastHit hit) {
+    // Clip the segment by the half planes of the edges
+    double enter = 0;
+    double exit = 1;
+    int enterEdge = -1;
+    for (int i = 0; i < vertexCount; i++) {
+      double distance = (originX - worldX[i]) * worldNormalX[i] + (originY - worldY[i]) * worldNormalY[i];
+      double speed = dx * worldNormalX[i] + dy * worldNormalY[i];
+      if (speed == 0) {
+        if (distance > 0) {
+          return ContinuousCollision.NO_HIT;
+        }
+        continue;
+      }
+
+      double t = -distance / speed;
+      if (speed < 0) {
+        if (t > enter) {
+          enter = t;
+          enterEdge = i;
+        }
+      } else {
+        exit = Math.min(exit, t);
+      }
+      if (enter > exit) {
+        return ContinuousCollision.NO_HIT;
+      }
+    }
+
+    if (enterEdge < 0) {
+      return ContinuousCollision.NO_HIT;
+    }
+    hit.pointX = originX + dx * enter;
+    hit.pointY = originY + dy * enter;
+    hit.normalX = worldNormalX[enterEdge];
+    hit.normalY = worldNormalY[enterEdge];
+    return enter;
+  }
+
+  /**
+   * Whether the polygon overlaps the circle.
+   */
+  public boolean overlapsCircle(double centerX, double centerY, double radius) {
+    return vertexCount > 0 && separation(centerX, centerY) <= radius;
+  }
+
+  /**
+   * Whether the polygon overlaps the axis-aligned box.
+   */
+  public boolean overlapsBox(double minX, double minY, double maxX, double maxY) {
+    if (vertexCount == 0 || this.minX > maxX || this.maxX < minX || this.minY > maxY || this.maxY < minY) {
+      return false;
+    }
+
+    // The AABB covers the axes of the box, so only the axes of the polygon are left
+    double centerX = (minX + maxX) / 2;
+    double centerY = (minY + maxY) / 2;
+    double halfX = (maxX - minX) / 2;
+    double halfY = (maxY - minY) / 2;
+    for (int i = 0; i < vertexCount; i++) {
+      double distance = (centerX - worldX[i]) * worldNormalX[i] + (centerY - worldY[i]) * worldNormalY[i];
+      if (distance > halfX * Math.abs(worldNormalX[i]) + halfY * Math.abs(worldNormalY[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* private methods below */
+
+  private void cacheLocalVertices() {
+    cachedShape = (Polygon) shape;
+    List<Double> points = cachedShape.getPoints();
+    int count = points.size() / 2;
+    if (count < 3) {
+      throw new RuntimeException("A polygon collider needs at least 3 vertices, but got " + count + ".");
+    }
+
+    vertexCount = count;
+    localX = new double[count];
+    localY = new double[count];
+    localNormalX = new double[count];
+    localNormalY = new double[count];
+    worldX = new double[count];
+    worldY = new double[count];
+    worldNormalX = new double[count];
+    worldNormalY = new double[count];
+
+    // The vertices are relative to the center of the shape, which the position of the transform is at
+    double area = 0;
+    for (int i = 0; i < count; i++) {
+      localX[i] = points.get(2 * i) - localCenterX;
+      localY[i] = points.get(2 * i + 1) - localCenterY;
+    }
+    for (int i = 0; i < count; i++) {
+      int next = (i + 1) % count;
+      area += localX[i] * localY[next] - localX[next] * localY[i];
+    }
+
+    // Keep one winding order, so the normals of the edges point outward
+    if (area < 0) {
+      for (int i = 0, j = count - 1; i < j; i++, j--) {
+        double x = localX[i];
+        double y = localY[i];
+        localX[i] = localX[j];
+        localY[i] = localY[j];
+        localX[j] = x;
+        localY[j] = y;
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      int next = (i + 1) % count;
+      int afterNext = (i + 2) % count;
+      double edgeX = localX[next] - localX[i];
+      double edgeY = localY[next] - localY[i];
+      double length = Math.hypot(edgeX, edgeY);
+      if (length == 0) {
+        throw new RuntimeException("A polygon collider cannot have two identical vertices in a row.");
+      }
+      if (edgeX * (localY[afterNext] - localY[next]) - edgeY * (localX[afterNext] - localX[next]) < 0) {
+        throw new RuntimeException("A polygon collider must be convex.");
+      }
+      localNormalX[i] = edgeY / length;
+      localNormalY[i] = -edgeX / length;
+    }
+
+    // Force the world vertices to be recomputed
+    cachedPosition = null;
+  }
+
+  /**
+   * Test two convex polygons with the separating axis theorem, with the normal from the first to the second.
+   * This only reads the given arrays, so it is safe to run on the worker threads of the narrowphase.
+   */
+  static boolean collideConvex(double[] x, double[] y, double[] normalsX, double[] normalsY, int count,
+      double[] otherX, double[] otherY, double[] otherNormalsX, double[] otherNormalsY, int otherCount,
+      ContactManifold manifold) {
+    double depth = Double.MAX_VALUE;
+    double normalX = 0;
+    double normalY = 0;
+
+    // The axis of the least overlap among the edges of both polygons
+    for (int side = 0; side < 2; side++) {
+      double[] axisX = side == 0 ? normalsX : otherNormalsX;
+      double[] axisY = side == 0 ? normalsY : otherNormalsY;
+      int axisCount = side == 0 ? count : otherCount;
+      for (int i = 0; i < axisCount; i++) {
+        double overlap = overlapOnAxis(axisX[i], axisY[i], x, y, count, otherX, otherY, otherCount);
+        if (overlap < 0) {
+          return false;
+        }
+        if (overlap < depth) {
+          depth = overlap;
+          normalX = axisX[i];
+          normalY = axisY[i];
+        }
+      }
+    }
+
+    // The normal points from this polygon to the other one
+    double centerDistance = 0;
+    for (int i = 0; i < otherCount; i++) {
+      centerDistance += (otherX[i] * normalX + otherY[i] * normalY) / otherCount;
+    }
+    for (int i = 0; i < count; i++) {
+      centerDistance -= (x[i] * normalX + y[i] * normalY) / count;
+    }
+    if (centerDistance < 0) {
+      normalX = -normalX;
+      normalY = -normalY;
+    }
+
+    // The contact is in the middle of the overlapping part of the deepest features of both polygons
+    double tangentX = -normalY;
+    double tangentY = normalX;
+    double thisFront = extreme(x, y, count, normalX, normalY, true);
+    double otherFront = extreme(otherX, otherY, otherCount, normalX, normalY, false);
+    double thisLow = featureBound(x, y, count, normalX, normalY, thisFront, false);
+    double thisHigh = featureBound(x, y, count, normalX, normalY, thisFront, true);
+    double otherLow = featureBound(otherX, otherY, otherCount, normalX, normalY, otherFront, false);
+    double otherHigh = featureBound(otherX, otherY, otherCount, normalX, normalY, otherFront, true);
+    double low = Math.max(thisLow, otherLow);
+    double high = Math.min(thisHigh, otherHigh);
+    double tangent;
+    if (low <= high) {
+      tangent = (low + high) / 2;
+    } else {
+      // The features do not overlap along the tangent, so the contact is between their closest ends
+      tangent = thisHigh < otherLow ? (thisHigh + otherLow) / 2 : (otherHigh + thisLow) / 2;
+    }
+    double along = (thisFront + otherFront) / 2;
+
+    manifold.centerX = tangentX * tangent + normalX * along;
+    manifold.centerY = tangentY * tangent + normalY * along;
+    manifold.normalX = normalX;
+    manifold.normalY = normalY;
+    manifold.depth = depth;
+    return true;
+  }
+
+  /**
+   * Test a convex polygon against a circle, with the normal from the polygon to the circle.
+   * This only reads the given arrays, so it is safe to run on the worker threads of the narrowphase.
+   */
+  static boolean collideConvexCircle(double[] x, double[] y, double[] normalsX, double[] normalsY, int count,
+      double centerX, double centerY, double radius, ContactManifold manifold) {
+    double depth = Double.MAX_VALUE;
+    double normalX = 0;
+    double normalY = 0;
+
+    // The edges of the polygon
+    for (int i = 0; i < count; i++) {
+      double distance = (centerX - x[i]) * normalsX[i] + (centerY - y[i]) * normalsY[i];
+      double overlap = radius - distance;
+      if (overlap < 0) {
+        return false;
+      }
+      if (overlap < depth) {
+        depth = overlap;
+        normalX = normalsX[i];
+        normalY = normalsY[i];
+      }
+    }
+
+    // The axis from the closest vertex to the center of the circle
+    int closest = 0;
+    double closestDistanceSquared = Double.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      double dx = centerX - x[i];
+      double dy = centerY - y[i];
+      if (dx * dx + dy * dy < closestDistanceSquared) {
+        closestDistanceSquared = dx * dx + dy * dy;
+        closest = i;
+      }
+    }
+    double closestDistance = Math.sqrt(closestDistanceSquared);
+    if (closestDistance > 0) {
+      double axisX = (centerX - x[closest]) / closestDistance;
+      double axisY = (centerY - y[closest]) / closestDistance;
+      double front = extreme(x, y, count, axisX, axisY, true);
+      double overlap = front - (centerX * axisX + centerY * axisY - radius);
+      if (overlap < 0) {
+        return false;
+      }
+      if (overlap < depth) {
+        depth = overlap;
+        normalX = axisX;
+        normalY = axisY;
+      }
+    }
+
+    // The contact is halfway into the penetration of the circle
+    manifold.centerX = centerX - normalX * (radius - depth / 2);
+    manifold.centerY = centerY - normalY * (radius - depth / 2);
+    manifold.normalX = normalX;
+    manifold.normalY = normalY;
+    manifold.depth = depth;
+    return true;
+  }
+
+  private static double overlapOnAxis(double axisX, double axisY, double[] x, double[] y, int count,
+      double[] otherX, double[] otherY, int otherCount) {
+    double thisMin = Double.MAX_VALUE;
+    double thisMax = -Double.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      double projection = x[i] * axisX + y[i] * axisY;
+      thisMin = Math.min(thisMin, projection);
+      thisMax = Math.max(thisMax, projection);
+    }
+    double otherMin = Double.MAX_VALUE;
+    double otherMax = -Double.MAX_VALUE;
+    for (int i = 0; i < otherCount; i++) {
+      double projection = otherX[i] * axisX + otherY[i] * axisY;
+      otherMin = Math.min(otherMin, projection);
+      otherMax = Math.max(otherMax, projection);
+    }
+    return Math.min(thisMax - otherMin, otherMax - thisMin);
+  }
+
+  private double separation(double x, double y) {
+    // The distance from the point to the polygon, negative inside
+    double maxDistance = -Double.MAX_VALUE;
+    int edge = 0;
+    for (int i = 0; i < vertexCount; i++) {
+      double distance = (x - worldX[i]) * worldNormalX[i] + (y - worldY[i]) * worldNormalY[i];
+      if (distance > maxDistance) {
+        maxDistance = distance;
+        edge = i;
+      }
+    }
+    if (maxDistance <= 0) {
+      return maxDistance;
+    }
+
+    // Outside, the closest point is on one of the edges next to the most separating one
+    double distance = Double.MAX_VALUE;
+    for (int i = edge - 1; i <= edge + 1; i++) {
+      int start = (i + vertexCount) % vertexCount;
+      int end = (start + 1) % vertexCount;
+      double edgeX = worldX[end] - worldX[start];
+      double edgeY = worldY[end] - worldY[start];
+      double t = ((x - worldX[start]) * edgeX + (y - worldY[start]) * edgeY) / (edgeX * edgeX + edgeY * edgeY);
+      t = Math.max(0, Math.min(1, t));
+      distance = Math.min(distance, Math.hypot(x - worldX[start] - edgeX * t, y - worldY[start] - edgeY * t));
+    }
+    return distance;
+  }
+
+  private static double extreme(double[] x, double[] y, int count, double axisX, double axisY, boolean isMax) {
+    double extreme = isMax ? -Double.MAX_VALUE : Double.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      double projection = x[i] * axisX + y[i] * axisY;
+      extreme = isMax ? Math.max(extreme, projection) : Math.min(extreme, projection);
+    }
+    return extreme;
+  }
+
+  private static double featureBound(double[] x, double[] y, int count, double axisX, double axisY, double front,
+      boolean isMax) {
+    // The bound along the tangent (-axisY, axisX) of the vertices within the tolerance of the front along the axis
+    double bound = isMax ? -Double.MAX_VALUE : Double.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      if (Math.abs(x[i] * axisX + y[i] * axisY - front) <= CONTACT_FEATURE_TOLERANCE) {
+        double projection = -x[i] * axisY + y[i] * axisX;
+        bound = isMax ? Math.max(bound, projection) : Math.min(bound, projection);
+      }
+    }
+    return bound;
+  }
+
+}
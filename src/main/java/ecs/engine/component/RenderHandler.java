@@ -1,21 +1,17 @@
 package ecs.engine.component;
 
 import ecs.engine.base.GameComponent;
-import ecs.engine.base.GameScene;
+import ecs.engine.render.RenderBackend;
 import ecs.engine.tag.ComponentUpdateTag;
-import java.util.ArrayList;
-import java.util.Comparator;
 import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.SnapshotParameters;
 import javafx.scene.image.WritableImage;
-import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Scale;
-import javafx.scene.transform.Translate;
+import javafx.scene.transform.Affine;
 
 /**
  * The component that handles the rendering of the entity.
@@ -26,19 +22,41 @@ public class RenderHandler extends GameComponent {
 
   /// The render order of the object. The smaller the render order, the earlier it gets rendered.
   public int renderOrder = 0;
+  /// Whether the image stays the same. A static image is drawn once into the cached background layer of the scene,
+  /// behind all the other render handlers, and only drawn again when a static render handler has been changed.
+  public boolean isStatic = false;
 
   ///////////////////////////////////////////////
 
+  // static variables
+  private static long nextRenderSequence;
+
   // readonly variables
   private double rawWidth;
   private double rawHeight;
   private double width;
   private double height;
+  private double minX;
+  private double minY;
+  private double maxX;
+  private double maxY;
+  private long renderSequence; // The order of the attachment, which breaks the ties of the render order
+  private int imageVersion; // Incremented whenever the image is set or marked as changed
 
   // instance variables
   private Node image;
-  private Pane graphicsCanvas;
   private int oldRenderOrder;
+  private long visibleFrame = -1; // The last frame in which the render handler was in the view of the camera
+
+  // The only transform of the image, which is only written when the transform of the object has been changed
+  private final Affine affine = new Affine();
+  private Point2D affinePosition;
+  private double affineRotation;
+  private Point2D affineScale;
+  private double affineCenterX;
+  private double affineCenterY;
+  private boolean isInRenderGrid;
+  private boolean isInStaticLayer;
 
   @Override
   public ComponentUpdateTag COMPONENT_UPDATE_TAG() {
@@ -52,41 +70,62 @@ public class RenderHandler extends GameComponent {
     width = 0;
     height = 0;
     oldRenderOrder = renderOrder;
+    renderSequence = nextRenderSequence++;
 
-    updateRenderOrder();
+    gameObject.getScene().getRenderQueue().add(this);
   }
 
   @Override
-  public void start() {
-    graphicsCanvas = GameScene.getRenderCanvas();
+  public void onDetached() {
+    gameObject.getScene().getRenderQueue().remove(this);
+    if (isInStaticLayer) {
+      gameObject.getScene().getStaticLayer().remove(this);
+      isInStaticLayer = false;
+    }
+    if (isInRenderGrid) {
+      gameObject.getScene().getRenderGrid().remove(this);
+      isInRenderGrid = false;
+    }
   }
 
   @Override
   public void transformUpdate() {
     synchronized (this) {
-      if (image == null) {
-        return;
-      }
-
-      // Update the render order
+      // Move the render handler to the bucket of its new render order
       if (oldRenderOrder != renderOrder) {
-        updateRenderOrder();
+        gameObject.getScene().getRenderQueue().add(this);
         oldRenderOrder = renderOrder;
+        invalidateStaticLayer();
       }
 
-      handleRenderShape();
+      // Move the render handler in or out of the static layer
+      if (isStatic != isInStaticLayer) {
+        if (isStatic) {
+          gameObject.getScene().getStaticLayer().add(this);
+        } else {
+          gameObject.getScene().getStaticLayer().remove(this);
+        }
+        isInStaticLayer = isStatic;
+      }
+
+      if (image != null) {
+        handleRenderShape();
+      }
     }
   }
   
   @Override
   public void renderUpdate() {
     synchronized (this) {
-      if (image == null || graphicsCanvas == null) {
+      if (image == null || gameObject == null) {
         return;
       }
 
-      // Render the image
-      graphicsCanvas.getChildren().add(image);
+      // Render the image through the backend of the scene, a static image is drawn by the static layer instead
+      RenderBackend renderBackend = gameObject.getScene().getRenderBackend();
+      if (!isInStaticLayer || renderBackend.drawsStaticRenderers()) {
+        renderBackend.draw(this);
+      }
     }
   }
 
@@ -96,34 +135,54 @@ public class RenderHandler extends GameComponent {
     double centerX = bounds.getMinX() + bounds.getWidth() / 2;
     double centerY = bounds.getMinY() + bounds.getHeight() / 2;
 
-    image.getTransforms().clear();
-    image.getTransforms().addAll(
-        new Translate(
-            transform.position.getX() - centerX,
-            transform.position.getY() - centerY
-        ),
-        new Rotate(
-            transform.rotation,
-            centerX,
-            centerY
-        ),
-        new Scale(
-            transform.scale.getX(),
-            transform.scale.getY(),
-            centerX,
-            centerY
-        )
-    );
-    width = image.getBoundsInParent().getWidth();
-    height = image.getBoundsInParent().getHeight();
-  }
-
-  private void updateRenderOrder() {
-    ArrayList<GameComponent> renderComponents = GameComponent.allComponents.get(gameObject.getScene()).get(
-        ComponentUpdateTag.RENDER);
-
-    // The smaller the renderOrder, the earlier it gets rendered, the back it is
-    renderComponents.sort(Comparator.comparingInt(c -> ((RenderHandler) c).renderOrder));
+    if (image.getTransforms().size() != 1 || image.getTransforms().get(0) != affine) {
+      image.getTransforms().setAll(affine);
+      affinePosition = null;
+    }
+    if (!transform.position.equals(affinePosition) || transform.rotation != affineRotation
+        || !transform.scale.equals(affineScale) || centerX != affineCenterX || centerY != affineCenterY) {
+      updateAffine(centerX, centerY);
+    }
+    Bounds boundsInParent = image.getBoundsInParent();
+    width = boundsInParent.getWidth();
+    height = boundsInParent.getHeight();
+
+    moveInRenderGrid(boundsInParent.getMinX(), boundsInParent.getMinY(), boundsInParent.getMaxX(),
+        boundsInParent.getMaxY());
+  }
+
+  private void updateAffine(double centerX, double centerY) {
+    affinePosition = transform.position;
+    affineRotation = transform.rotation;
+    affineScale = transform.scale;
+    affineCenterX = centerX;
+    affineCenterY = centerY;
+
+    // Scale and rotate around the center, then move the center to the position
+    transform.writeAffine(affine, centerX, centerY);
+    invalidateStaticLayer();
+  }
+
+  private void invalidateStaticLayer() {
+    if (isInStaticLayer) {
+      gameObject.getScene().getStaticLayer().invalidate(this);
+    }
+  }
+
+  /**
+   * Move the render handler in the render grid of the scene when its AABB in the world has been changed.
+   */
+  protected void moveInRenderGrid(double minX, double minY, double maxX, double maxY) {
+    if (minX != this.minX || minY != this.minY || maxX != this.maxX || maxY != this.maxY || !isInRenderGrid) {
+      this.minX = minX;
+      this.minY = minY;
+      this.maxX = maxX;
+      this.maxY = maxY;
+      if (gameObject.getScene() != null) {
+        gameObject.getScene().getRenderGrid().move(this, minX, minY, maxX, maxY);
+        isInRenderGrid = true;
+      }
+    }
   }
 
   /* API BELOW */
@@ -136,6 +195,26 @@ public class RenderHandler extends GameComponent {
     this.image = image;
     this.rawWidth = image.getBoundsInParent().getWidth();
     this.rawHeight = image.getBoundsInParent().getHeight();
+    imageVersion++;
+    invalidateStaticLayer();
+  }
+
+  /**
+   * Mark the image as changed, such as its color, so a static image is drawn again in the next frame, and a cached
+   * snapshot of the image is taken again.
+   * The changes of the transform and of the image itself are detected without this.
+   */
+  public void markImageChanged() {
+    imageVersion++;
+    invalidateStaticLayer();
+  }
+
+  /**
+   * Get the version of the image, which changes whenever the image is set or marked as changed, so a backend that
+   * caches a drawing of the image knows when to draw it again.
+   */
+  public int getImageVersion() {
+    return imageVersion;
   }
 
   /**
@@ -146,6 +225,34 @@ public class RenderHandler extends GameComponent {
     return image;
   }
 
+  /**
+   * Get the affine of the image, which is the only transform of the image once the transform has been updated.
+   */
+  public Affine getAffine() {
+    return affine;
+  }
+
+  /**
+   * Mark the render handler as in the view of the camera in the given frame, see GameScene.renderStep().
+   */
+  public void markVisible(long frame) {
+    visibleFrame = frame;
+  }
+
+  /**
+   * Whether the render handler was marked as in the view of the camera in the given frame.
+   */
+  public boolean isVisibleIn(long frame) {
+    return visibleFrame == frame;
+  }
+
+  /**
+   * Get the order of the attachment of the render handler, which orders the ones with the same render order.
+   */
+  public long getRenderSequence() {
+    return renderSequence;
+  }
+
   /**
    * Get the width of the AABB of the rendered image
    * @return The width of the rendered image
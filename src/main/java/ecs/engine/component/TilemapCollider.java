@@ -0,0 +1,398 @@
+package ecs.engine.component;
+
+import ecs.engine.physics.ContactManifold;
+import ecs.engine.physics.ContinuousCollision;
+import ecs.engine.physics.RaycastHit;
+import ecs.engine.physics.SpatialQueries;
+import java.util.Arrays;
+import javafx.geometry.Point2D;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * The collider that represents the solid tiles of a level grid, such as the ones from GameSourceLoader.getLevel().
+ * The adjacent solid cells are merged into maximal rectangles, and the collisions are answered by looking up
+ * the cells under the other collider, so a whole level needs only this one collider.
+ * The tilemap is centered on the position of the object, and it is always axis-aligned and unscaled.
+ */
+public class TilemapCollider extends Collider<Rectangle> {
+
+  // readonly variables
+  private int rows;
+  private int cols;
+  private double cellWidth;
+  private double cellHeight;
+  private double originX; // The top left corner of the tilemap
+  private double originY;
+
+  // The merged rectangles in cells (inclusive start, exclusive end), and the rectangle of every cell (-1 if empty)
+  private int rectCount;
+  private int[] rectStartCol = new int[0];
+  private int[] rectStartRow = new int[0];
+  private int[] rectEndCol = new int[0];
+  private int[] rectEndRow = new int[0];
+  private int[] cellRects = new int[0];
+
+  @Override
+  protected void updateColliderAttributes() {
+    originX = transform.position.getX() - cols * cellWidth / 2;
+    originY = transform.position.getY() - rows * cellHeight / 2;
+  }
+
+  @Override
+  protected Point2D getNormalVector(Point2D collisionPoint) {
+    // The normals of the tilemap are computed per rectangle in collide()
+    return null;
+  }
+
+  @Override
+  boolean hasPrimitiveShape() {
+    return true;
+  }
+
+  /* API HERE */
+
+  /**
+   * Set the level grid of the tilemap.
+   * This needs to be called after the collider is attached to a GameObject.
+   *
+   * @param level The level grid, indexed by [row][col]
+   * @param cellWidth The width of a cell
+   * @param cellHeight The height of a cell
+   * @param solidChars The characters of the solid cells
+   */
+  public void setLevel(char[][] level, double cellWidth, double cellHeight, char... solidChars) {
+    this.rows = level.length;
+    this.cols = rows == 0 ? 0 : level[0].length;
+    this.cellWidth = cellWidth;
+    this.cellHeight = cellHeight;
+
+    // Find the solid cells
+    boolean[] isSolid = new boolean[rows * cols];
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < Math.min(cols, level[row].length); col++) {
+        for (char solidChar : solidChars) {
+          if (level[row][col] == solidChar) {
+            isSolid[row * cols + col] = true;
+            break;
+          }
+        }
+      }
+    }
+    mergeCells(isSolid);
+
+    setShape(new Rectangle(cols * cellWidth, rows * cellHeight));
+  }
+
+  /**
+   * Get the number of merged rectangles.
+   */
+  public int getRectCount() {
+    return rectCount;
+  }
+
+  /**
+   * Get the number of rows of the tilemap.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Get the number of columns of the tilemap.
+   */
+  public int getCols() {
+    return cols;
+  }
+
+  /**
+   * Whether the cell is solid. The cells out of the tilemap are not solid.
+   */
+  public boolean isSolid(int row, int col) {
+    return row >= 0 && row < rows && col >= 0 && col < cols && cellRects[row * cols + col] >= 0;
+  }
+
+  @Override
+  public boolean containsPoint(double x, double y) {
+    return isSolid((int) Math.floor((y - originY) / cellHeight), (int) Math.floor((x - originX) / cellWidth));
+  }
+
+  /**
+   * Test the collision of the other collider against the solid cells under it.
+   * The deepest merged rectangle makes the contact, and the normal points from the tilemap to the other collider.
+   */
+  @Override
+  public boolean collide(Collider<?> other, ContactManifold manifold) {
+    double otherCenterX = (other.minX + other.maxX) / 2;
+    double otherCenterY = (other.minY + other.maxY) / 2;
+    double bestDepth = -1;
+
+    int startCol = colOf(other.minX);
+    int endCol = colOf(other.maxX);
+    int startRow = rowOf(other.minY);
+    int endRow = rowOf(other.maxY);
+    for (int row = startRow; row <= endRow; row++) {
+      for (int col = startCol; col <= endCol; col++) {
+        int rect = firstRectInRange(row, col, startRow, startCol);
+        if (rect < 0) {
+          continue;
+        }
+
+        double minX = originX + rectStartCol[rect] * cellWidth;
+        double minY = originY + rectStartRow[rect] * cellHeight;
+        double maxX = originX + rectEndCol[rect] * cellWidth;
+        double maxY = originY + rectEndRow[rect] * cellHeight;
+        if (!SpatialQueries.overlapsBox(other, minX, minY, maxX, maxY)) {
+          continue;
+        }
+
+        // The normal and the depth of the rectangle
+        double normalX;
+        double normalY;
+        double depth;
+        double closestX = Math.max(minX, Math.min(otherCenterX, maxX));
+        double closestY = Math.max(minY, Math.min(otherCenterY, maxY));
+        double distance = Math.hypot(otherCenterX - closestX, otherCenterY - closestY);
+        if (other instanceof CircleCollider circle && distance > 0) {
+          normalX = (otherCenterX - closestX) / distance;
+          normalY = (otherCenterY - closestY) / distance;
+          depth = circle.getRadius() - distance;
+        } else {
+          double overlapX = Math.min(maxX, other.maxX) - Math.max(minX, other.minX);
+          double overlapY = Math.min(maxY, other.maxY) - Math.max(minY, other.minY);
+          if (overlapX < overlapY) {
+            normalX = otherCenterX < (minX + maxX) / 2 ? -1 : 1;
+            normalY = 0;
+            depth = overlapX;
+          } else {
+            normalX = 0;
+            normalY = otherCenterY < (minY + maxY) / 2 ? -1 : 1;
+            depth = overlapY;
+          }
+        }
+
+        if (depth > bestDepth) {
+          bestDepth = depth;
+          manifold.centerX = (Math.max(minX, other.minX) + Math.min(maxX, other.maxX)) / 2;
+          manifold.centerY = (Math.max(minY, other.minY) + Math.min(maxY, other.maxY)) / 2;
+          manifold.normalX = normalX;
+          manifold.normalY = normalY;
+          manifold.depth = Math.max(depth, 0);
+        }
+      }
+    }
+
+    if (bestDepth < 0) {
+      return false;
+    }
+    if (isTrigger || other.isTrigger) {
+      manifold.normalX = 0;
+      manifold.normalY = 0;
+      manifold.depth = 0;
+    }
+    return true;
+  }
+
+  /**
+   * Cast the segment from the origin to (originX + dx, originY + dy) through the cells of the tilemap.
+   * Return the fraction of the segment at the first solid cell and write the hit point and normal into the hit,
+   * or return ContinuousCollision.NO_HIT. A segment that starts in a solid cell does not hit the tilemap.
+   */
+  public double raycast(double rayX, double rayY, double dx, double dy, RaycastHit hit) {
+    double mapMaxX = originX + cols * cellWidth;
+    double mapMaxY = originY + rows * cellHeight;
+    double fraction = 0;
+    double normalX = 0;
+    double normalY = 0;
+
+    // Start from the cell of the origin, or from the cell where the segment enters the tilemap
+    if (rayX >= originX && rayX < mapMaxX && rayY >= originY && rayY < mapMaxY) {
+      if (containsPoint(rayX, rayY)) {
+        return ContinuousCollision.NO_HIT;
+      }
+    } else {
+      fraction = ContinuousCollision.rayAabb(rayX, rayY, dx, dy, originX, originY, mapMaxX, mapMaxY);
+      if (fraction == ContinuousCollision.NO_HIT) {
+        return ContinuousCollision.NO_HIT;
+      }
+      double enterX = rayX + dx * fraction;
+      if (enterX <= originX || enterX >= mapMaxX) {
+        normalX = dx > 0 ? -1 : 1;
+      } else {
+        normalY = dy > 0 ? -1 : 1;
+      }
+    }
+    int col = Math.min(Math.max(colOf(rayX + dx * fraction), 0), cols - 1);
+    int row = Math.min(Math.max(rowOf(rayY + dy * fraction), 0), rows - 1);
+
+    // Walk the cells along the segment
+    int stepCol = dx > 0 ? 1 : -1;
+    int stepRow = dy > 0 ? 1 : -1;
+    double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellWidth / Math.abs(dx);
+    double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellHeight / Math.abs(dy);
+    double nextX = dx == 0 ? Double.POSITIVE_INFINITY : (originX + (dx > 0 ? col + 1 : col) * cellWidth - rayX) / dx;
+    double nextY = dy == 0 ? Double.POSITIVE_INFINITY : (originY + (dy > 0 ? row + 1 : row) * cellHeight - rayY) / dy;
+    while (col >= 0 && col < cols && row >= 0 && row < rows && fraction <= 1) {
+      if (isSolid(row, col)) {
+        hit.pointX = rayX + dx * fraction;
+        hit.pointY = rayY + dy * fraction;
+        hit.normalX = normalX;
+        hit.normalY = normalY;
+        return fraction;
+      }
+
+      if (nextX < nextY) {
+        fraction = nextX;
+        nextX += deltaX;
+        col += stepCol;
+        normalX = -stepCol;
+        normalY = 0;
+      } else {
+        fraction = nextY;
+        nextY += deltaY;
+        row += stepRow;
+        normalX = 0;
+        normalY = -stepRow;
+      }
+    }
+    return ContinuousCollision.NO_HIT;
+  }
+
+  /**
+   * Get the time of impact of an AABB with the given center and half extents sweeping by (dx, dy)
+   * against the merged rectangles along the sweep, or ContinuousCollision.NO_HIT.
+   */
+  public double sweep(double centerX, double centerY, double halfWidth, double halfHeight, double dx, double dy) {
+    double timeOfImpact = ContinuousCollision.NO_HIT;
+    int startCol = colOf(Math.min(centerX, centerX + dx) - halfWidth);
+    int endCol = colOf(Math.max(centerX, centerX + dx) + halfWidth);
+    int startRow = rowOf(Math.min(centerY, centerY + dy) - halfHeight);
+    int endRow = rowOf(Math.max(centerY, centerY + dy) + halfHeight);
+    for (int row = startRow; row <= endRow; row++) {
+      for (int col = startCol; col <= endCol; col++) {
+        int rect = firstRectInRange(row, col, startRow, startCol);
+        if (rect >= 0) {
+          timeOfImpact = Math.min(timeOfImpact, ContinuousCollision.rayAabb(centerX, centerY, dx, dy,
+              originX + rectStartCol[rect] * cellWidth - halfWidth,
+              originY + rectStartRow[rect] * cellHeight - halfHeight,
+              originX + rectEndCol[rect] * cellWidth + halfWidth,
+              originY + rectEndRow[rect] * cellHeight + halfHeight));
+        }
+      }
+    }
+    return timeOfImpact;
+  }
+
+  /**
+   * Whether any solid cell overlaps the axis-aligned box.
+   */
+  public boolean overlapsBox(double minX, double minY, double maxX, double maxY) {
+    for (int row = rowOf(minY); row <= rowOf(maxY); row++) {
+      for (int col = colOf(minX); col <= colOf(maxX); col++) {
+        if (isSolid(row, col)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Whether any solid cell overlaps the circle.
+   */
+  public boolean overlapsCircle(double centerX, double centerY, double radius) {
+    for (int row = rowOf(centerY - radius); row <= rowOf(centerY + radius); row++) {
+      for (int col = colOf(centerX - radius); col <= colOf(centerX + radius); col++) {
+        if (!isSolid(row, col)) {
+          continue;
+        }
+        double cellMinX = originX + col * cellWidth;
+        double cellMinY = originY + row * cellHeight;
+        double dx = centerX - Math.max(cellMinX, Math.min(centerX, cellMinX + cellWidth));
+        double dy = centerY - Math.max(cellMinY, Math.min(centerY, cellMinY + cellHeight));
+        if (dx * dx + dy * dy <= radius * radius) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /* private methods below */
+
+  private void mergeCells(boolean[] isSolid) {
+    cellRects = new int[rows * cols];
+    Arrays.fill(cellRects, -1);
+    rectCount = 0;
+
+    // Grow every unmerged solid cell to the right, then grow the run down as far as the whole run is solid
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        if (!isSolid[row * cols + col] || cellRects[row * cols + col] >= 0) {
+          continue;
+        }
+
+        int endCol = col + 1;
+        while (endCol < cols && isSolid[row * cols + endCol] && cellRects[row * cols + endCol] < 0) {
+          endCol++;
+        }
+        int endRow = row + 1;
+        while (endRow < rows && isFreeRun(isSolid, endRow, col, endCol)) {
+          endRow++;
+        }
+
+        addRect(col, row, endCol, endRow);
+      }
+    }
+  }
+
+  private boolean isFreeRun(boolean[] isSolid, int row, int startCol, int endCol) {
+    for (int col = startCol; col < endCol; col++) {
+      if (!isSolid[row * cols + col] || cellRects[row * cols + col] >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void addRect(int startCol, int startRow, int endCol, int endRow) {
+    if (rectCount == rectStartCol.length) {
+      int capacity = Math.max(16, rectCount * 2);
+      rectStartCol = Arrays.copyOf(rectStartCol, capacity);
+      rectStartRow = Arrays.copyOf(rectStartRow, capacity);
+      rectEndCol = Arrays.copyOf(rectEndCol, capacity);
+      rectEndRow = Arrays.copyOf(rectEndRow, capacity);
+    }
+    rectStartCol[rectCount] = startCol;
+    rectStartRow[rectCount] = startRow;
+    rectEndCol[rectCount] = endCol;
+    rectEndRow[rectCount] = endRow;
+
+    for (int row = startRow; row < endRow; row++) {
+      for (int col = startCol; col < endCol; col++) {
+        cellRects[row * cols + col] = rectCount;
+      }
+    }
+    rectCount++;
+  }
+
+  private int firstRectInRange(int row, int col, int startRow, int startCol) {
+    // A rectangle is only reported from the top left cell of its part in the range
+    if (!isSolid(row, col)) {
+      return -1;
+    }
+    int rect = cellRects[row * cols + col];
+    if ((col > startCol && col > 0 && cellRects[row * cols + col - 1] == rect)
+        || (row > startRow && row > 0 && cellRects[(row - 1) * cols + col] == rect)) {
+      return -1;
+    }
+    return rect;
+  }
+
+  private int colOf(double x) {
+    return Math.max(-1, Math.min(cols, (int) Math.floor((x - originX) / cellWidth)));
+  }
+
+  private int rowOf(double y) {
+    return Math.max(-1, Math.min(rows, (int) Math.floor((y - originY) / cellHeight)));
+  }
+}
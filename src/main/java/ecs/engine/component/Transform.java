@@ -3,6 +3,7 @@ package ecs.engine.component;
 import ecs.engine.base.GameComponent;
 import ecs.engine.tag.ComponentUpdateTag;
 import javafx.geometry.Point2D;
+import javafx.scene.transform.Affine;
 
 /**
  * The component that stores the position, scale, and rotation of the entity.
@@ -19,6 +20,11 @@ public class Transform extends GameComponent {
 
   ///////////////////////////////////////////////
 
+  // instance variables
+  private double trigRotation = Double.NaN; // The rotation that the sine and cosine were computed for
+  private double cos;
+  private double sin;
+
   @Override
   public ComponentUpdateTag COMPONENT_UPDATE_TAG() {
     return ComponentUpdateTag.TRANSFORM;
@@ -30,4 +36,53 @@ public class Transform extends GameComponent {
     scale = new Point2D(1, 1);
     rotation = 0;
   }
+
+  /* API BELOW */
+
+  /**
+   * Get the cosine of the rotation, which is only computed again when the rotation has been changed.
+   */
+  public double getRotationCos() {
+    updateTrig();
+    return cos;
+  }
+
+  /**
+   * Get the sine of the rotation, which is only computed again when the rotation has been changed.
+   */
+  public double getRotationSin() {
+    updateTrig();
+    return sin;
+  }
+
+  /**
+   * Write the transform into the affine in place, scaling and rotating around the center of the local space, then
+   * moving the center to the position.
+   *
+   * @param affine The affine to be written
+   * @param centerX The X of the center in the local space
+   * @param centerY The Y of the center in the local space
+   */
+  public void writeAffine(Affine affine, double centerX, double centerY) {
+    updateTrig();
+    double mxx = cos * scale.getX();
+    double mxy = -sin * scale.getY();
+    double myx = sin * scale.getX();
+    double myy = cos * scale.getY();
+    affine.setToTransform(
+        mxx, mxy, position.getX() - mxx * centerX - mxy * centerY,
+        myx, myy, position.getY() - myx * centerX - myy * centerY
+    );
+  }
+
+  /* private methods below */
+
+  private void updateTrig() {
+    if (rotation != trigRotation) {
+      double angle = Math.toRadians(rotation);
+      cos = Math.cos(angle);
+      sin = Math.sin(angle);
+      trigRotation = rotation;
+    }
+  }
 }
@@ -0,0 +1,63 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+import java.util.List;
+
+/**
+ * The broadphase of the collision detection.
+ * The broadphase keeps a proxy AABB for every collider and finds the colliders whose AABBs overlap a given area,
+ * so that the exact (and expensive) shape intersection only runs on nearby colliders.
+ */
+public interface Broadphase {
+
+  /**
+   * Create a proxy for the collider with the given AABB.
+   * The proxy passes every filter until setProxyFilter() is called.
+   * Return the id of the proxy.
+   */
+  int createProxy(Collider<?> collider, double minX, double minY, double maxX, double maxY);
+
+  /**
+   * Destroy the proxy of the given id.
+   */
+  void destroyProxy(int proxyId);
+
+  /**
+   * Move the proxy of the given id to the new AABB.
+   * Return whether the proxy structure has been changed.
+   */
+  boolean moveProxy(int proxyId, double minX, double minY, double maxX, double maxY);
+
+  /**
+   * Set the packed collision filter of the proxy of the given id.
+   * See CollisionFilter for the layout of the category and the mask.
+   */
+  void setProxyFilter(int proxyId, long category, long mask);
+
+  /**
+   * Add all the colliders whose proxies overlap the given AABB and pass the given filter into the results.
+   * The filter is tested before the colliders are touched, so the rejected pairs cost only the bit tests.
+   * The results are NOT cleared before adding.
+   */
+  void query(double minX, double minY, double maxX, double maxY, long category, long mask,
+      List<Collider<?>> results);
+
+  /**
+   * Add all the colliders whose proxies overlap the given AABB and whose category passes the given mask.
+   * Unlike query(), only the category of the proxy is tested, so this is used for the spatial queries.
+   * The results are NOT cleared before adding.
+   */
+  void overlap(double minX, double minY, double maxX, double maxY, long mask, List<Collider<?>> results);
+
+  /**
+   * Add all the colliders whose proxies are crossed by the segment from the origin to (originX + dx, originY + dy)
+   * and whose category passes the given mask. The results are in no particular order.
+   * The results are NOT cleared before adding.
+   */
+  void raycast(double originX, double originY, double dx, double dy, long mask, List<Collider<?>> results);
+
+  /**
+   * Get the number of proxies in the broadphase.
+   */
+  int getProxyCount();
+}
@@ -0,0 +1,137 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+import java.util.List;
+
+/**
+ * The broadphase that tests every proxy in a flat list.
+ * This is the baseline that the other broadphases are benchmarked against,
+ * and it is still the fastest choice for scenes with only a handful of colliders.
+ */
+public class BruteForceBroadphase implements Broadphase {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  // The proxies, where a null collider marks a free slot
+  private double[] minX = new double[INITIAL_CAPACITY];
+  private double[] minY = new double[INITIAL_CAPACITY];
+  private double[] maxX = new double[INITIAL_CAPACITY];
+  private double[] maxY = new double[INITIAL_CAPACITY];
+  private long[] category = new long[INITIAL_CAPACITY];
+  private long[] mask = new long[INITIAL_CAPACITY];
+  private Collider<?>[] colliders = new Collider<?>[INITIAL_CAPACITY];
+  private int[] overlapIndices = new int[INITIAL_CAPACITY]; // The slots found by the AABB kernel
+
+  // instance variables
+  private int slotCount;
+  private int proxyCount;
+
+  @Override
+  public int createProxy(Collider<?> collider, double minX, double minY, double maxX, double maxY) {
+    // Reuse the first free slot if there is one
+    int proxyId = 0;
+    while (proxyId < slotCount && colliders[proxyId] != null) {
+      proxyId++;
+    }
+    if (proxyId == slotCount) {
+      if (slotCount == colliders.length) {
+        grow(colliders.length * 2);
+      }
+      slotCount++;
+    }
+
+    colliders[proxyId] = collider;
+    setProxyFilter(proxyId, CollisionFilter.ALL, CollisionFilter.ALL);
+    moveProxy(proxyId, minX, minY, maxX, maxY);
+    proxyCount++;
+    return proxyId;
+  }
+
+  @Override
+  public void destroyProxy(int proxyId) {
+    colliders[proxyId] = null;
+    proxyCount--;
+  }
+
+  @Override
+  public boolean moveProxy(int proxyId, double minX, double minY, double maxX, double maxY) {
+    this.minX[proxyId] = minX;
+    this.minY[proxyId] = minY;
+    this.maxX[proxyId] = maxX;
+    this.maxY[proxyId] = maxY;
+    return false;
+  }
+
+  @Override
+  public void setProxyFilter(int proxyId, long category, long mask) {
+    this.category[proxyId] = category;
+    this.mask[proxyId] = mask;
+  }
+
+  @Override
+  public void query(double minX, double minY, double maxX, double maxY, long category, long mask,
+      List<Collider<?>> results) {
+    int count = PhysicsKernel.getDefault().overlap(minX, minY, maxX, maxY,
+        this.minX, this.minY, this.maxX, this.maxY, slotCount, overlapIndices);
+    for (int i = 0; i < count; i++) {
+      int slot = overlapIndices[i];
+      if (colliders[slot] != null
+          && CollisionFilter.shouldCollide(category, mask, this.category[slot], this.mask[slot])) {
+        results.add(colliders[slot]);
+      }
+    }
+  }
+
+  @Override
+  public void overlap(double minX, double minY, double maxX, double maxY, long mask, List<Collider<?>> results) {
+    int count = PhysicsKernel.getDefault().overlap(minX, minY, maxX, maxY,
+        this.minX, this.minY, this.maxX, this.maxY, slotCount, overlapIndices);
+    for (int i = 0; i < count; i++) {
+      int slot = overlapIndices[i];
+      if (colliders[slot] != null && CollisionFilter.accepts(category[slot], mask)) {
+        results.add(colliders[slot]);
+      }
+    }
+  }
+
+  @Override
+  public void raycast(double originX, double originY, double dx, double dy, long mask, List<Collider<?>> results) {
+    for (int i = 0; i < slotCount; i++) {
+      if (colliders[i] == null || !CollisionFilter.accepts(category[i], mask)
+          || !SpatialQueries.segmentOverlaps(originX, originY, dx, dy, minX[i], minY[i], maxX[i], maxY[i])) {
+        continue;
+      }
+      results.add(colliders[i]);
+    }
+  }
+
+  @Override
+  public int getProxyCount() {
+    return proxyCount;
+  }
+
+  private void grow(int capacity) {
+    double[] grownMinX = new double[capacity];
+    double[] grownMinY = new double[capacity];
+    double[] grownMaxX = new double[capacity];
+    double[] grownMaxY = new double[capacity];
+    long[] grownCategory = new long[capacity];
+    long[] grownMask = new long[capacity];
+    Collider<?>[] grownColliders = new Collider<?>[capacity];
+    System.arraycopy(minX, 0, grownMinX, 0, slotCount);
+    System.arraycopy(minY, 0, grownMinY, 0, slotCount);
+    System.arraycopy(maxX, 0, grownMaxX, 0, slotCount);
+    System.arraycopy(maxY, 0, grownMaxY, 0, slotCount);
+    System.arraycopy(category, 0, grownCategory, 0, slotCount);
+    System.arraycopy(mask, 0, grownMask, 0, slotCount);
+    System.arraycopy(colliders, 0, grownColliders, 0, slotCount);
+    minX = grownMinX;
+    minY = grownMinY;
+    maxX = grownMaxX;
+    maxY = grownMaxY;
+    category = grownCategory;
+    mask = grownMask;
+    colliders = grownColliders;
+    overlapIndices = new int[capacity];
+  }
+}
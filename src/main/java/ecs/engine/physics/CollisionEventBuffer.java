@@ -0,0 +1,137 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+import java.util.Arrays;
+
+/**
+ * The flat buffer of the collision events of a fixed step.
+ * The colliders record their events here while the collisions are detected, and the physics world dispatches them
+ * in one pass once the step is over, so the callbacks never run inside the detection.
+ * The arrays are kept between the steps, so recording an event does not allocate.
+ */
+public class CollisionEventBuffer {
+
+  ////////////// Event Types //////////////
+
+  /// The collider enters a new collision.
+  public static final int ENTER = 0;
+  /// The collider stays in a collision, recorded in every step while colliding.
+  public static final int STAY = 1;
+  /// The collider exits a collision.
+  public static final int EXIT = 2;
+
+  /////////////////////////////////////////
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // The events in the order they were recorded
+  private int count;
+  private int[] types = new int[INITIAL_CAPACITY];
+  private Collider<?>[] colliders = new Collider<?>[INITIAL_CAPACITY];
+  private Collider<?>[] others = new Collider<?>[INITIAL_CAPACITY];
+  private double[] pointX = new double[INITIAL_CAPACITY];
+  private double[] pointY = new double[INITIAL_CAPACITY];
+
+  /**
+   * Record an event of the collider.
+   *
+   * @param type The type of the event, ENTER, STAY or EXIT
+   * @param collider The collider that receives the event
+   * @param other The other collider of the event
+   * @param x The X of the center of the intersection, or NaN for an exit
+   * @param y The Y of the center of the intersection, or NaN for an exit
+   */
+  public void add(int type, Collider<?> collider, Collider<?> other, double x, double y) {
+    if (count == types.length) {
+      grow(count * 2);
+    }
+    types[count] = type;
+    colliders[count] = collider;
+    others[count] = other;
+    pointX[count] = x;
+    pointY[count] = y;
+    count++;
+  }
+
+  /**
+   * Remove all the events and release the references to the colliders.
+   */
+  public void clear() {
+    Arrays.fill(colliders, 0, count, null);
+    Arrays.fill(others, 0, count, null);
+    count = 0;
+  }
+
+  /**
+   * Remove the events whose collider or other collider has been destroyed, keeping the others in their order.
+   */
+  void removeDestroyed() {
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (colliders[i].gameObject == null || others[i].gameObject == null) {
+        continue;
+      }
+      types[kept] = types[i];
+      colliders[kept] = colliders[i];
+      others[kept] = others[i];
+      pointX[kept] = pointX[i];
+      pointY[kept] = pointY[i];
+      kept++;
+    }
+    Arrays.fill(colliders, kept, count, null);
+    Arrays.fill(others, kept, count, null);
+    count = kept;
+  }
+
+  /**
+   * Get the number of events.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get the type of the event, ENTER, STAY or EXIT.
+   */
+  public int getType(int index) {
+    return types[index];
+  }
+
+  /**
+   * Get the collider that receives the event.
+   */
+  public Collider<?> getCollider(int index) {
+    return colliders[index];
+  }
+
+  /**
+   * Get the other collider of the event.
+   */
+  public Collider<?> getOther(int index) {
+    return others[index];
+  }
+
+  /**
+   * Get the X of the center of the intersection of the event, or NaN for an exit.
+   */
+  public double getPointX(int index) {
+    return pointX[index];
+  }
+
+  /**
+   * Get the Y of the center of the intersection of the event, or NaN for an exit.
+   */
+  public double getPointY(int index) {
+    return pointY[index];
+  }
+
+  /* private methods below */
+
+  private void grow(int capacity) {
+    types = Arrays.copyOf(types, capacity);
+    colliders = Arrays.copyOf(colliders, capacity);
+    others = Arrays.copyOf(others, capacity);
+    pointX = Arrays.copyOf(pointX, capacity);
+    pointY = Arrays.copyOf(pointY, capacity);
+  }
+}
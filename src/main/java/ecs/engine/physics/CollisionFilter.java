@@ -0,0 +1,64 @@
+package ecs.engine.physics;
+
+import ecs.engine.tag.ObjectTag;
+
+/**
+ * The helpers for the packed collision filters.
+ * A filter is a pair of longs: the category and the mask. The lower 32 bits hold the layer bits of the collider,
+ * and the upper 32 bits hold the ObjectTag bit (category) or the row of the collision matrix (mask).
+ * Two filters collide only if each category passes the mask of the other on both halves.
+ */
+public final class CollisionFilter {
+
+  /// The filter that passes everything.
+  public static final long ALL = -1L;
+
+  private CollisionFilter() {}
+
+  /**
+   * Pack the category of a collider with the given tag and layer category bits.
+   */
+  public static long packCategory(ObjectTag tag, int categoryBits) {
+    return ((long) tagBit(tag) << 32) | (categoryBits & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Pack the mask of a collider with the given tag mask and layer mask bits.
+   */
+  public static long packMask(int tagMask, int maskBits) {
+    return ((long) tagMask << 32) | (maskBits & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Whether the category passes the mask.
+   */
+  public static boolean accepts(long category, long mask) {
+    long bits = category & mask;
+    return (int) bits != 0 && (bits >>> 32) != 0;
+  }
+
+  /**
+   * Whether two filters collide with each other.
+   */
+  public static boolean shouldCollide(long categoryA, long maskA, long categoryB, long maskB) {
+    return accepts(categoryA, maskB) && accepts(categoryB, maskA);
+  }
+
+  /**
+   * Get the bit of the tag.
+   */
+  public static int tagBit(ObjectTag tag) {
+    return 1 << tag.ordinal();
+  }
+
+  /**
+   * Get the tag mask that contains all the given tags.
+   */
+  public static int tagMask(ObjectTag... tags) {
+    int mask = 0;
+    for (ObjectTag tag : tags) {
+      mask |= tagBit(tag);
+    }
+    return mask;
+  }
+}
@@ -0,0 +1,46 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+import ecs.engine.component.PhysicsHandler;
+
+/**
+ * A contact between two solid colliders.
+ * The contact persists across the fixed steps as long as the colliders touch, so its accumulated impulse can be
+ * used to warm start the solver in the next step.
+ */
+public class Contact {
+
+  /// The collider with the smaller collider id.
+  public Collider<?> colliderA;
+  /// The collider with the larger collider id.
+  public Collider<?> colliderB;
+  /// The physics handler of collider A, or null if it has none.
+  public PhysicsHandler bodyA;
+  /// The physics handler of collider B, or null if it has none.
+  public PhysicsHandler bodyB;
+
+  /// The contact normal, pointing from A to B.
+  public double normalX;
+  public double normalY;
+  /// The contact point.
+  public double pointX;
+  public double pointY;
+  /// The penetration depth. Once the contact has been solved with the split impulse, this is the depth that is left
+  /// after the position correction.
+  public double depth;
+
+  /// The accumulated normal impulse of the solver.
+  public double normalImpulse;
+  /// The accumulated impulse of the position correction of the split impulse.
+  public double positionImpulse;
+
+  // The solver state of the current step
+  int indexA;
+  int indexB;
+  double inverseMassA;
+  double inverseMassB;
+  double normalMass;
+  double velocityBias;
+  double positionTarget;
+  long touchedStep;
+}
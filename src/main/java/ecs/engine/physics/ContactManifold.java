@@ -0,0 +1,17 @@
+package ecs.engine.physics;
+
+/**
+ * The result of the exact intersection test of two colliders.
+ * The narrowphase keeps one manifold per worker chunk and fills it in place for every pair.
+ */
+public class ContactManifold {
+
+  /// The center of the intersection.
+  public double centerX;
+  public double centerY;
+  /// The contact normal, pointing from the first collider to the second. This is zero if there is no normal.
+  public double normalX;
+  public double normalY;
+  /// The penetration depth.
+  public double depth;
+}
@@ -0,0 +1,138 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.BoxCollider;
+import ecs.engine.component.CircleCollider;
+import ecs.engine.component.Collider;
+import ecs.engine.component.TilemapCollider;
+
+/**
+ * The time of impact tests of the continuous collision detection.
+ * The target collider is treated as not moving during the sweep, and every test returns the fraction of the
+ * displacement at which the moving collider first touches the target, or NO_HIT.
+ * Colliders that already overlap at the start of the sweep are left to the discrete detection.
+ */
+public final class ContinuousCollision {
+
+  /// The result of a sweep that hits nothing.
+  public static final double NO_HIT = Double.POSITIVE_INFINITY;
+
+  private ContinuousCollision() {}
+
+  /**
+   * Get the time of impact of the mover sweeping by (dx, dy) against the target.
+   * Circles sweep as circles, boxes sweep as their AABBs. A circle against a box is tested in the local space
+   * of the box, so rotated walls are handled exactly (except the rounded corners).
+   */
+  public static double timeOfImpact(Collider<?> mover, Collider<?> target, double dx, double dy) {
+    double centerX = (mover.getMinX() + mover.getMaxX()) / 2;
+    double centerY = (mover.getMinY() + mover.getMaxY()) / 2;
+
+    // A tilemap is swept against its merged rectangles
+    if (target instanceof TilemapCollider tilemap) {
+      double halfWidth = (mover.getMaxX() - mover.getMinX()) / 2;
+      double halfHeight = (mover.getMaxY() - mover.getMinY()) / 2;
+      return tilemap.sweep(centerX, centerY, halfWidth, halfHeight, dx, dy);
+    }
+
+    if (mover instanceof CircleCollider circle) {
+      double radius = circle.getRadius();
+      if (target instanceof CircleCollider otherCircle) {
+        return rayCircle(centerX, centerY, dx, dy,
+            otherCircle.transform.position.getX(), otherCircle.transform.position.getY(),
+            radius + otherCircle.getRadius());
+      }
+      if (target instanceof BoxCollider box) {
+        return rayOrientedBox(centerX, centerY, dx, dy, box, radius, radius);
+      }
+      return rayAabb(centerX, centerY, dx, dy,
+          target.getMinX() - radius, target.getMinY() - radius, target.getMaxX() + radius, target.getMaxY() + radius);
+    }
+
+    // Sweep the AABB of the mover
+    double halfWidth = (mover.getMaxX() - mover.getMinX()) / 2;
+    double halfHeight = (mover.getMaxY() - mover.getMinY()) / 2;
+    return rayAabb(centerX, centerY, dx, dy,
+        target.getMinX() - halfWidth, target.getMinY() - halfHeight,
+        target.getMaxX() + halfWidth, target.getMaxY() + halfHeight);
+  }
+
+  /**
+   * Get the time of impact of the ray (ox, oy) + t * (dx, dy) against the circle, in the range [0, 1].
+   */
+  public static double rayCircle(double ox, double oy, double dx, double dy,
+      double centerX, double centerY, double radius) {
+    double mx = ox - centerX;
+    double my = oy - centerY;
+    double c = mx * mx + my * my - radius * radius;
+    if (c < 0) {
+      return NO_HIT;
+    }
+
+    double a = dx * dx + dy * dy;
+    double b = mx * dx + my * dy;
+    double discriminant = b * b - a * c;
+    if (a == 0 || b >= 0 || discriminant < 0) {
+      return NO_HIT;
+    }
+
+    double t = (-b - Math.sqrt(discriminant)) / a;
+    return t <= 1 ? t : NO_HIT;
+  }
+
+  /**
+   * Get the time of impact of the ray (ox, oy) + t * (dx, dy) against the AABB, in the range [0, 1].
+   */
+  public static double rayAabb(double ox, double oy, double dx, double dy,
+      double minX, double minY, double maxX, double maxY) {
+    if (ox > minX && ox < maxX && oy > minY && oy < maxY) {
+      return NO_HIT;
+    }
+
+    double tMin = 0;
+    double tMax = 1;
+
+    // The slab of the X axis
+    if (dx == 0) {
+      if (ox < minX || ox > maxX) {
+        return NO_HIT;
+      }
+    } else {
+      double t1 = (minX - ox) / dx;
+      double t2 = (maxX - ox) / dx;
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    }
+
+    // The slab of the Y axis
+    if (dy == 0) {
+      if (oy < minY || oy > maxY) {
+        return NO_HIT;
+      }
+    } else {
+      double t1 = (minY - oy) / dy;
+      double t2 = (maxY - oy) / dy;
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    }
+
+    return tMin <= tMax ? tMin : NO_HIT;
+  }
+
+  private static double rayOrientedBox(double ox, double oy, double dx, double dy, BoxCollider box,
+      double expandX, double expandY) {
+    // Move the ray into the local space of the box
+    double angle = Math.toRadians(box.transform.rotation);
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    double relX = ox - box.transform.position.getX();
+    double relY = oy - box.transform.position.getY();
+    double localX = relX * cos + relY * sin;
+    double localY = -relX * sin + relY * cos;
+    double localDx = dx * cos + dy * sin;
+    double localDy = -dx * sin + dy * cos;
+
+    double halfWidth = box.getRawWidth() * Math.abs(box.transform.scale.getX()) / 2 + expandX;
+    double halfHeight = box.getRawHeight() * Math.abs(box.transform.scale.getY()) / 2 + expandY;
+    return rayAabb(localX, localY, localDx, localDy, -halfWidth, -halfHeight, halfWidth, halfHeight);
+  }
+}
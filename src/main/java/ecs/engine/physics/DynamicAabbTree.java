@@ -0,0 +1,489 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+import java.util.List;
+
+/**
+ * The broadphase that keeps the proxies in a dynamic bounding volume tree.
+ * Every leaf stores a fattened AABB, so a proxy is only reinserted when its collider leaves the fat AABB.
+ * The tree is kept balanced with tree rotations, and the nodes are stored in primitive arrays.
+ */
+public class DynamicAabbTree implements Broadphase {
+
+  ////////////// Broadphase Constants //////////////
+
+  /// The margin that the AABB of a proxy is fattened by.
+  public static final double AABB_MARGIN = 8;
+
+  //////////////////////////////////////////////////
+
+  // The index of an empty node
+  private static final int NULL_NODE = -1;
+  private static final int INITIAL_CAPACITY = 16;
+
+  // The nodes of the tree
+  private double[] minX;
+  private double[] minY;
+  private double[] maxX;
+  private double[] maxY;
+  private int[] parent; // This is the next free node for the nodes in the free list
+  private int[] child1;
+  private int[] child2;
+  private int[] height; // This is -1 for the nodes in the free list
+  private long[] category;
+  private long[] mask;
+  private Collider<?>[] colliders;
+
+  // instance variables
+  private int root = NULL_NODE;
+  private int freeList = NULL_NODE;
+  private int proxyCount;
+  private int[] stack = new int[64];
+
+  public DynamicAabbTree() {
+    allocateArrays(INITIAL_CAPACITY);
+    linkFreeNodes(0, INITIAL_CAPACITY);
+  }
+
+  @Override
+  public int createProxy(Collider<?> collider, double minX, double minY, double maxX, double maxY) {
+    int proxyId = allocateNode();
+    this.minX[proxyId] = minX - AABB_MARGIN;
+    this.minY[proxyId] = minY - AABB_MARGIN;
+    this.maxX[proxyId] = maxX + AABB_MARGIN;
+    this.maxY[proxyId] = maxY + AABB_MARGIN;
+    colliders[proxyId] = collider;
+    category[proxyId] = CollisionFilter.ALL;
+    mask[proxyId] = CollisionFilter.ALL;
+    height[proxyId] = 0;
+
+    insertLeaf(proxyId);
+    proxyCount++;
+    return proxyId;
+  }
+
+  @Override
+  public void destroyProxy(int proxyId) {
+    removeLeaf(proxyId);
+    freeNode(proxyId);
+    proxyCount--;
+  }
+
+  @Override
+  public boolean moveProxy(int proxyId, double minX, double minY, double maxX, double maxY) {
+    // The fat AABB still contains the collider, so nothing needs to change
+    if (this.minX[proxyId] <= minX && this.minY[proxyId] <= minY
+        && this.maxX[proxyId] >= maxX && this.maxY[proxyId] >= maxY) {
+      return false;
+    }
+
+    removeLeaf(proxyId);
+    this.minX[proxyId] = minX - AABB_MARGIN;
+    this.minY[proxyId] = minY - AABB_MARGIN;
+    this.maxX[proxyId] = maxX + AABB_MARGIN;
+    this.maxY[proxyId] = maxY + AABB_MARGIN;
+    insertLeaf(proxyId);
+    return true;
+  }
+
+  @Override
+  public void setProxyFilter(int proxyId, long category, long mask) {
+    this.category[proxyId] = category;
+    this.mask[proxyId] = mask;
+  }
+
+  @Override
+  public void query(double minX, double minY, double maxX, double maxY, long category, long mask,
+      List<Collider<?>> results) {
+    if (root == NULL_NODE) {
+      return;
+    }
+
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      int node = stack[--top];
+      if (this.minX[node] > maxX || this.maxX[node] < minX || this.minY[node] > maxY || this.maxY[node] < minY) {
+        continue;
+      }
+
+      if (isLeaf(node)) {
+        if (CollisionFilter.shouldCollide(category, mask, this.category[node], this.mask[node])) {
+          results.add(colliders[node]);
+        }
+      } else {
+        top = pushChildren(node, top);
+      }
+    }
+  }
+
+  @Override
+  public void overlap(double minX, double minY, double maxX, double maxY, long mask, List<Collider<?>> results) {
+    if (root == NULL_NODE) {
+      return;
+    }
+
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      int node = stack[--top];
+      if (this.minX[node] > maxX || this.maxX[node] < minX || this.minY[node] > maxY || this.maxY[node] < minY) {
+        continue;
+      }
+
+      if (isLeaf(node)) {
+        if (CollisionFilter.accepts(category[node], mask)) {
+          results.add(colliders[node]);
+        }
+      } else {
+        top = pushChildren(node, top);
+      }
+    }
+  }
+
+  @Override
+  public void raycast(double originX, double originY, double dx, double dy, long mask, List<Collider<?>> results) {
+    if (root == NULL_NODE) {
+      return;
+    }
+
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      int node = stack[--top];
+      if (!SpatialQueries.segmentOverlaps(originX, originY, dx, dy, minX[node], minY[node], maxX[node], maxY[node])) {
+        continue;
+      }
+
+      if (isLeaf(node)) {
+        if (CollisionFilter.accepts(category[node], mask)) {
+          results.add(colliders[node]);
+        }
+      } else {
+        top = pushChildren(node, top);
+      }
+    }
+  }
+
+  @Override
+  public int getProxyCount() {
+    return proxyCount;
+  }
+
+  /**
+   * Get the height of the tree.
+   */
+  public int getHeight() {
+    return root == NULL_NODE ? 0 : height[root];
+  }
+
+  /* private methods below */
+
+  private int pushChildren(int node, int top) {
+    if (top + 2 > stack.length) {
+      int[] grown = new int[stack.length * 2];
+      System.arraycopy(stack, 0, grown, 0, top);
+      stack = grown;
+    }
+    stack[top++] = child1[node];
+    stack[top++] = child2[node];
+    return top;
+  }
+
+  private boolean isLeaf(int node) {
+    return child1[node] == NULL_NODE;
+  }
+
+  private void insertLeaf(int leaf) {
+    if (root == NULL_NODE) {
+      root = leaf;
+      parent[root] = NULL_NODE;
+      return;
+    }
+
+    // Find the best sibling by the perimeter heuristic
+    double leafMinX = minX[leaf];
+    double leafMinY = minY[leaf];
+    double leafMaxX = maxX[leaf];
+    double leafMaxY = maxY[leaf];
+    int index = root;
+    while (!isLeaf(index)) {
+      int c1 = child1[index];
+      int c2 = child2[index];
+
+      double perimeter = perimeter(minX[index], minY[index], maxX[index], maxY[index]);
+      double combinedPerimeter = perimeter(
+          Math.min(minX[index], leafMinX), Math.min(minY[index], leafMinY),
+          Math.max(maxX[index], leafMaxX), Math.max(maxY[index], leafMaxY)
+      );
+
+      // The cost of creating a new parent for this node and the leaf
+      double cost = 2 * combinedPerimeter;
+      // The minimum cost of pushing the leaf further down the tree
+      double inheritanceCost = 2 * (combinedPerimeter - perimeter);
+
+      double cost1 = descendCost(c1, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+      double cost2 = descendCost(c2, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+
+      if (cost < cost1 && cost < cost2) {
+        break;
+      }
+      index = cost1 < cost2 ? c1 : c2;
+    }
+    int sibling = index;
+
+    // Create a new parent for the sibling and the leaf
+    int oldParent = parent[sibling];
+    int newParent = allocateNode();
+    parent[newParent] = oldParent;
+    colliders[newParent] = null;
+    setUnion(newParent, leaf, sibling);
+    height[newParent] = height[sibling] + 1;
+
+    if (oldParent != NULL_NODE) {
+      if (child1[oldParent] == sibling) {
+        child1[oldParent] = newParent;
+      } else {
+        child2[oldParent] = newParent;
+      }
+    } else {
+      root = newParent;
+    }
+    child1[newParent] = sibling;
+    child2[newParent] = leaf;
+    parent[sibling] = newParent;
+    parent[leaf] = newParent;
+
+    // Walk back up the tree fixing the heights and the AABBs
+    refitAncestors(parent[leaf]);
+  }
+
+  private void removeLeaf(int leaf) {
+    if (leaf == root) {
+      root = NULL_NODE;
+      return;
+    }
+
+    int leafParent = parent[leaf];
+    int grandParent = parent[leafParent];
+    int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+
+    if (grandParent != NULL_NODE) {
+      // Connect the sibling to the grand parent and destroy the parent
+      if (child1[grandParent] == leafParent) {
+        child1[grandParent] = sibling;
+      } else {
+        child2[grandParent] = sibling;
+      }
+      parent[sibling] = grandParent;
+      freeNode(leafParent);
+
+      refitAncestors(grandParent);
+    } else {
+      root = sibling;
+      parent[sibling] = NULL_NODE;
+      freeNode(leafParent);
+    }
+  }
+
+  private void refitAncestors(int index) {
+    while (index != NULL_NODE) {
+      index = balance(index);
+
+      int c1 = child1[index];
+      int c2 = child2[index];
+      height[index] = 1 + Math.max(height[c1], height[c2]);
+      setUnion(index, c1, c2);
+
+      index = parent[index];
+    }
+  }
+
+  /**
+   * Perform a left or right rotation if the node A is imbalanced.
+   * Return the new root of the subtree.
+   */
+  private int balance(int iA) {
+    if (isLeaf(iA) || height[iA] < 2) {
+      return iA;
+    }
+
+    int iB = child1[iA];
+    int iC = child2[iA];
+    int balance = height[iC] - height[iB];
+
+    // Rotate C up
+    if (balance > 1) {
+      int iF = child1[iC];
+      int iG = child2[iC];
+
+      // Swap A and C
+      child1[iC] = iA;
+      parent[iC] = parent[iA];
+      parent[iA] = iC;
+      replaceChild(parent[iC], iA, iC);
+
+      // Rotate
+      if (height[iF] > height[iG]) {
+        child2[iC] = iF;
+        child2[iA] = iG;
+        parent[iG] = iA;
+        setUnion(iA, iB, iG);
+        setUnion(iC, iA, iF);
+        height[iA] = 1 + Math.max(height[iB], height[iG]);
+        height[iC] = 1 + Math.max(height[iA], height[iF]);
+      } else {
+        child2[iC] = iG;
+        child2[iA] = iF;
+        parent[iF] = iA;
+        setUnion(iA, iB, iF);
+        setUnion(iC, iA, iG);
+        height[iA] = 1 + Math.max(height[iB], height[iF]);
+        height[iC] = 1 + Math.max(height[iA], height[iG]);
+      }
+      return iC;
+    }
+
+    // Rotate B up
+    if (balance < -1) {
+      int iD = child1[iB];
+      int iE = child2[iB];
+
+      // Swap A and B
+      child1[iB] = iA;
+      parent[iB] = parent[iA];
+      parent[iA] = iB;
+      replaceChild(parent[iB], iA, iB);
+
+      // Rotate
+      if (height[iD] > height[iE]) {
+        child2[iB] = iD;
+        child1[iA] = iE;
+        parent[iE] = iA;
+        setUnion(iA, iC, iE);
+        setUnion(iB, iA, iD);
+        height[iA] = 1 + Math.max(height[iC], height[iE]);
+        height[iB] = 1 + Math.max(height[iA], height[iD]);
+      } else {
+        child2[iB] = iE;
+        child1[iA] = iD;
+        parent[iD] = iA;
+        setUnion(iA, iC, iD);
+        setUnion(iB, iA, iE);
+        height[iA] = 1 + Math.max(height[iC], height[iD]);
+        height[iB] = 1 + Math.max(height[iA], height[iE]);
+      }
+      return iB;
+    }
+
+    return iA;
+  }
+
+  private void replaceChild(int node, int oldChild, int newChild) {
+    if (node == NULL_NODE) {
+      root = newChild;
+    } else if (child1[node] == oldChild) {
+      child1[node] = newChild;
+    } else {
+      child2[node] = newChild;
+    }
+  }
+
+  private double descendCost(int child, double leafMinX, double leafMinY, double leafMaxX, double leafMaxY) {
+    double combinedPerimeter = perimeter(
+        Math.min(minX[child], leafMinX), Math.min(minY[child], leafMinY),
+        Math.max(maxX[child], leafMaxX), Math.max(maxY[child], leafMaxY)
+    );
+    if (isLeaf(child)) {
+      return combinedPerimeter;
+    }
+    return combinedPerimeter - perimeter(minX[child], minY[child], maxX[child], maxY[child]);
+  }
+
+  private void setUnion(int node, int a, int b) {
+    minX[node] = Math.min(minX[a], minX[b]);
+    minY[node] = Math.min(minY[a], minY[b]);
+    maxX[node] = Math.max(maxX[a], maxX[b]);
+    maxY[node] = Math.max(maxY[a], maxY[b]);
+  }
+
+  private static double perimeter(double minX, double minY, double maxX, double maxY) {
+    return 2 * ((maxX - minX) + (maxY - minY));
+  }
+
+  private int allocateNode() {
+    // Grow the node pool when there is no free node left
+    if (freeList == NULL_NODE) {
+      int oldCapacity = parent.length;
+      allocateArrays(oldCapacity * 2);
+      linkFreeNodes(oldCapacity, oldCapacity * 2);
+    }
+
+    int node = freeList;
+    freeList = parent[node];
+    parent[node] = NULL_NODE;
+    child1[node] = NULL_NODE;
+    child2[node] = NULL_NODE;
+    height[node] = 0;
+    return node;
+  }
+
+  private void freeNode(int node) {
+    parent[node] = freeList;
+    height[node] = -1;
+    colliders[node] = null;
+    freeList = node;
+  }
+
+  private void allocateArrays(int capacity) {
+    int oldCapacity = parent == null ? 0 : parent.length;
+    minX = grow(minX, capacity);
+    minY = grow(minY, capacity);
+    maxX = grow(maxX, capacity);
+    maxY = grow(maxY, capacity);
+    parent = grow(parent, capacity);
+    child1 = grow(child1, capacity);
+    child2 = grow(child2, capacity);
+    height = grow(height, capacity);
+    category = grow(category, capacity);
+    mask = grow(mask, capacity);
+
+    Collider<?>[] grownColliders = new Collider<?>[capacity];
+    if (colliders != null) {
+      System.arraycopy(colliders, 0, grownColliders, 0, oldCapacity);
+    }
+    colliders = grownColliders;
+  }
+
+  private void linkFreeNodes(int from, int to) {
+    for (int i = from; i < to; i++) {
+      parent[i] = i + 1 < to ? i + 1 : NULL_NODE;
+      height[i] = -1;
+    }
+    freeList = from;
+  }
+
+  private static double[] grow(double[] array, int capacity) {
+    double[] grown = new double[capacity];
+    if (array != null) {
+      System.arraycopy(array, 0, grown, 0, array.length);
+    }
+    return grown;
+  }
+
+  private static long[] grow(long[] array, int capacity) {
+    long[] grown = new long[capacity];
+    if (array != null) {
+      System.arraycopy(array, 0, grown, 0, array.length);
+    }
+    return grown;
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    int[] grown = new int[capacity];
+    if (array != null) {
+      System.arraycopy(array, 0, grown, 0, array.length);
+    }
+    return grown;
+  }
+}
@@ -0,0 +1,110 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+
+/**
+ * The buffer that one worker of the narrowphase writes the intersecting pairs of its chunk into.
+ * The buffers are merged in the order of the chunks, so the result does not depend on the scheduling of the workers.
+ */
+class NarrowphaseBuffer {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // The chunk of the pairs to test
+  int from;
+  int to;
+
+  // The intersecting pairs of the chunk
+  int count;
+  int[] pairIndex = new int[INITIAL_CAPACITY];
+  double[] centerX = new double[INITIAL_CAPACITY];
+  double[] centerY = new double[INITIAL_CAPACITY];
+  double[] normalX = new double[INITIAL_CAPACITY];
+  double[] normalY = new double[INITIAL_CAPACITY];
+  double[] depth = new double[INITIAL_CAPACITY];
+  boolean[] isDeferred = new boolean[INITIAL_CAPACITY]; // The pair is left to the calling thread, see runDeferred()
+
+  private final ContactManifold manifold = new ContactManifold();
+
+  /**
+   * Test the pairs of the chunk and write the intersecting ones into the buffer.
+   * On a worker thread, the pairs that cannot be tested off the logic thread are only written as deferred, in their
+   * place among the others, so the order of the pairs is the same as in a serial run.
+   *
+   * @param isOffThread Whether the buffer is run on a worker thread
+   */
+  void run(Collider<?>[] pairA, Collider<?>[] pairB, boolean isOffThread) {
+    count = 0;
+    for (int i = from; i < to; i++) {
+      if (isOffThread && !pairA[i].canCollideOffThread(pairB[i])) {
+        add(i, true);
+      } else if (pairA[i].collide(pairB[i], manifold)) {
+        add(i, false);
+      }
+    }
+  }
+
+  /**
+   * Test the deferred pairs of the chunk on the calling thread, and drop the ones that do not intersect.
+   */
+  void runDeferred(Collider<?>[] pairA, Collider<?>[] pairB) {
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      int pair = pairIndex[i];
+      if (isDeferred[i]) {
+        if (!pairA[pair].collide(pairB[pair], manifold)) {
+          continue;
+        }
+        write(kept, pair, false);
+      } else if (kept != i) {
+        pairIndex[kept] = pair;
+        centerX[kept] = centerX[i];
+        centerY[kept] = centerY[i];
+        normalX[kept] = normalX[i];
+        normalY[kept] = normalY[i];
+        depth[kept] = depth[i];
+        isDeferred[kept] = false;
+      }
+      kept++;
+    }
+    count = kept;
+  }
+
+  private void add(int pair, boolean isDeferred) {
+    if (count == pairIndex.length) {
+      grow(count * 2);
+    }
+    write(count, pair, isDeferred);
+    count++;
+  }
+
+  private void write(int index, int pair, boolean isDeferred) {
+    pairIndex[index] = pair;
+    centerX[index] = manifold.centerX;
+    centerY[index] = manifold.centerY;
+    normalX[index] = manifold.normalX;
+    normalY[index] = manifold.normalY;
+    depth[index] = manifold.depth;
+    this.isDeferred[index] = isDeferred;
+  }
+
+  private void grow(int capacity) {
+    int[] grownPairIndex = new int[capacity];
+    System.arraycopy(pairIndex, 0, grownPairIndex, 0, count);
+    pairIndex = grownPairIndex;
+    centerX = grow(centerX, capacity);
+    centerY = grow(centerY, capacity);
+    normalX = grow(normalX, capacity);
+    normalY = grow(normalY, capacity);
+    depth = grow(depth, capacity);
+    boolean[] grownIsDeferred = new boolean[capacity];
+    System.arraycopy(isDeferred, 0, grownIsDeferred, 0, count);
+    isDeferred = grownIsDeferred;
+  }
+
+  private double[] grow(double[] array, int capacity) {
+    double[] grown = new double[capacity];
+    System.arraycopy(array, 0, grown, 0, count);
+    return grown;
+  }
+}
@@ -0,0 +1,72 @@
+package ecs.engine.physics;
+
+/**
+ * The batch kernels of the physics, which run on primitive arrays (one array per attribute, one lane per body).
+ * The vector kernel uses the incubating Vector API and needs the JVM to run with
+ * --add-modules jdk.incubator.vector. Otherwise the scalar kernel is used, which gives the same results.
+ */
+public interface PhysicsKernel {
+
+  /// The system property that selects the kernel at startup: "vector", "scalar" or "auto" (the default).
+  String KERNEL_PROPERTY = "ecs.physics.kernel";
+
+  /**
+   * Integrate the linear motion of the bodies in [0, count) with the same steps as the PhysicsHandler:
+   * add the gravity, apply the damping of the air resistance, clamp and apply the acceleration,
+   * clamp the speed, and move the position by the velocity.
+   *
+   * @param gravity The velocity that the gravity adds in Y in this step, per body
+   * @param damping The factor that the velocity is multiplied by for the air resistance, per body
+   * @param deltaTime The fixed delta time
+   */
+  void integrate(double[] positionX, double[] positionY, double[] velocityX, double[] velocityY,
+      double[] accelerationX, double[] accelerationY, double[] gravity, double[] damping, int count,
+      double deltaTime, double maxAcceleration, double maxSpeed);
+
+  /**
+   * Write the indices in [0, count) of the AABBs that overlap the query AABB into the results, in ascending order.
+   * The results need room for count indices. Return the number of results.
+   */
+  int overlap(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY,
+      double[] minX, double[] minY, double[] maxX, double[] maxY, int count, int[] results);
+
+  /**
+   * Get the name of the kernel.
+   */
+  String getName();
+
+  /**
+   * Get the kernel that has been selected at startup.
+   */
+  static PhysicsKernel getDefault() {
+    return PhysicsKernelHolder.DEFAULT;
+  }
+}
+
+/**
+ * Select the default kernel once, when it is first used.
+ */
+final class PhysicsKernelHolder {
+
+  static final PhysicsKernel DEFAULT = select();
+
+  private PhysicsKernelHolder() {}
+
+  private static PhysicsKernel select() {
+    String kernel = System.getProperty(PhysicsKernel.KERNEL_PROPERTY, "auto");
+    if (kernel.equals("scalar")) {
+      return new ScalarPhysicsKernel();
+    }
+
+    // The vector kernel is loaded reflectively, so the engine still runs without the incubator module
+    try {
+      return (PhysicsKernel) Class.forName("ecs.engine.physics.VectorPhysicsKernel")
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      if (kernel.equals("vector")) {
+        throw new RuntimeException("The vector kernel needs --add-modules jdk.incubator.vector.", e);
+      }
+      return new ScalarPhysicsKernel();
+    }
+  }
+}
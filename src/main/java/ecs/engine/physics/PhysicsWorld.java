@@ -0,0 +1,1089 @@
+package ecs.engine.physics;
+
+import ecs.engine.base.GameComponent;
+import ecs.engine.base.GameScene;
+import ecs.engine.component.Collider;
+import ecs.engine.component.PhysicsHandler;
+import ecs.engine.tag.ComponentUpdateTag;
+import ecs.engine.tag.ObjectTag;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import javafx.geometry.Point2D;
+
+/**
+ * The physics world of a game scene.
+ * It holds the scene-wide structures that the colliders and the physics handlers of the scene share.
+ */
+public class PhysicsWorld {
+
+  ////////////// Solver Settings //////////////
+
+  /// The number of velocity iterations of the contact solver.
+  public int solverIterations = 8;
+  /// Whether the accumulated impulses of the last step are applied before iterating.
+  public boolean warmStarting = true;
+  /// Whether the penetration is corrected by moving the positions directly (split impulse),
+  /// instead of by adding a velocity bias (Baumgarte), which adds energy to the contact.
+  public boolean splitImpulse = true;
+  /// The fraction of the penetration that the Baumgarte stabilization corrects in every fixed step. The split impulse
+  /// corrects all the penetration beyond the slop instead, since it moves the positions without adding energy.
+  public double baumgarteFactor = 0.2;
+  /// The penetration that is allowed without correction, which keeps resting contacts touching.
+  public double penetrationSlop = 0.5;
+  /// The number of position iterations of the split impulse.
+  public int positionIterations = 8;
+  /// The largest penetration that the split impulse corrects in one fixed step, so a deep contact is pushed out over
+  /// several steps instead of at once.
+  public double maxPositionCorrection = 10;
+  /// The approaching speed below which the contacts do not bounce.
+  public double restitutionThreshold = 50;
+
+  ////////////// Narrowphase Settings //////////////
+
+  /// Whether the narrowphase runs on the worker threads of the common ForkJoinPool. Only the pairs of primitive
+  /// shapes are tested there, the pairs that need Shape.intersect() stay on the logic thread.
+  public boolean parallelNarrowphase = true;
+  /// The number of pairs that one worker tests at a time. Steps with fewer pairs run on the logic thread.
+  public int narrowphaseChunkSize = 256;
+
+  ////////////// Integration Settings //////////////
+
+  /// The kernel of the batch integration. The default one is selected at startup, see PhysicsKernel.
+  public PhysicsKernel kernel = PhysicsKernel.getDefault();
+
+  ///////////////////////////////////////////////
+
+  private static final double DEPTH_TOLERANCE = 1e-6; // The rounding error of the position correction
+
+  // instance variables
+  private Broadphase broadphase = new DynamicAabbTree();
+  private int nextColliderId;
+  private long stepCount;
+  private final int[] collisionMatrix; // The row of a tag is the mask of the tags it collides with
+
+  // The baked static colliders, and their BVH which is rebuilt only when they change
+  private final LinkedHashSet<Collider<?>> staticColliders = new LinkedHashSet<>();
+  private StaticBvh staticBvh;
+  private boolean isStaticBvhDirty = true;
+  private final LinkedHashSet<Collider<?>> touchingStaticColliders = new LinkedHashSet<>();
+
+  // The contacts of the current step (in the order they were found), the contacts solved in the last step
+  // and all the persistent contacts
+  private ArrayList<Contact> contacts = new ArrayList<>();
+  private ArrayList<Contact> solvedContacts = new ArrayList<>();
+  private final HashMap<Long, Contact> contactMap = new HashMap<>();
+
+  // The solver buffers of the body velocities and positions
+  private double[] velocityX = new double[0];
+  private double[] velocityY = new double[0];
+  private double[] positionX = new double[0];
+  private double[] positionY = new double[0];
+  private double[] correctionX = new double[0]; // The moves of the position correction in this step
+  private double[] correctionY = new double[0];
+  private boolean[] velocityChanged = new boolean[0];
+  private boolean[] positionChanged = new boolean[0];
+
+  // The batch integration buffers, one lane per integrated body
+  private PhysicsHandler[] batchBodies = new PhysicsHandler[0];
+  private double[] batchPositionX = new double[0];
+  private double[] batchPositionY = new double[0];
+  private double[] batchVelocityX = new double[0];
+  private double[] batchVelocityY = new double[0];
+  private double[] batchAccelerationX = new double[0];
+  private double[] batchAccelerationY = new double[0];
+  private double[] batchGravity = new double[0];
+  private double[] batchDamping = new double[0];
+
+  // The collision pairs of the step, and the narrowphase buffers of the chunks
+  private Collider<?>[] pairA = new Collider<?>[64];
+  private Collider<?>[] pairB = new Collider<?>[64];
+  private int pairCount;
+  private final ArrayList<Collider<?>> pairCandidates = new ArrayList<>();
+  private final ArrayList<Collider<?>> awakeColliders = new ArrayList<>();
+  private NarrowphaseBuffer[] narrowphaseBuffers = new NarrowphaseBuffer[0];
+
+  // The collision events of the step, and the batch consumers with their buffers by collider type
+  private final CollisionEventBuffer events = new CollisionEventBuffer();
+  private final LinkedHashMap<Class<?>, Consumer<CollisionEventBuffer>> batchConsumers = new LinkedHashMap<>();
+  private final LinkedHashMap<Class<?>, CollisionEventBuffer> batchEvents = new LinkedHashMap<>();
+
+  // The spatial query buffers (the broadphase candidates and the distances of the nearest query)
+  private final ArrayList<Collider<?>> queryCandidates = new ArrayList<>();
+  private double[] nearestDistances = new double[16];
+
+  // The island pass buffers (union-find parents and the per-island state)
+  private int[] islandParents = new int[0];
+  private boolean[] islandCanSleep = new boolean[0];
+  private final ArrayList<PhysicsHandler> wakingBodies = new ArrayList<>();
+
+  public PhysicsWorld() {
+    if (ObjectTag.values().length > Integer.SIZE) {
+      throw new RuntimeException("The collision matrix supports at most " + Integer.SIZE + " object tags.");
+    }
+
+    // Every tag collides with every tag by default
+    collisionMatrix = new int[ObjectTag.values().length];
+    Arrays.fill(collisionMatrix, -1);
+  }
+
+  /**
+   * Called by the scene at the end of every fixed step, after all the components have been updated.
+   */
+  public void postFixedStep(Map<ComponentUpdateTag, ArrayList<GameComponent>> components) {
+    ArrayList<GameComponent> physicsHandlers = components.get(ComponentUpdateTag.PHYSICS);
+    for (int i = 0; i < physicsHandlers.size(); i++) {
+      ((PhysicsHandler) physicsHandlers.get(i)).bodyIndex = i;
+    }
+
+    solveContacts(physicsHandlers);
+    updateSleeping(physicsHandlers, components.get(ComponentUpdateTag.COLLISION));
+
+    // Keep the solved contacts readable until the next step has been solved
+    ArrayList<Contact> swap = solvedContacts;
+    solvedContacts = contacts;
+    contacts = swap;
+    contacts.clear();
+    stepCount++;
+  }
+
+  /**
+   * Integrate the linear motion of the physics handlers that left it to the batch integration in this step.
+   * Called by the scene in every fixed step after the physics handlers have been updated.
+   */
+  public void integrate(List<GameComponent> physicsHandlers) {
+    int count = physicsHandlers.size();
+    if (batchBodies.length < count) {
+      int capacity = count * 2;
+      batchBodies = new PhysicsHandler[capacity];
+      batchPositionX = new double[capacity];
+      batchPositionY = new double[capacity];
+      batchVelocityX = new double[capacity];
+      batchVelocityY = new double[capacity];
+      batchAccelerationX = new double[capacity];
+      batchAccelerationY = new double[capacity];
+      batchGravity = new double[capacity];
+      batchDamping = new double[capacity];
+    }
+
+    // Gather the bodies into the lanes
+    int lanes = 0;
+    for (GameComponent component : physicsHandlers) {
+      PhysicsHandler physicsHandler = (PhysicsHandler) component;
+      if (!physicsHandler.isBatchIntegrated) {
+        continue;
+      }
+      batchBodies[lanes] = physicsHandler;
+      batchPositionX[lanes] = physicsHandler.transform.position.getX();
+      batchPositionY[lanes] = physicsHandler.transform.position.getY();
+      batchVelocityX[lanes] = physicsHandler.velocity.getX();
+      batchVelocityY[lanes] = physicsHandler.velocity.getY();
+      batchAccelerationX[lanes] = physicsHandler.acceleration.getX();
+      batchAccelerationY[lanes] = physicsHandler.acceleration.getY();
+      batchGravity[lanes] = physicsHandler.getGravityStep();
+      batchDamping[lanes] = physicsHandler.getDampingFactor();
+      lanes++;
+    }
+    if (lanes == 0) {
+      return;
+    }
+
+    kernel.integrate(batchPositionX, batchPositionY, batchVelocityX, batchVelocityY,
+        batchAccelerationX, batchAccelerationY, batchGravity, batchDamping, lanes,
+        GameScene.getFixedDeltaTime(), PhysicsHandler.MAX_ACCELERATION, PhysicsHandler.MAX_SPEED);
+
+    // Scatter the lanes back, only the changed values are written
+    for (int i = 0; i < lanes; i++) {
+      PhysicsHandler physicsHandler = batchBodies[i];
+      batchBodies[i] = null;
+      if (batchAccelerationX[i] != physicsHandler.acceleration.getX()
+          || batchAccelerationY[i] != physicsHandler.acceleration.getY()) {
+        physicsHandler.acceleration = new Point2D(batchAccelerationX[i], batchAccelerationY[i]);
+      }
+      if (batchVelocityX[i] != physicsHandler.velocity.getX() || batchVelocityY[i] != physicsHandler.velocity.getY()) {
+        physicsHandler.velocity = new Point2D(batchVelocityX[i], batchVelocityY[i]);
+      }
+      if (batchPositionX[i] != physicsHandler.transform.position.getX()
+          || batchPositionY[i] != physicsHandler.transform.position.getY()) {
+        physicsHandler.transform.position = new Point2D(batchPositionX[i], batchPositionY[i]);
+      }
+    }
+  }
+
+  /**
+   * Detect the collisions between the colliders of the scene and dispatch their events.
+   * Called by the scene in every fixed step after the colliders have been updated.
+   * The pairs are generated once, the primitive ones are tested in parallel, and the events are then dispatched on
+   * the calling thread in the order of the pairs, so the order of the callbacks is reproducible.
+   */
+  public void detectCollisions(List<GameComponent> colliders) {
+    generatePairs(colliders);
+    int chunkCount = runNarrowphase();
+
+    // Merge the buffers in the order of the chunks, the solid pairs become the contacts of the solver
+    for (Collider<?> collider : awakeColliders) {
+      collider.beginCollisions();
+    }
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      NarrowphaseBuffer buffer = narrowphaseBuffers[chunk];
+      for (int i = 0; i < buffer.count; i++) {
+        Collider<?> colliderA = pairA[buffer.pairIndex[i]];
+        Collider<?> colliderB = pairB[buffer.pairIndex[i]];
+        double centerX = buffer.centerX[i];
+        double centerY = buffer.centerY[i];
+
+        if (buffer.normalX[i] != 0 || buffer.normalY[i] != 0) {
+          addContact(colliderA, colliderB, buffer.normalX[i], buffer.normalY[i], buffer.depth[i], centerX, centerY);
+        }
+
+        // A sleeping collider keeps its events until it wakes up
+        if (!colliderA.isSleeping()) {
+          colliderA.handleCollision(colliderB, centerX, centerY);
+        }
+        if (!colliderB.isSleeping()) {
+          colliderB.handleCollision(colliderA, centerX, centerY);
+        }
+
+        // The baked colliders are only found by the others, so they are tracked while they touch something
+        if (colliderB.isBaked()) {
+          touchingStaticColliders.add(colliderB);
+        }
+      }
+    }
+    for (Collider<?> collider : awakeColliders) {
+      collider.endCollisions();
+    }
+    Iterator<Collider<?>> iterator = touchingStaticColliders.iterator();
+    while (iterator.hasNext()) {
+      Collider<?> collider = iterator.next();
+      collider.endCollisions();
+      if (collider.getCollidingColliders().isEmpty()) {
+        iterator.remove();
+      }
+    }
+
+    // Release the references
+    Arrays.fill(pairA, 0, pairCount, null);
+    Arrays.fill(pairB, 0, pairCount, null);
+    awakeColliders.clear();
+  }
+
+  /**
+   * Dispatch the collision events recorded in this step, in the order they were recorded.
+   * Called by the scene at the end of every fixed step, so the callbacks can safely destroy objects.
+   * The events whose collider or other collider has been destroyed by an earlier callback are dropped.
+   * The batch consumers get the events of their collider types after the consumers of the colliders, without the
+   * events of the colliders destroyed in the meantime.
+   */
+  public void dispatchEvents() {
+    for (CollisionEventBuffer batch : batchEvents.values()) {
+      batch.clear();
+    }
+
+    for (int i = 0; i < events.size(); i++) {
+      Collider<?> collider = events.getCollider(i);
+      Collider<?> other = events.getOther(i);
+      if (collider.gameObject == null || other.gameObject == null) {
+        continue;
+      }
+      int type = events.getType(i);
+      collider.dispatchEvent(type, other);
+
+      for (Map.Entry<Class<?>, CollisionEventBuffer> entry : batchEvents.entrySet()) {
+        if (entry.getKey().isInstance(collider)) {
+          entry.getValue().add(type, collider, other, events.getPointX(i), events.getPointY(i));
+        }
+      }
+    }
+    events.clear();
+
+    for (Map.Entry<Class<?>, Consumer<CollisionEventBuffer>> entry : batchConsumers.entrySet()) {
+      CollisionEventBuffer batch = batchEvents.get(entry.getKey());
+      batch.removeDestroyed();
+      if (batch.size() > 0) {
+        entry.getValue().accept(batch);
+      }
+    }
+  }
+
+  /**
+   * Add a contact between two solid colliders that touch in the current step.
+   * Each pair is kept only once, no matter how many of the two colliders report it.
+   *
+   * @param collider The collider that reports the contact
+   * @param other The other collider
+   * @param normalX The X of the normal, pointing from the collider to the other
+   * @param normalY The Y of the normal, pointing from the collider to the other
+   * @param depth The penetration depth
+   * @param pointX The X of the contact point
+   * @param pointY The Y of the contact point
+   */
+  public void addContact(Collider<?> collider, Collider<?> other, double normalX, double normalY, double depth,
+      double pointX, double pointY) {
+    boolean isSwapped = collider.getColliderId() > other.getColliderId();
+    Collider<?> colliderA = isSwapped ? other : collider;
+    Collider<?> colliderB = isSwapped ? collider : other;
+    long key = ((long) colliderA.getColliderId() << 32) | (colliderB.getColliderId() & 0xFFFFFFFFL);
+
+    Contact contact = contactMap.get(key);
+    if (contact == null) {
+      contact = new Contact();
+      contact.colliderA = colliderA;
+      contact.colliderB = colliderB;
+      contactMap.put(key, contact);
+    } else if (contact.touchedStep == stepCount + 1) {
+      return;
+    }
+    contact.touchedStep = stepCount + 1;
+
+    contact.bodyA = colliderA.gameObject.getComponent(PhysicsHandler.class);
+    contact.bodyB = colliderB.gameObject.getComponent(PhysicsHandler.class);
+
+    // A sleeping body hit by an awake moving body is woken up with its island, so the solver moves it this step
+    if (isAwakeMoving(contact.bodyA) && contact.bodyB != null && contact.bodyB.isSleeping()) {
+      wakeUpIsland(contact.bodyB);
+    } else if (isAwakeMoving(contact.bodyB) && contact.bodyA != null && contact.bodyA.isSleeping()) {
+      wakeUpIsland(contact.bodyA);
+    }
+    contact.normalX = isSwapped ? -normalX : normalX;
+    contact.normalY = isSwapped ? -normalY : normalY;
+    contact.depth = depth;
+    contact.pointX = pointX;
+    contact.pointY = pointY;
+    contacts.add(contact);
+  }
+
+  /**
+   * Bake the static collider into the static BVH. Called by the collider.
+   */
+  public void addStatic(Collider<?> collider) {
+    staticColliders.add(collider);
+    isStaticBvhDirty = true;
+  }
+
+  /**
+   * Remove the collider from the static BVH. Called by the collider when it is moved or detached.
+   * The bodies that rest on the collider are woken up, so they do not float where it was.
+   */
+  public void removeStatic(Collider<?> collider) {
+    staticColliders.remove(collider);
+    touchingStaticColliders.remove(collider);
+    isStaticBvhDirty = true;
+    wakeUpContacts(collider);
+  }
+
+  /**
+   * Wake up the sleeping body and all the sleeping bodies that are connected to it by contacts.
+   */
+  public void wakeUpIsland(PhysicsHandler body) {
+    body.wakeUp();
+    wakingBodies.add(body);
+    while (!wakingBodies.isEmpty()) {
+      PhysicsHandler wakingBody = wakingBodies.remove(wakingBodies.size() - 1);
+      for (GameComponent component : wakingBody.gameObject.getAllComponents().values()) {
+        if (!(component instanceof Collider<?> collider)) {
+          continue;
+        }
+        List<Collider<?>> contacts = collider.getCollidingColliders();
+        for (int i = 0; i < contacts.size(); i++) {
+          Collider<?> other = contacts.get(i);
+          PhysicsHandler physicsHandler = other.gameObject == null ? null
+              : other.gameObject.getComponent(PhysicsHandler.class);
+          if (physicsHandler != null && physicsHandler.isSleeping()) {
+            physicsHandler.wakeUp();
+            wakingBodies.add(physicsHandler);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Wake up the sleeping bodies that are in contact with the collider. Called when the collider is removed.
+   */
+  public void wakeUpContacts(Collider<?> collider) {
+    List<Collider<?>> contacts = collider.getCollidingColliders();
+    for (int i = 0; i < contacts.size(); i++) {
+      Collider<?> other = contacts.get(i);
+      PhysicsHandler physicsHandler = other.gameObject == null ? null
+          : other.gameObject.getComponent(PhysicsHandler.class);
+      if (physicsHandler != null && physicsHandler.isSleeping()) {
+        physicsHandler.wakeUp();
+      }
+    }
+  }
+
+  /**
+   * Mark the static BVH to be rebuilt, when the filter of a baked collider has been changed. Called by the collider.
+   */
+  public void invalidateStaticBvh() {
+    isStaticBvhDirty = true;
+  }
+
+  /**
+   * Get the BVH of the baked static colliders. The BVH is rebuilt here if the static colliders have changed.
+   */
+  public StaticBvh getStaticBvh() {
+    if (isStaticBvhDirty) {
+      staticBvh = new StaticBvh(new ArrayList<>(staticColliders), this);
+      isStaticBvhDirty = false;
+    }
+    return staticBvh;
+  }
+
+  /**
+   * Get the packed collision mask of the collider from the collision matrix and its layer bits.
+   * The same tag is dropped from the matrix row if the collider cannot collide with its own tag.
+   */
+  public long getFilterMask(Collider<?> collider) {
+    ObjectTag tag = collider.gameObject.OBJECT_TAG();
+    int tagMask = getCollisionMask(tag);
+    if (!collider.canCollideSameTag) {
+      tagMask &= ~CollisionFilter.tagBit(tag);
+    }
+    return CollisionFilter.packMask(tagMask, collider.maskBits);
+  }
+
+  /**
+   * Get a new unique id for a collider of this scene.
+   */
+  public int nextColliderId() {
+    return nextColliderId++;
+  }
+
+  /**
+   * Get the contacts that have been solved in the last fixed step.
+   */
+  public List<Contact> getContacts() {
+    return solvedContacts;
+  }
+
+  private void generatePairs(List<GameComponent> colliders) {
+    pairCount = 0;
+    awakeColliders.clear();
+    for (GameComponent component : colliders) {
+      Collider<?> collider = (Collider<?>) component;
+      if (collider.isSleeping() || collider.isBaked()) {
+        continue;
+      }
+      awakeColliders.add(collider);
+
+      pairCandidates.clear();
+      collider.queryCandidates(pairCandidates);
+      for (int i = 0; i < pairCandidates.size(); i++) {
+        Collider<?> other = pairCandidates.get(i);
+
+        // A pair of two awake colliders is found from both sides, so only the one with the smaller id keeps it
+        boolean isFoundByOther = !other.isSleeping() && !other.isBaked();
+        if (other == collider || (isFoundByOther && other.getColliderId() < collider.getColliderId())) {
+          continue;
+        }
+
+        if (pairCount == pairA.length) {
+          pairA = Arrays.copyOf(pairA, pairCount * 2);
+          pairB = Arrays.copyOf(pairB, pairCount * 2);
+        }
+        pairA[pairCount] = collider;
+        pairB[pairCount] = other;
+        pairCount++;
+      }
+    }
+    pairCandidates.clear();
+  }
+
+  private int runNarrowphase() {
+    int chunkSize = Math.max(1, narrowphaseChunkSize);
+    int chunkCount = (pairCount + chunkSize - 1) / chunkSize;
+    if (narrowphaseBuffers.length < chunkCount) {
+      NarrowphaseBuffer[] grown = Arrays.copyOf(narrowphaseBuffers, chunkCount);
+      for (int i = narrowphaseBuffers.length; i < chunkCount; i++) {
+        grown[i] = new NarrowphaseBuffer();
+      }
+      narrowphaseBuffers = grown;
+    }
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      narrowphaseBuffers[chunk].from = chunk * chunkSize;
+      narrowphaseBuffers[chunk].to = Math.min(pairCount, (chunk + 1) * chunkSize);
+    }
+
+    if (parallelNarrowphase && chunkCount > 1) {
+      // The workers only test the primitive pairs, the pairs that touch the JavaFX shapes are tested here
+      ForkJoinPool.commonPool().invoke(new NarrowphaseTask(0, chunkCount));
+      for (int chunk = 0; chunk < chunkCount; chunk++) {
+        narrowphaseBuffers[chunk].runDeferred(pairA, pairB);
+      }
+    } else {
+      for (int chunk = 0; chunk < chunkCount; chunk++) {
+        narrowphaseBuffers[chunk].run(pairA, pairB, false);
+      }
+    }
+    return chunkCount;
+  }
+
+  /**
+   * The task that splits the chunks of the narrowphase across the workers.
+   */
+  private class NarrowphaseTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int fromChunk;
+    private final int toChunk;
+
+    NarrowphaseTask(int fromChunk, int toChunk) {
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (toChunk - fromChunk == 1) {
+        narrowphaseBuffers[fromChunk].run(pairA, pairB, true);
+        return;
+      }
+      int middle = (fromChunk + toChunk) >>> 1;
+      invokeAll(new NarrowphaseTask(fromChunk, middle), new NarrowphaseTask(middle, toChunk));
+    }
+  }
+
+  /**
+   * Solve the contacts of the current step with sequential impulses.
+   * The velocity iterations make the bodies stop approaching each other,
+   * then the position iterations correct the remaining penetration.
+   */
+  private void solveContacts(List<GameComponent> physicsHandlers) {
+    // Drop the contacts that have not been touched in this step
+    contactMap.values().removeIf(contact -> contact.touchedStep != stepCount + 1);
+    if (contacts.isEmpty()) {
+      return;
+    }
+
+    // Gather the velocities and the positions of the bodies
+    int count = physicsHandlers.size();
+    if (velocityX.length < count) {
+      velocityX = new double[count * 2];
+      velocityY = new double[count * 2];
+      positionX = new double[count * 2];
+      positionY = new double[count * 2];
+      correctionX = new double[count * 2];
+      correctionY = new double[count * 2];
+      velocityChanged = new boolean[count * 2];
+      positionChanged = new boolean[count * 2];
+    }
+    for (int i = 0; i < count; i++) {
+      PhysicsHandler physicsHandler = (PhysicsHandler) physicsHandlers.get(i);
+      velocityX[i] = physicsHandler.velocity.getX();
+      velocityY[i] = physicsHandler.velocity.getY();
+      positionX[i] = physicsHandler.transform.position.getX();
+      positionY[i] = physicsHandler.transform.position.getY();
+      correctionX[i] = 0;
+      correctionY[i] = 0;
+      velocityChanged[i] = false;
+      positionChanged[i] = false;
+    }
+
+    // Prepare the contacts and warm start them
+    double fixedDeltaTime = GameScene.getFixedDeltaTime();
+    for (int i = contacts.size() - 1; i >= 0; i--) {
+      Contact contact = contacts.get(i);
+      if (!prepareContact(contact, fixedDeltaTime)) {
+        contacts.remove(i);
+        continue;
+      }
+      if (warmStarting) {
+        applyImpulse(contact, contact.normalImpulse);
+      } else {
+        contact.normalImpulse = 0;
+      }
+    }
+
+    // Iterate the velocity constraints
+    for (int iteration = 0; iteration < solverIterations; iteration++) {
+      for (Contact contact : contacts) {
+        double relativeVelocity = relativeNormalVelocity(contact);
+        double impulse = -contact.normalMass * (relativeVelocity - contact.velocityBias);
+
+        // The accumulated impulse can only push the bodies apart
+        double oldImpulse = contact.normalImpulse;
+        contact.normalImpulse = Math.max(oldImpulse + impulse, 0);
+        applyImpulse(contact, contact.normalImpulse - oldImpulse);
+      }
+    }
+
+    // Correct the positions directly for the split impulse
+    if (splitImpulse) {
+      solvePositions();
+    }
+
+    // Scatter the results back to the bodies
+    for (int i = 0; i < count; i++) {
+      PhysicsHandler physicsHandler = (PhysicsHandler) physicsHandlers.get(i);
+      if (velocityChanged[i]) {
+        physicsHandler.velocity = new Point2D(velocityX[i], velocityY[i]);
+      }
+      if (positionChanged[i]) {
+        physicsHandler.transform.position = new Point2D(positionX[i], positionY[i]);
+      }
+    }
+  }
+
+  private void solvePositions() {
+    // The split impulse solves the positions like the velocities, with an accumulated impulse per contact that moves
+    // the bodies apart until every contact is back within the slop, and it is warm started from the last step
+    for (Contact contact : contacts) {
+      contact.positionTarget = Math.min(contact.depth - penetrationSlop, maxPositionCorrection);
+      if (warmStarting) {
+        movePositions(contact, contact.positionImpulse);
+      } else {
+        contact.positionImpulse = 0;
+      }
+    }
+
+    for (int iteration = 0; iteration < positionIterations; iteration++) {
+      for (Contact contact : contacts) {
+        double impulse = contact.normalMass * (contact.positionTarget - relativeNormalCorrection(contact));
+
+        // The accumulated impulse can only push the bodies apart
+        double oldImpulse = contact.positionImpulse;
+        contact.positionImpulse = Math.max(oldImpulse + impulse, 0);
+        movePositions(contact, contact.positionImpulse - oldImpulse);
+      }
+    }
+
+    // The contacts keep the depth that is left after the correction
+    for (Contact contact : contacts) {
+      contact.depth -= relativeNormalCorrection(contact);
+    }
+  }
+
+  private double relativeNormalCorrection(Contact contact) {
+    double relativeX = correctionOf(contact.indexB, correctionX) - correctionOf(contact.indexA, correctionX);
+    double relativeY = correctionOf(contact.indexB, correctionY) - correctionOf(contact.indexA, correctionY);
+    return relativeX * contact.normalX + relativeY * contact.normalY;
+  }
+
+  private void movePositions(Contact contact, double impulse) {
+    // The impulse is split between the bodies by their inverse masses, so they move apart by impulse / normalMass
+    moveBody(contact.indexA, contact.inverseMassA, -impulse * contact.normalX, -impulse * contact.normalY);
+    moveBody(contact.indexB, contact.inverseMassB, impulse * contact.normalX, impulse * contact.normalY);
+  }
+
+  private static double correctionOf(int index, double[] corrections) {
+    return index < 0 ? 0 : corrections[index];
+  }
+
+  private boolean prepareContact(Contact contact, double fixedDeltaTime) {
+    contact.indexA = solverIndexOf(contact.bodyA);
+    contact.indexB = solverIndexOf(contact.bodyB);
+    contact.inverseMassA = contact.indexA < 0 ? 0 : 1.0 / contact.bodyA.mass;
+    contact.inverseMassB = contact.indexB < 0 ? 0 : 1.0 / contact.bodyB.mass;
+
+    // Only the contacts with at least one awake moving body are solved
+    double inverseMassSum = contact.inverseMassA + contact.inverseMassB;
+    if (inverseMassSum == 0) {
+      return false;
+    }
+    contact.normalMass = 1 / inverseMassSum;
+
+    // Bounce only when the bodies approach fast enough
+    double relativeVelocity = relativeNormalVelocity(contact);
+    double restitution = Math.max(
+        contact.bodyA == null ? 0 : contact.bodyA.restitution,
+        contact.bodyB == null ? 0 : contact.bodyB.restitution
+    );
+    contact.velocityBias = relativeVelocity < -restitutionThreshold ? -restitution * relativeVelocity : 0;
+
+    // The Baumgarte stabilization pushes the bodies apart with a velocity instead
+    if (!splitImpulse) {
+      double positionBias = baumgarteFactor / fixedDeltaTime * Math.max(contact.depth - penetrationSlop, 0);
+      contact.velocityBias = Math.max(contact.velocityBias, positionBias);
+    }
+    return true;
+  }
+
+  private static boolean isAwakeMoving(PhysicsHandler body) {
+    return body != null && !body.isStatic && body.gameObject != null && !body.isSleeping();
+  }
+
+  private int solverIndexOf(PhysicsHandler body) {
+    // Static bodies, the bodies of other scenes and the sleeping bodies do not move in the solver
+    if (body == null || body.isStatic || body.gameObject == null || body.isSleeping()) {
+      return -1;
+    }
+    return body.bodyIndex;
+  }
+
+  private double relativeNormalVelocity(Contact contact) {
+    double relativeX = velocityOf(contact.indexB, velocityX) - velocityOf(contact.indexA, velocityX);
+    double relativeY = velocityOf(contact.indexB, velocityY) - velocityOf(contact.indexA, velocityY);
+    return relativeX * contact.normalX + relativeY * contact.normalY;
+  }
+
+  private static double velocityOf(int index, double[] velocities) {
+    return index < 0 ? 0 : velocities[index];
+  }
+
+  private void applyImpulse(Contact contact, double impulse) {
+    double impulseX = impulse * contact.normalX;
+    double impulseY = impulse * contact.normalY;
+    if (contact.indexA >= 0) {
+      velocityX[contact.indexA] -= impulseX * contact.inverseMassA;
+      velocityY[contact.indexA] -= impulseY * contact.inverseMassA;
+      velocityChanged[contact.indexA] = true;
+    }
+    if (contact.indexB >= 0) {
+      velocityX[contact.indexB] += impulseX * contact.inverseMassB;
+      velocityY[contact.indexB] += impulseY * contact.inverseMassB;
+      velocityChanged[contact.indexB] = true;
+    }
+  }
+
+  private void moveBody(int index, double inverseMass, double dx, double dy) {
+    if (index < 0 || (dx == 0 && dy == 0)) {
+      return;
+    }
+    positionX[index] += dx * inverseMass;
+    positionY[index] += dy * inverseMass;
+    correctionX[index] += dx * inverseMass;
+    correctionY[index] += dy * inverseMass;
+    positionChanged[index] = true;
+  }
+
+  /**
+   * Put the resting islands to sleep and wake up the islands that have a moving object.
+   * An island is a group of non-static objects connected by contacts, and it always sleeps and wakes as a whole.
+   */
+  private void updateSleeping(List<GameComponent> physicsHandlers, List<GameComponent> colliders) {
+    int count = physicsHandlers.size();
+    if (islandParents.length < count) {
+      islandParents = new int[count * 2];
+      islandCanSleep = new boolean[count * 2];
+    }
+
+    for (int i = 0; i < count; i++) {
+      islandParents[i] = i;
+      islandCanSleep[i] = true;
+    }
+
+    // Union the objects that are in contact
+    for (GameComponent component : colliders) {
+      Collider<?> collider = (Collider<?>) component;
+      PhysicsHandler physicsHandler = collider.gameObject.getComponent(PhysicsHandler.class);
+      if (physicsHandler == null || physicsHandler.isStatic) {
+        continue;
+      }
+
+      List<Collider<?>> contacts = collider.getCollidingColliders();
+      for (int i = 0; i < contacts.size(); i++) {
+        Collider<?> other = contacts.get(i);
+        PhysicsHandler otherPhysicsHandler = other.gameObject == null ? null
+            : other.gameObject.getComponent(PhysicsHandler.class);
+        if (otherPhysicsHandler != null && !otherPhysicsHandler.isStatic) {
+          union(physicsHandler.bodyIndex, otherPhysicsHandler.bodyIndex);
+        }
+      }
+    }
+
+    // An island can sleep only if all of its objects are sleeping or resting
+    for (int i = 0; i < count; i++) {
+      PhysicsHandler physicsHandler = (PhysicsHandler) physicsHandlers.get(i);
+      if (!physicsHandler.isSleeping() && !physicsHandler.isResting()) {
+        islandCanSleep[find(i)] = false;
+      }
+    }
+
+    // A sleeping body skips the narrowphase, so an island stays awake until the split impulse has corrected its
+    // contacts back within the slop. The Baumgarte stabilization rests deeper than the slop, so it is not checked.
+    if (splitImpulse) {
+      for (Contact contact : contacts) {
+        if (contact.depth > penetrationSlop + DEPTH_TOLERANCE) {
+          if (contact.indexA >= 0) {
+            islandCanSleep[find(contact.indexA)] = false;
+          }
+          if (contact.indexB >= 0) {
+            islandCanSleep[find(contact.indexB)] = false;
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      PhysicsHandler physicsHandler = (PhysicsHandler) physicsHandlers.get(i);
+      boolean canSleep = islandCanSleep[find(i)];
+      if (canSleep && !physicsHandler.isSleeping()) {
+        physicsHandler.sleep();
+      } else if (!canSleep && physicsHandler.isSleeping()) {
+        physicsHandler.wakeUp();
+      }
+    }
+  }
+
+  private int find(int index) {
+    while (islandParents[index] != index) {
+      islandParents[index] = islandParents[islandParents[index]];
+      index = islandParents[index];
+    }
+    return index;
+  }
+
+  private void union(int a, int b) {
+    int rootA = find(a);
+    int rootB = find(b);
+    if (rootA != rootB) {
+      islandParents[rootA] = rootB;
+    }
+  }
+
+  /* API BELOW */
+
+  /**
+   * Get the buffer that the colliders record their collision events into during the detection.
+   */
+  public CollisionEventBuffer getEventBuffer() {
+    return events;
+  }
+
+  /**
+   * Set the consumer that gets all the collision events of the colliders of the given type at once, in every
+   * fixed step with events. The consumers of the colliders themselves are still called before the batch.
+   * The buffer is reused in the next step, so the consumer must not keep it.
+   *
+   * @param colliderType The type of the colliders that receive the events, subclasses included
+   * @param consumer The consumer of the batch, or null to remove it
+   */
+  public void setEventBatchConsumer(Class<? extends Collider<?>> colliderType,
+      Consumer<CollisionEventBuffer> consumer) {
+    if (consumer == null) {
+      batchConsumers.remove(colliderType);
+      batchEvents.remove(colliderType);
+      return;
+    }
+    batchConsumers.put(colliderType, consumer);
+    batchEvents.computeIfAbsent(colliderType, type -> new CollisionEventBuffer());
+  }
+
+  /**
+   * Get the broadphase of the scene.
+   */
+  public Broadphase getBroadphase() {
+    return broadphase;
+  }
+
+  /**
+   * Set the broadphase of the scene.
+   * The colliders move their proxies into the new broadphase in their next transform update.
+   */
+  public void setBroadphase(Broadphase broadphase) {
+    this.broadphase = broadphase;
+  }
+
+  /**
+   * Cast a ray against the colliders of the scene and write the closest hit into the given hit.
+   * Return whether the ray hit anything. A ray that starts inside a collider does not hit that collider.
+   *
+   * @param originX The X of the origin of the ray
+   * @param originY The Y of the origin of the ray
+   * @param directionX The X of the direction of the ray, which does not need to be normalized
+   * @param directionY The Y of the direction of the ray, which does not need to be normalized
+   * @param maxDistance The length of the ray
+   * @param mask The packed mask of the tags and layers to hit, see CollisionFilter.packMask()
+   * @param hit The hit to write into
+   */
+  public boolean raycast(double originX, double originY, double directionX, double directionY, double maxDistance,
+      long mask, RaycastHit hit) {
+    hit.clear();
+    double length = Math.hypot(directionX, directionY);
+    if (length == 0 || maxDistance <= 0) {
+      return false;
+    }
+    double dx = directionX / length * maxDistance;
+    double dy = directionY / length * maxDistance;
+
+    queryCandidates.clear();
+    broadphase.raycast(originX, originY, dx, dy, mask, queryCandidates);
+    getStaticBvh().raycast(originX, originY, dx, dy, mask, queryCandidates);
+
+    // Keep the closest hit, the normal of a farther hit is overwritten by the closer one
+    double closestFraction = ContinuousCollision.NO_HIT;
+    double normalX = 0;
+    double normalY = 0;
+    double pointX = 0;
+    double pointY = 0;
+    for (int i = 0; i < queryCandidates.size(); i++) {
+      Collider<?> collider = queryCandidates.get(i);
+      double fraction = SpatialQueries.raycast(collider, originX, originY, dx, dy, hit);
+      if (fraction < closestFraction) {
+        closestFraction = fraction;
+        hit.collider = collider;
+        normalX = hit.normalX;
+        normalY = hit.normalY;
+        pointX = hit.pointX;
+        pointY = hit.pointY;
+      }
+    }
+    queryCandidates.clear();
+
+    if (hit.collider == null) {
+      return false;
+    }
+    hit.normalX = normalX;
+    hit.normalY = normalY;
+    hit.pointX = pointX;
+    hit.pointY = pointY;
+    hit.distance = closestFraction * maxDistance;
+    return true;
+  }
+
+  /**
+   * Find the colliders that overlap the circle.
+   * The results are cleared before adding, and the number of results is returned.
+   *
+   * @param mask The packed mask of the tags and layers to find, see CollisionFilter.packMask()
+   * @param results The list to write the results into
+   */
+  public int overlapCircle(double centerX, double centerY, double radius, long mask, List<Collider<?>> results) {
+    results.clear();
+    queryCandidates.clear();
+    overlapCandidates(centerX - radius, centerY - radius, centerX + radius, centerY + radius, mask);
+    for (int i = 0; i < queryCandidates.size(); i++) {
+      Collider<?> collider = queryCandidates.get(i);
+      if (SpatialQueries.overlapsCircle(collider, centerX, centerY, radius)) {
+        results.add(collider);
+      }
+    }
+    queryCandidates.clear();
+    return results.size();
+  }
+
+  /**
+   * Find the colliders that overlap the axis-aligned box.
+   * The results are cleared before adding, and the number of results is returned.
+   *
+   * @param mask The packed mask of the tags and layers to find, see CollisionFilter.packMask()
+   * @param results The list to write the results into
+   */
+  public int overlapBox(double minX, double minY, double maxX, double maxY, long mask, List<Collider<?>> results) {
+    results.clear();
+    queryCandidates.clear();
+    overlapCandidates(minX, minY, maxX, maxY, mask);
+    for (int i = 0; i < queryCandidates.size(); i++) {
+      Collider<?> collider = queryCandidates.get(i);
+      if (SpatialQueries.overlapsBox(collider, minX, minY, maxX, maxY)) {
+        results.add(collider);
+      }
+    }
+    queryCandidates.clear();
+    return results.size();
+  }
+
+  /**
+   * Find the colliders that contain the point.
+   * The results are cleared before adding, and the number of results is returned.
+   *
+   * @param mask The packed mask of the tags and layers to find, see CollisionFilter.packMask()
+   * @param results The list to write the results into
+   */
+  public int pointQuery(double x, double y, long mask, List<Collider<?>> results) {
+    results.clear();
+    queryCandidates.clear();
+    overlapCandidates(x, y, x, y, mask);
+    for (int i = 0; i < queryCandidates.size(); i++) {
+      Collider<?> collider = queryCandidates.get(i);
+      if (collider.containsPoint(x, y)) {
+        results.add(collider);
+      }
+    }
+    queryCandidates.clear();
+    return results.size();
+  }
+
+  /**
+   * Find the k colliders whose positions are the nearest to the point, within the max distance.
+   * The results are cleared before adding and sorted from the nearest, and the number of results is returned.
+   *
+   * @param k The maximum number of results
+   * @param maxDistance The maximum distance from the point, which bounds the broadphase query
+   * @param mask The packed mask of the tags and layers to find, see CollisionFilter.packMask()
+   * @param results The list to write the results into
+   */
+  public int nearest(double x, double y, int k, double maxDistance, long mask, List<Collider<?>> results) {
+    results.clear();
+    if (k <= 0) {
+      return 0;
+    }
+    if (nearestDistances.length < k) {
+      nearestDistances = new double[k];
+    }
+
+    queryCandidates.clear();
+    overlapCandidates(x - maxDistance, y - maxDistance, x + maxDistance, y + maxDistance, mask);
+    double maxDistanceSquared = maxDistance * maxDistance;
+    for (int i = 0; i < queryCandidates.size(); i++) {
+      Collider<?> collider = queryCandidates.get(i);
+      double dx = collider.transform.position.getX() - x;
+      double dy = collider.transform.position.getY() - y;
+      double distanceSquared = dx * dx + dy * dy;
+      int count = results.size();
+      if (distanceSquared > maxDistanceSquared || (count == k && distanceSquared >= nearestDistances[k - 1])) {
+        continue;
+      }
+
+      // Insert into the sorted results, dropping the farthest one if they are full
+      int index = count == k ? k - 1 : count;
+      if (count < k) {
+        results.add(null);
+      }
+      while (index > 0 && nearestDistances[index - 1] > distanceSquared) {
+        nearestDistances[index] = nearestDistances[index - 1];
+        results.set(index, results.get(index - 1));
+        index--;
+      }
+      nearestDistances[index] = distanceSquared;
+      results.set(index, collider);
+    }
+    queryCandidates.clear();
+    return results.size();
+  }
+
+  private void overlapCandidates(double minX, double minY, double maxX, double maxY, long mask) {
+    broadphase.overlap(minX, minY, maxX, maxY, mask, queryCandidates);
+    getStaticBvh().overlap(minX, minY, maxX, maxY, mask, queryCandidates);
+  }
+
+  /**
+   * Set whether the objects of the two tags collide with each other.
+   * The matrix is symmetric, so the order of the tags does not matter.
+   */
+  public void setCollision(ObjectTag tagA, ObjectTag tagB, boolean canCollide) {
+    isStaticBvhDirty = true;
+    if (canCollide) {
+      collisionMatrix[tagA.ordinal()] |= CollisionFilter.tagBit(tagB);
+      collisionMatrix[tagB.ordinal()] |= CollisionFilter.tagBit(tagA);
+    } else {
+      collisionMatrix[tagA.ordinal()] &= ~CollisionFilter.tagBit(tagB);
+      collisionMatrix[tagB.ordinal()] &= ~CollisionFilter.tagBit(tagA);
+    }
+  }
+
+  /**
+   * Whether the objects of the two tags collide with each other.
+   */
+  public boolean canCollide(ObjectTag tagA, ObjectTag tagB) {
+    return (collisionMatrix[tagA.ordinal()] & CollisionFilter.tagBit(tagB)) != 0;
+  }
+
+  /**
+   * Get the mask of the tags that the objects of the given tag collide with.
+   */
+  public int getCollisionMask(ObjectTag tag) {
+    return collisionMatrix[tag.ordinal()];
+  }
+}
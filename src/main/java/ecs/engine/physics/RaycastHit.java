@@ -0,0 +1,33 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+
+/**
+ * The result of a raycast.
+ * The hit is filled in place by the raycast, so the caller can keep one instance and reuse it every frame.
+ */
+public class RaycastHit {
+
+  /// The collider that has been hit, or null if the ray hit nothing.
+  public Collider<?> collider;
+  /// The point where the ray enters the collider.
+  public double pointX;
+  public double pointY;
+  /// The normal of the collider surface at the hit point.
+  public double normalX;
+  public double normalY;
+  /// The distance from the origin of the ray to the hit point.
+  public double distance;
+
+  /**
+   * Clear the hit.
+   */
+  public void clear() {
+    collider = null;
+    pointX = 0;
+    pointY = 0;
+    normalX = 0;
+    normalY = 0;
+    distance = Double.POSITIVE_INFINITY;
+  }
+}
@@ -0,0 +1,72 @@
+package ecs.engine.physics;
+
+/**
+ * The scalar physics kernel. This is the fallback of the vector kernel, and it also handles its tails.
+ */
+public class ScalarPhysicsKernel implements PhysicsKernel {
+
+  @Override
+  public void integrate(double[] positionX, double[] positionY, double[] velocityX, double[] velocityY,
+      double[] accelerationX, double[] accelerationY, double[] gravity, double[] damping, int count,
+      double deltaTime, double maxAcceleration, double maxSpeed) {
+    integrateRange(positionX, positionY, velocityX, velocityY, accelerationX, accelerationY, gravity, damping,
+        0, count, deltaTime, maxAcceleration, maxSpeed);
+  }
+
+  @Override
+  public int overlap(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY,
+      double[] minX, double[] minY, double[] maxX, double[] maxY, int count, int[] results) {
+    return overlapRange(queryMinX, queryMinY, queryMaxX, queryMaxY, minX, minY, maxX, maxY, 0, count, results, 0);
+  }
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  static void integrateRange(double[] positionX, double[] positionY, double[] velocityX, double[] velocityY,
+      double[] accelerationX, double[] accelerationY, double[] gravity, double[] damping, int from, int to,
+      double deltaTime, double maxAcceleration, double maxSpeed) {
+    for (int i = from; i < to; i++) {
+      // Apply gravitation and air resistance
+      double vx = velocityX[i];
+      double vy = velocityY[i] + gravity[i];
+      vx *= damping[i];
+      vy *= damping[i];
+
+      // Apply acceleration
+      double ax = accelerationX[i];
+      double ay = accelerationY[i];
+      double accelerationLength = Math.sqrt(ax * ax + ay * ay);
+      if (accelerationLength > maxAcceleration) {
+        ax = ax / accelerationLength * maxAcceleration;
+        ay = ay / accelerationLength * maxAcceleration;
+        accelerationX[i] = ax;
+        accelerationY[i] = ay;
+      }
+      vx += ax * deltaTime;
+      vy += ay * deltaTime;
+      double speed = Math.sqrt(vx * vx + vy * vy);
+      if (speed > maxSpeed) {
+        vx = vx / speed * maxSpeed;
+        vy = vy / speed * maxSpeed;
+      }
+      velocityX[i] = vx;
+      velocityY[i] = vy;
+
+      // Apply velocity
+      positionX[i] += vx * deltaTime;
+      positionY[i] += vy * deltaTime;
+    }
+  }
+
+  static int overlapRange(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY,
+      double[] minX, double[] minY, double[] maxX, double[] maxY, int from, int to, int[] results, int resultCount) {
+    for (int i = from; i < to; i++) {
+      if (minX[i] <= queryMaxX && maxX[i] >= queryMinX && minY[i] <= queryMaxY && maxY[i] >= queryMinY) {
+        results[resultCount++] = i;
+      }
+    }
+    return resultCount;
+  }
+}
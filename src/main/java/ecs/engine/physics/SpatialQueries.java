@@ -0,0 +1,232 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.BoxCollider;
+import ecs.engine.component.CircleCollider;
+import ecs.engine.component.Collider;
+import ecs.engine.component.PolygonCollider;
+import ecs.engine.component.TilemapCollider;
+
+/**
+ * The exact shape tests of the spatial queries.
+ * Circles are tested as circles and boxes in their local space, so rotated boxes are exact.
+ * Polygons are tested against their edges.
+ * Tilemaps are tested against their solid cells. Any other collider is tested by its AABB. None of the tests allocate.
+ */
+public final class SpatialQueries {
+
+  private SpatialQueries() {}
+
+  /**
+   * Whether the segment from the origin to (originX + dx, originY + dy) crosses the AABB.
+   * Unlike ContinuousCollision.rayAabb(), a segment that starts inside the AABB also crosses it.
+   */
+  public static boolean segmentOverlaps(double originX, double originY, double dx, double dy,
+      double minX, double minY, double maxX, double maxY) {
+    double tMin = 0;
+    double tMax = 1;
+
+    // The slab of the X axis
+    if (dx == 0) {
+      if (originX < minX || originX > maxX) {
+        return false;
+      }
+    } else {
+      double t1 = (minX - originX) / dx;
+      double t2 = (maxX - originX) / dx;
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    }
+
+    // The slab of the Y axis
+    if (dy == 0) {
+      if (originY < minY || originY > maxY) {
+        return false;
+      }
+    } else {
+      double t1 = (minY - originY) / dy;
+      double t2 = (maxY - originY) / dy;
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    }
+
+    return tMin <= tMax;
+  }
+
+  /**
+   * Cast the segment from the origin to (originX + dx, originY + dy) against the collider.
+   * Return the fraction of the segment at the hit and write the hit point and normal into the hit,
+   * or return ContinuousCollision.NO_HIT and leave the hit untouched.
+   * A segment that starts inside the collider does not hit it.
+   */
+  public static double raycast(Collider<?> collider, double originX, double originY, double dx, double dy,
+      RaycastHit hit) {
+    if (collider instanceof TilemapCollider tilemap) {
+      return tilemap.raycast(originX, originY, dx, dy, hit);
+    }
+
+    if (collider instanceof PolygonCollider polygon) {
+      return polygon.raycast(originX, originY, dx, dy, hit);
+    }
+
+    if (collider instanceof CircleCollider circle) {
+      double centerX = circle.transform.position.getX();
+      double centerY = circle.transform.position.getY();
+      double radius = circle.getRadius();
+      double fraction = ContinuousCollision.rayCircle(originX, originY, dx, dy, centerX, centerY, radius);
+      if (fraction != ContinuousCollision.NO_HIT) {
+        hit.pointX = originX + dx * fraction;
+        hit.pointY = originY + dy * fraction;
+        hit.normalX = (hit.pointX - centerX) / radius;
+        hit.normalY = (hit.pointY - centerY) / radius;
+      }
+      return fraction;
+    }
+
+    if (collider instanceof BoxCollider box) {
+      // Cast in the local space of the box and rotate the normal back
+      double angle = Math.toRadians(box.transform.rotation);
+      double cos = Math.cos(angle);
+      double sin = Math.sin(angle);
+      double relX = originX - box.transform.position.getX();
+      double relY = originY - box.transform.position.getY();
+      double localX = relX * cos + relY * sin;
+      double localY = -relX * sin + relY * cos;
+      double localDx = dx * cos + dy * sin;
+      double localDy = -dx * sin + dy * cos;
+      double halfWidth = halfWidth(box);
+      double halfHeight = halfHeight(box);
+
+      double fraction = ContinuousCollision.rayAabb(localX, localY, localDx, localDy,
+          -halfWidth, -halfHeight, halfWidth, halfHeight);
+      if (fraction != ContinuousCollision.NO_HIT) {
+        double hitX = localX + localDx * fraction;
+        double hitY = localY + localDy * fraction;
+        double localNormalX = 0;
+        double localNormalY = 0;
+        if (Math.abs(hitX) * halfHeight >= Math.abs(hitY) * halfWidth) {
+          localNormalX = Math.signum(hitX);
+        } else {
+          localNormalY = Math.signum(hitY);
+        }
+        hit.pointX = originX + dx * fraction;
+        hit.pointY = originY + dy * fraction;
+        hit.normalX = localNormalX * cos - localNormalY * sin;
+        hit.normalY = localNormalX * sin + localNormalY * cos;
+      }
+      return fraction;
+    }
+
+    double fraction = ContinuousCollision.rayAabb(originX, originY, dx, dy,
+        collider.getMinX(), collider.getMinY(), collider.getMaxX(), collider.getMaxY());
+    if (fraction != ContinuousCollision.NO_HIT) {
+      hit.pointX = originX + dx * fraction;
+      hit.pointY = originY + dy * fraction;
+      double centerX = (collider.getMinX() + collider.getMaxX()) / 2;
+      double centerY = (collider.getMinY() + collider.getMaxY()) / 2;
+      double halfWidth = (collider.getMaxX() - collider.getMinX()) / 2;
+      double halfHeight = (collider.getMaxY() - collider.getMinY()) / 2;
+      if (Math.abs(hit.pointX - centerX) * halfHeight >= Math.abs(hit.pointY - centerY) * halfWidth) {
+        hit.normalX = Math.signum(hit.pointX - centerX);
+        hit.normalY = 0;
+      } else {
+        hit.normalX = 0;
+        hit.normalY = Math.signum(hit.pointY - centerY);
+      }
+    }
+    return fraction;
+  }
+
+  /**
+   * Whether the collider overlaps the circle.
+   */
+  public static boolean overlapsCircle(Collider<?> collider, double centerX, double centerY, double radius) {
+    if (collider instanceof TilemapCollider tilemap) {
+      return tilemap.overlapsCircle(centerX, centerY, radius);
+    }
+
+    if (collider instanceof PolygonCollider polygon) {
+      return polygon.overlapsCircle(centerX, centerY, radius);
+    }
+
+    if (collider instanceof CircleCollider circle) {
+      double dx = centerX - circle.transform.position.getX();
+      double dy = centerY - circle.transform.position.getY();
+      double radiusSum = radius + circle.getRadius();
+      return dx * dx + dy * dy <= radiusSum * radiusSum;
+    }
+
+    if (collider instanceof BoxCollider box) {
+      // Clamp the center into the box in the local space of the box
+      double angle = Math.toRadians(box.transform.rotation);
+      double cos = Math.cos(angle);
+      double sin = Math.sin(angle);
+      double relX = centerX - box.transform.position.getX();
+      double relY = centerY - box.transform.position.getY();
+      double localX = relX * cos + relY * sin;
+      double localY = -relX * sin + relY * cos;
+      double dx = localX - clamp(localX, halfWidth(box));
+      double dy = localY - clamp(localY, halfHeight(box));
+      return dx * dx + dy * dy <= radius * radius;
+    }
+
+    double dx = centerX - Math.max(collider.getMinX(), Math.min(centerX, collider.getMaxX()));
+    double dy = centerY - Math.max(collider.getMinY(), Math.min(centerY, collider.getMaxY()));
+    return dx * dx + dy * dy <= radius * radius;
+  }
+
+  /**
+   * Whether the collider overlaps the axis-aligned box.
+   */
+  public static boolean overlapsBox(Collider<?> collider, double minX, double minY, double maxX, double maxY) {
+    // The AABB of the collider is exact, so it covers the axes of the world
+    if (collider.getMinX() > maxX || collider.getMaxX() < minX
+        || collider.getMinY() > maxY || collider.getMaxY() < minY) {
+      return false;
+    }
+
+    if (collider instanceof TilemapCollider tilemap) {
+      return tilemap.overlapsBox(minX, minY, maxX, maxY);
+    }
+
+    if (collider instanceof PolygonCollider polygon) {
+      return polygon.overlapsBox(minX, minY, maxX, maxY);
+    }
+
+    if (collider instanceof CircleCollider circle) {
+      double centerX = circle.transform.position.getX();
+      double centerY = circle.transform.position.getY();
+      double dx = centerX - Math.max(minX, Math.min(centerX, maxX));
+      double dy = centerY - Math.max(minY, Math.min(centerY, maxY));
+      return dx * dx + dy * dy <= circle.getRadius() * circle.getRadius();
+    }
+
+    if (collider instanceof BoxCollider box) {
+      // Separating axis test on the two axes of the rotated box
+      double angle = Math.toRadians(box.transform.rotation);
+      double cos = Math.cos(angle);
+      double sin = Math.sin(angle);
+      double halfX = (maxX - minX) / 2;
+      double halfY = (maxY - minY) / 2;
+      double relX = (minX + maxX) / 2 - box.transform.position.getX();
+      double relY = (minY + maxY) / 2 - box.transform.position.getY();
+      double distanceU = Math.abs(relX * cos + relY * sin);
+      double distanceV = Math.abs(-relX * sin + relY * cos);
+      return distanceU <= halfWidth(box) + halfX * Math.abs(cos) + halfY * Math.abs(sin)
+          && distanceV <= halfHeight(box) + halfX * Math.abs(sin) + halfY * Math.abs(cos);
+    }
+
+    return true;
+  }
+
+  private static double halfWidth(BoxCollider box) {
+    return box.getRawWidth() * Math.abs(box.transform.scale.getX()) / 2;
+  }
+
+  private static double halfHeight(BoxCollider box) {
+    return box.getRawHeight() * Math.abs(box.transform.scale.getY()) / 2;
+  }
+
+  private static double clamp(double value, double halfExtent) {
+    return Math.max(-halfExtent, Math.min(value, halfExtent));
+  }
+}
@@ -0,0 +1,272 @@
+package ecs.engine.physics;
+
+import ecs.engine.component.Collider;
+import java.util.List;
+
+/**
+ * The immutable bounding volume hierarchy of the static colliders of a scene.
+ * The tree is built once from the exact AABBs of the colliders with median splits, and packed in primitive arrays
+ * in depth-first order: the left child of a node is the next node, and the right child is stored.
+ */
+public final class StaticBvh {
+
+  ////////////// BVH Constants //////////////
+
+  /// The maximum number of colliders in a leaf.
+  public static final int LEAF_SIZE = 4;
+
+  ///////////////////////////////////////////
+
+  // The colliders in the order of the leaves
+  private final Collider<?>[] colliders;
+  private final double[] colliderMinX;
+  private final double[] colliderMinY;
+  private final double[] colliderMaxX;
+  private final double[] colliderMaxY;
+  private final long[] category;
+  private final long[] mask;
+
+  // The nodes of the tree
+  private final double[] minX;
+  private final double[] minY;
+  private final double[] maxX;
+  private final double[] maxY;
+  private final int[] start; // The first collider of a leaf
+  private final int[] count; // The number of colliders of a leaf, 0 for the inner nodes
+  private final int[] right; // The right child of an inner node
+
+  // instance variables
+  private int nodeCount;
+  private int[] stack = new int[64];
+
+  /**
+   * Build the tree from the given colliders, which must already have their AABBs.
+   * The masks are taken from the collision matrix of the given physics world.
+   */
+  public StaticBvh(List<Collider<?>> colliders, PhysicsWorld physicsWorld) {
+    int size = colliders.size();
+    this.colliders = colliders.toArray(new Collider<?>[0]);
+    colliderMinX = new double[size];
+    colliderMinY = new double[size];
+    colliderMaxX = new double[size];
+    colliderMaxY = new double[size];
+    category = new long[size];
+    mask = new long[size];
+
+    int capacity = Math.max(1, 2 * size);
+    minX = new double[capacity];
+    minY = new double[capacity];
+    maxX = new double[capacity];
+    maxY = new double[capacity];
+    start = new int[capacity];
+    count = new int[capacity];
+    right = new int[capacity];
+
+    if (size > 0) {
+      double[] centers = new double[2 * size];
+      for (int i = 0; i < size; i++) {
+        Collider<?> collider = this.colliders[i];
+        centers[2 * i] = (collider.getMinX() + collider.getMaxX()) / 2;
+        centers[2 * i + 1] = (collider.getMinY() + collider.getMaxY()) / 2;
+      }
+      build(0, size, centers);
+
+      for (int i = 0; i < size; i++) {
+        Collider<?> collider = this.colliders[i];
+        colliderMinX[i] = collider.getMinX();
+        colliderMinY[i] = collider.getMinY();
+        colliderMaxX[i] = collider.getMaxX();
+        colliderMaxY[i] = collider.getMaxY();
+        category[i] = collider.getFilterCategory();
+        mask[i] = physicsWorld.getFilterMask(collider);
+      }
+    }
+  }
+
+  /**
+   * Add all the colliders that overlap the given AABB and pass the given filter into the results.
+   * See Broadphase.query().
+   */
+  public void query(double minX, double minY, double maxX, double maxY, long category, long mask,
+      List<Collider<?>> results) {
+    int top = pushRoot();
+    while (top > 0) {
+      int node = stack[--top];
+      if (this.minX[node] > maxX || this.maxX[node] < minX || this.minY[node] > maxY || this.maxY[node] < minY) {
+        continue;
+      }
+
+      if (count[node] == 0) {
+        top = pushChildren(node, top);
+        continue;
+      }
+      for (int i = start[node]; i < start[node] + count[node]; i++) {
+        if (colliderMinX[i] <= maxX && colliderMaxX[i] >= minX && colliderMinY[i] <= maxY && colliderMaxY[i] >= minY
+            && CollisionFilter.shouldCollide(category, mask, this.category[i], this.mask[i])) {
+          results.add(colliders[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Add all the colliders that overlap the given AABB and whose category passes the given mask into the results.
+   * See Broadphase.overlap().
+   */
+  public void overlap(double minX, double minY, double maxX, double maxY, long mask, List<Collider<?>> results) {
+    int top = pushRoot();
+    while (top > 0) {
+      int node = stack[--top];
+      if (this.minX[node] > maxX || this.maxX[node] < minX || this.minY[node] > maxY || this.maxY[node] < minY) {
+        continue;
+      }
+
+      if (count[node] == 0) {
+        top = pushChildren(node, top);
+        continue;
+      }
+      for (int i = start[node]; i < start[node] + count[node]; i++) {
+        if (colliderMinX[i] <= maxX && colliderMaxX[i] >= minX && colliderMinY[i] <= maxY && colliderMaxY[i] >= minY
+            && CollisionFilter.accepts(category[i], mask)) {
+          results.add(colliders[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Add all the colliders whose AABBs are crossed by the segment and whose category passes the given mask.
+   * See Broadphase.raycast().
+   */
+  public void raycast(double originX, double originY, double dx, double dy, long mask, List<Collider<?>> results) {
+    int top = pushRoot();
+    while (top > 0) {
+      int node = stack[--top];
+      if (!SpatialQueries.segmentOverlaps(originX, originY, dx, dy, minX[node], minY[node], maxX[node], maxY[node])) {
+        continue;
+      }
+
+      if (count[node] == 0) {
+        top = pushChildren(node, top);
+        continue;
+      }
+      for (int i = start[node]; i < start[node] + count[node]; i++) {
+        if (CollisionFilter.accepts(category[i], mask) && SpatialQueries.segmentOverlaps(originX, originY, dx, dy,
+            colliderMinX[i], colliderMinY[i], colliderMaxX[i], colliderMaxY[i])) {
+          results.add(colliders[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the number of colliders in the tree.
+   */
+  public int size() {
+    return colliders.length;
+  }
+
+  /* private methods below */
+
+  private int build(int from, int to, double[] centers) {
+    int node = nodeCount++;
+
+    // The bounds of the node and of the centers
+    double nodeMinX = Double.POSITIVE_INFINITY;
+    double nodeMinY = Double.POSITIVE_INFINITY;
+    double nodeMaxX = Double.NEGATIVE_INFINITY;
+    double nodeMaxY = Double.NEGATIVE_INFINITY;
+    double centerMinX = Double.POSITIVE_INFINITY;
+    double centerMinY = Double.POSITIVE_INFINITY;
+    double centerMaxX = Double.NEGATIVE_INFINITY;
+    double centerMaxY = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      Collider<?> collider = colliders[i];
+      nodeMinX = Math.min(nodeMinX, collider.getMinX());
+      nodeMinY = Math.min(nodeMinY, collider.getMinY());
+      nodeMaxX = Math.max(nodeMaxX, collider.getMaxX());
+      nodeMaxY = Math.max(nodeMaxY, collider.getMaxY());
+      centerMinX = Math.min(centerMinX, centers[2 * i]);
+      centerMinY = Math.min(centerMinY, centers[2 * i + 1]);
+      centerMaxX = Math.max(centerMaxX, centers[2 * i]);
+      centerMaxY = Math.max(centerMaxY, centers[2 * i + 1]);
+    }
+    minX[node] = nodeMinX;
+    minY[node] = nodeMinY;
+    maxX[node] = nodeMaxX;
+    maxY[node] = nodeMaxY;
+
+    if (to - from <= LEAF_SIZE) {
+      start[node] = from;
+      count[node] = to - from;
+      return node;
+    }
+
+    // Split at the median of the centers along the longer axis
+    int axis = centerMaxX - centerMinX >= centerMaxY - centerMinY ? 0 : 1;
+    int middle = (from + to) >>> 1;
+    select(from, to - 1, middle, axis, centers);
+
+    build(from, middle, centers);
+    right[node] = build(middle, to, centers);
+    return node;
+  }
+
+  private void select(int low, int high, int k, int axis, double[] centers) {
+    // Quickselect, so the colliders before k have smaller centers than the ones after it
+    while (low < high) {
+      double pivot = centers[2 * ((low + high) >>> 1) + axis];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (centers[2 * i + axis] < pivot) {
+          i++;
+        }
+        while (centers[2 * j + axis] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--, centers);
+        }
+      }
+      if (k <= j) {
+        high = j;
+      } else if (k >= i) {
+        low = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swap(int a, int b, double[] centers) {
+    Collider<?> collider = colliders[a];
+    colliders[a] = colliders[b];
+    colliders[b] = collider;
+    double centerX = centers[2 * a];
+    double centerY = centers[2 * a + 1];
+    centers[2 * a] = centers[2 * b];
+    centers[2 * a + 1] = centers[2 * b + 1];
+    centers[2 * b] = centerX;
+    centers[2 * b + 1] = centerY;
+  }
+
+  private int pushRoot() {
+    if (colliders.length == 0) {
+      return 0;
+    }
+    stack[0] = 0;
+    return 1;
+  }
+
+  private int pushChildren(int node, int top) {
+    if (top + 2 > stack.length) {
+      int[] grown = new int[stack.length * 2];
+      System.arraycopy(stack, 0, grown, 0, top);
+      stack = grown;
+    }
+    stack[top++] = node + 1;
+    stack[top++] = right[node];
+    return top;
+  }
+}
@@ -0,0 +1,87 @@
+package ecs.engine.physics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The physics kernel on the Vector API, which processes as many bodies per instruction as the CPU has lanes.
+ * Every lane runs the same IEEE operations as the scalar kernel, so both kernels give the same results.
+ * This class is only loaded by PhysicsKernel.getDefault(), and only if the incubator module is present.
+ */
+public class VectorPhysicsKernel implements PhysicsKernel {
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  public void integrate(double[] positionX, double[] positionY, double[] velocityX, double[] velocityY,
+      double[] accelerationX, double[] accelerationY, double[] gravity, double[] damping, int count,
+      double deltaTime, double maxAcceleration, double maxSpeed) {
+    int bound = SPECIES.loopBound(count);
+    for (int i = 0; i < bound; i += SPECIES.length()) {
+      // Apply gravitation and air resistance
+      DoubleVector dampingLane = DoubleVector.fromArray(SPECIES, damping, i);
+      DoubleVector vx = DoubleVector.fromArray(SPECIES, velocityX, i).mul(dampingLane);
+      DoubleVector vy = DoubleVector.fromArray(SPECIES, velocityY, i)
+          .add(DoubleVector.fromArray(SPECIES, gravity, i)).mul(dampingLane);
+
+      // Apply acceleration
+      DoubleVector ax = DoubleVector.fromArray(SPECIES, accelerationX, i);
+      DoubleVector ay = DoubleVector.fromArray(SPECIES, accelerationY, i);
+      DoubleVector accelerationLength = ax.mul(ax).add(ay.mul(ay)).sqrt();
+      VectorMask<Double> isFastAccelerating = accelerationLength.compare(VectorOperators.GT, maxAcceleration);
+      if (isFastAccelerating.anyTrue()) {
+        ax = ax.blend(ax.div(accelerationLength).mul(maxAcceleration), isFastAccelerating);
+        ay = ay.blend(ay.div(accelerationLength).mul(maxAcceleration), isFastAccelerating);
+        ax.intoArray(accelerationX, i);
+        ay.intoArray(accelerationY, i);
+      }
+      vx = vx.add(ax.mul(deltaTime));
+      vy = vy.add(ay.mul(deltaTime));
+      DoubleVector speed = vx.mul(vx).add(vy.mul(vy)).sqrt();
+      VectorMask<Double> isFast = speed.compare(VectorOperators.GT, maxSpeed);
+      if (isFast.anyTrue()) {
+        vx = vx.blend(vx.div(speed).mul(maxSpeed), isFast);
+        vy = vy.blend(vy.div(speed).mul(maxSpeed), isFast);
+      }
+      vx.intoArray(velocityX, i);
+      vy.intoArray(velocityY, i);
+
+      // Apply velocity
+      DoubleVector.fromArray(SPECIES, positionX, i).add(vx.mul(deltaTime)).intoArray(positionX, i);
+      DoubleVector.fromArray(SPECIES, positionY, i).add(vy.mul(deltaTime)).intoArray(positionY, i);
+    }
+
+    ScalarPhysicsKernel.integrateRange(positionX, positionY, velocityX, velocityY, accelerationX, accelerationY,
+        gravity, damping, bound, count, deltaTime, maxAcceleration, maxSpeed);
+  }
+
+  @Override
+  public int overlap(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY,
+      double[] minX, double[] minY, double[] maxX, double[] maxY, int count, int[] results) {
+    int resultCount = 0;
+    int bound = SPECIES.loopBound(count);
+    for (int i = 0; i < bound; i += SPECIES.length()) {
+      VectorMask<Double> overlaps = DoubleVector.fromArray(SPECIES, minX, i).compare(VectorOperators.LE, queryMaxX)
+          .and(DoubleVector.fromArray(SPECIES, maxX, i).compare(VectorOperators.GE, queryMinX))
+          .and(DoubleVector.fromArray(SPECIES, minY, i).compare(VectorOperators.LE, queryMaxY))
+          .and(DoubleVector.fromArray(SPECIES, maxY, i).compare(VectorOperators.GE, queryMinY));
+
+      // Write the lanes that overlap in ascending order
+      long bits = overlaps.toLong();
+      while (bits != 0) {
+        results[resultCount++] = i + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+      }
+    }
+
+    return ScalarPhysicsKernel.overlapRange(queryMinX, queryMinY, queryMaxX, queryMaxY, minX, minY, maxX, maxY,
+        bound, count, results, resultCount);
+  }
+
+  @Override
+  public String getName() {
+    return "vector (" + SPECIES.length() + " lanes)";
+  }
+}
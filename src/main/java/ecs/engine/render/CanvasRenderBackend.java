@@ -0,0 +1,263 @@
+package ecs.engine.render;
+
+import ecs.engine.component.ParticleEmitter;
+import ecs.engine.component.RenderHandler;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+
+/**
+ * The immediate mode backend that draws every render handler into a single canvas.
+ * The scene graph only holds the canvas, so the cost of a frame does not depend on the number of nodes.
+ * Image views, circles, ellipses, rectangles and polygons are drawn from their current properties. Any other node
+ * is drawn from a snapshot that is taken the first time it is drawn, and taken again when the image of its render
+ * handler is set or marked as changed, or when the local bounds of the node have changed.
+ * The shapes are drawn with one affine per draw. The consecutive image views are collected into a sprite batch,
+ * which only sets the affine when the scale or the rotation changes, so the sprites of an atlas page are drawn as one
+ * run from the same texture.
+ */
+public class CanvasRenderBackend implements RenderBackend {
+
+  // instance variables
+  private final Canvas canvas = new Canvas();
+  private final GraphicsContext graphics = canvas.getGraphicsContext2D();
+  private final Map<Node, Snapshot> snapshots = new WeakHashMap<>();
+  private final SpriteBatch spriteBatch = new SpriteBatch();
+  private final double[] drawTransform = new double[6];
+  private double[] polygonX = new double[16];
+  private double[] polygonY = new double[16];
+
+  // The transform from the world to the screen of the frame
+  private double viewXX;
+  private double viewXY;
+  private double viewYX;
+  private double viewYY;
+  private double viewX;
+  private double viewY;
+
+  @Override
+  public void attach(Pane renderPane) {
+    renderPane.getChildren().setAll(canvas);
+    canvas.widthProperty().bind(renderPane.widthProperty());
+    canvas.heightProperty().bind(renderPane.heightProperty());
+  }
+
+  @Override
+  public void detach(Pane renderPane) {
+    canvas.widthProperty().unbind();
+    canvas.heightProperty().unbind();
+    renderPane.getChildren().remove(canvas);
+    snapshots.clear();
+  }
+
+  @Override
+  public void beginFrame(Affine view) {
+    viewXX = view.getMxx();
+    viewXY = view.getMxy();
+    viewYX = view.getMyx();
+    viewYY = view.getMyy();
+    viewX = view.getTx();
+    viewY = view.getTy();
+    spriteBatch.clear();
+    graphics.setTransform(1, 0, 0, 1, 0, 0);
+    graphics.setGlobalAlpha(1);
+    graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+  }
+
+  @Override
+  public void draw(RenderHandler renderer) {
+    Node node = renderer.getImage();
+    if (!node.isVisible() || node.getOpacity() <= 0) {
+      return;
+    }
+
+    // The affine of the render handler scales and rotates the node around its center, then moves it to the position
+    Bounds bounds = node.getBoundsInLocal();
+    Affine affine = renderer.getAffine();
+    double mxx = affine.getMxx();
+    double mxy = affine.getMxy();
+    double myx = affine.getMyx();
+    double myy = affine.getMyy();
+    double tx = affine.getTx();
+    double ty = affine.getTy();
+
+    // The view is applied after the transform of the object
+    drawTransform[0] = viewXX * mxx + viewXY * myx;
+    drawTransform[1] = viewYX * mxx + viewYY * myx;
+    drawTransform[2] = viewXX * mxy + viewXY * myy;
+    drawTransform[3] = viewYX * mxy + viewYY * myy;
+    drawTransform[4] = viewXX * tx + viewXY * ty + viewX;
+    drawTransform[5] = viewYX * tx + viewYY * ty + viewY;
+
+    // The image views, such as the sprites of an atlas, are collected into the batch until another kind of draw
+    if (node instanceof ImageView imageView) {
+      addImageView(imageView);
+      return;
+    }
+    spriteBatch.flush(graphics);
+    graphics.setTransform(drawTransform[0], drawTransform[1], drawTransform[2], drawTransform[3], drawTransform[4],
+        drawTransform[5]);
+    graphics.setGlobalAlpha(node.getOpacity());
+    if (node instanceof Shape shape) {
+      drawShape(shape, bounds, renderer.getImageVersion());
+    } else {
+      drawSnapshot(node, bounds, renderer.getImageVersion());
+    }
+  }
+
+  @Override
+  public void drawParticles(ParticleEmitter emitter) {
+    // The particles are in the world, so only the view is applied
+    spriteBatch.flush(graphics);
+    graphics.setTransform(viewXX, viewYX, viewXY, viewYY, viewX, viewY);
+    graphics.setGlobalAlpha(1);
+    emitter.paint(graphics);
+  }
+
+  @Override
+  public void endFrame() {
+    spriteBatch.flush(graphics);
+  }
+
+  /**
+   * Get the canvas that the backend draws into.
+   */
+  public Canvas getCanvas() {
+    return canvas;
+  }
+
+  /* private methods below */
+
+  private void addImageView(ImageView imageView) {
+    Image image = imageView.getImage();
+    if (image == null) {
+      return;
+    }
+    Rectangle2D viewport = imageView.getViewport();
+    Bounds bounds = imageView.getLayoutBounds();
+    if (viewport == null) {
+      spriteBatch.add(image, 0, 0, image.getWidth(), image.getHeight(), bounds.getMinX(), bounds.getMinY(),
+          bounds.getWidth(), bounds.getHeight(), drawTransform, imageView.getOpacity());
+    } else {
+      spriteBatch.add(image, viewport.getMinX(), viewport.getMinY(), viewport.getWidth(), viewport.getHeight(),
+          bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight(), drawTransform,
+          imageView.getOpacity());
+    }
+  }
+
+  private void drawShape(Shape shape, Bounds bounds, int imageVersion) {
+    Paint fill = shape.getFill();
+    Paint stroke = shape.getStroke();
+    if (fill != null) {
+      graphics.setFill(fill);
+    }
+    if (stroke != null) {
+      graphics.setStroke(stroke);
+      graphics.setLineWidth(shape.getStrokeWidth());
+    }
+
+    if (shape instanceof Circle circle) {
+      double radius = circle.getRadius();
+      fillAndStrokeOval(circle.getCenterX() - radius, circle.getCenterY() - radius, 2 * radius, 2 * radius,
+          fill, stroke);
+    } else if (shape instanceof Ellipse ellipse) {
+      fillAndStrokeOval(ellipse.getCenterX() - ellipse.getRadiusX(), ellipse.getCenterY() - ellipse.getRadiusY(),
+          2 * ellipse.getRadiusX(), 2 * ellipse.getRadiusY(), fill, stroke);
+    } else if (shape instanceof Rectangle rectangle) {
+      if (fill != null) {
+        graphics.fillRoundRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight(),
+            rectangle.getArcWidth(), rectangle.getArcHeight());
+      }
+      if (stroke != null) {
+        graphics.strokeRoundRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight(),
+            rectangle.getArcWidth(), rectangle.getArcHeight());
+      }
+    } else if (shape instanceof Polygon polygon) {
+      int count = copyPoints(polygon.getPoints());
+      if (fill != null) {
+        graphics.fillPolygon(polygonX, polygonY, count);
+      }
+      if (stroke != null) {
+        graphics.strokePolygon(polygonX, polygonY, count);
+      }
+    } else {
+      drawSnapshot(shape, bounds, imageVersion);
+    }
+  }
+
+  private void fillAndStrokeOval(double x, double y, double width, double height, Paint fill, Paint stroke) {
+    if (fill != null) {
+      graphics.fillOval(x, y, width, height);
+    }
+    if (stroke != null) {
+      graphics.strokeOval(x, y, width, height);
+    }
+  }
+
+  private int copyPoints(List<Double> points) {
+    int count = points.size() / 2;
+    if (polygonX.length < count) {
+      polygonX = new double[count * 2];
+      polygonY = new double[count * 2];
+    }
+    for (int i = 0; i < count; i++) {
+      polygonX[i] = points.get(2 * i);
+      polygonY[i] = points.get(2 * i + 1);
+    }
+    return count;
+  }
+
+  private void drawSnapshot(Node node, Bounds bounds, int imageVersion) {
+    Snapshot snapshot = snapshots.get(node);
+    if (snapshot == null || snapshot.imageVersion != imageVersion || !snapshot.bounds.equals(bounds)) {
+      // The snapshot is taken in the local space of the node, since the affine of the draw replaces its transforms
+      SnapshotParameters parameters = new SnapshotParameters();
+      parameters.setFill(Color.TRANSPARENT);
+      try {
+        parameters.setTransform(node.getLocalToParentTransform().createInverse());
+      } catch (NonInvertibleTransformException e) {
+        return;
+      }
+      parameters.setViewport(new Rectangle2D(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(),
+          bounds.getHeight()));
+      snapshot = new Snapshot(node.snapshot(parameters, null), imageVersion, bounds);
+      snapshots.put(node, snapshot);
+    }
+    graphics.drawImage(snapshot.image, bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
+  }
+
+  /**
+   * The cached snapshot of a node, with the image version of its render handler and the local bounds it was taken at.
+   */
+  private static class Snapshot {
+
+    private final WritableImage image;
+    private final int imageVersion;
+    private final Bounds bounds;
+
+    Snapshot(WritableImage image, int imageVersion, Bounds bounds) {
+      this.image = image;
+      this.imageVersion = imageVersion;
+      this.bounds = bounds;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package ecs.engine.render;
+
+import ecs.engine.component.ParticleEmitter;
+import ecs.engine.component.RenderHandler;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+
+/**
+ * The backend that adds the node of every render handler to the render pane in every frame.
+ * The pane is cleared at the beginning of every frame, so JavaFX lays out the whole pane again in every frame.
+ */
+public class NodeRenderBackend implements RenderBackend {
+
+  // instance variables
+  private Pane renderPane;
+  private final Affine view = new Affine(); // The only transform of the render pane
+  private final Affine inverseView = new Affine();
+  private final Map<ParticleEmitter, ParticleLayer> particleLayers = new WeakHashMap<>();
+
+  @Override
+  public void attach(Pane renderPane) {
+    this.renderPane = renderPane;
+    renderPane.getTransforms().setAll(view);
+  }
+
+  @Override
+  public void detach(Pane renderPane) {
+    renderPane.getChildren().clear();
+    renderPane.getTransforms().clear();
+    particleLayers.clear();
+    this.renderPane = null;
+  }
+
+  @Override
+  public void beginFrame(Affine view) {
+    this.view.setToTransform(view);
+    inverseView.setToTransform(view);
+    try {
+      inverseView.invert();
+    } catch (NonInvertibleTransformException e) {
+      inverseView.setToIdentity();
+    }
+    renderPane.getChildren().clear();
+  }
+
+  @Override
+  public void draw(RenderHandler renderer) {
+    renderPane.getChildren().add(renderer.getImage());
+  }
+
+  @Override
+  public void drawParticles(ParticleEmitter emitter) {
+    ParticleLayer layer = particleLayers.computeIfAbsent(emitter, key -> new ParticleLayer());
+    renderPane.getChildren().add(layer.paint(emitter, renderPane, view, inverseView));
+  }
+
+  @Override
+  public void endFrame() {}
+}
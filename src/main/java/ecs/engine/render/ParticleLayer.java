@@ -0,0 +1,46 @@
+package ecs.engine.render;
+
+import ecs.engine.component.ParticleEmitter;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Affine;
+
+/**
+ * The canvas that the node backends paint the particles of an emitter into.
+ * The canvas covers the render pane on the screen: it undoes the view of the pane, and paints the particles with the
+ * view, so it never grows with the spread of the particles in the world.
+ */
+final class ParticleLayer {
+
+  // readonly variables
+  private final Canvas canvas = new Canvas();
+  private final GraphicsContext graphics = canvas.getGraphicsContext2D();
+  private final Affine inverseView = new Affine(); // The only transform of the canvas
+
+  ParticleLayer() {
+    canvas.getTransforms().setAll(inverseView);
+  }
+
+  /**
+   * Paint the particles of the emitter for the frame.
+   *
+   * @param emitter The emitter to be painted
+   * @param renderPane The render pane that the canvas covers
+   * @param view The view of the frame
+   * @param inverseView The inverse of the view of the frame
+   * @return The canvas
+   */
+  Canvas paint(ParticleEmitter emitter, Pane renderPane, Affine view, Affine inverseView) {
+    if (canvas.getWidth() != renderPane.getWidth() || canvas.getHeight() != renderPane.getHeight()) {
+      canvas.setWidth(renderPane.getWidth());
+      canvas.setHeight(renderPane.getHeight());
+    }
+    this.inverseView.setToTransform(inverseView);
+    graphics.setTransform(1, 0, 0, 1, 0, 0);
+    graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    graphics.setTransform(view.getMxx(), view.getMyx(), view.getMxy(), view.getMyy(), view.getTx(), view.getTy());
+    emitter.paint(graphics);
+    return canvas;
+  }
+}
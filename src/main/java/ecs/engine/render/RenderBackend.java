@@ -0,0 +1,55 @@
+package ecs.engine.render;
+
+import ecs.engine.component.ParticleEmitter;
+import ecs.engine.component.RenderHandler;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Affine;
+
+/**
+ * The backend that draws the render handlers of a scene.
+ * Every scene has its own backend, and the scene calls it on the JavaFX thread in every frame:
+ * beginFrame(), then draw() or drawParticles() for every render handler in the render order, then endFrame().
+ */
+public interface RenderBackend {
+
+  /**
+   * Take over the render pane of the game. Called before the first frame of the backend.
+   * The pane is null when the game runs without a JavaFX scene, which only the software backend supports.
+   */
+  void attach(Pane renderPane);
+
+  /**
+   * Release the render pane of the game. Called when the scene or the backend of the scene is changed.
+   */
+  void detach(Pane renderPane);
+
+  /**
+   * Start a new frame.
+   *
+   * @param view The transform from the world to the screen, see Camera
+   */
+  void beginFrame(Affine view);
+
+  /**
+   * Draw the render handler in this frame. The render handler is locked while it is drawn.
+   */
+  void draw(RenderHandler renderer);
+
+  /**
+   * Draw all the particles of the emitter in this frame, in one pass. The emitter is locked while it is drawn.
+   */
+  void drawParticles(ParticleEmitter emitter);
+
+  /**
+   * Finish the frame.
+   */
+  void endFrame();
+
+  /**
+   * Whether the backend draws the static render handlers itself, in their render order, instead of the static
+   * layer of the scene in the background pane.
+   */
+  default boolean drawsStaticRenderers() {
+    return false;
+  }
+}
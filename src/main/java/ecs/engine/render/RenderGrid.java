@@ -0,0 +1,173 @@
+package ecs.engine.render;
+
+import ecs.engine.component.RenderHandler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The uniform grid of the render handlers of a scene, keyed by the AABBs of their images in the world.
+ * The render handlers update their cells on the logic thread when they move, and the scene queries the view of
+ * the camera on the JavaFX thread, so every method is synchronized.
+ * A render handler that spans too many cells is kept in a separate list that every query checks.
+ */
+public class RenderGrid {
+
+  ////////////// Grid Constants //////////////
+
+  /// The default size of a cell.
+  public static final double DEFAULT_CELL_SIZE = 256;
+  /// The maximum number of cells of a render handler, larger ones are kept out of the cells.
+  public static final int MAX_CELLS_PER_RENDERER = 64;
+
+  ////////////////////////////////////////////
+
+  // readonly variables
+  private final double cellSize;
+
+  // instance variables
+  private final HashMap<Long, ArrayList<RenderHandler>> cells = new HashMap<>();
+  private final HashMap<RenderHandler, int[]> ranges = new HashMap<>(); // The cell range of every render handler
+  private final ArrayList<RenderHandler> oversized = new ArrayList<>();
+
+  public RenderGrid() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  public RenderGrid(double cellSize) {
+    this.cellSize = cellSize;
+  }
+
+  /**
+   * Insert or move the render handler to the given AABB.
+   */
+  public synchronized void move(RenderHandler renderer, double minX, double minY, double maxX, double maxY) {
+    int minCellX = cellOf(minX);
+    int minCellY = cellOf(minY);
+    int maxCellX = cellOf(maxX);
+    int maxCellY = cellOf(maxY);
+
+    int[] range = ranges.get(renderer);
+    if (range != null) {
+      if (range[0] == minCellX && range[1] == minCellY && range[2] == maxCellX && range[3] == maxCellY) {
+        return;
+      }
+      removeFromCells(renderer, range);
+    } else {
+      range = new int[4];
+      ranges.put(renderer, range);
+    }
+    range[0] = minCellX;
+    range[1] = minCellY;
+    range[2] = maxCellX;
+    range[3] = maxCellY;
+
+    if (isOversized(range)) {
+      oversized.add(renderer);
+      return;
+    }
+    for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+      for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+        cells.computeIfAbsent(key(cellX, cellY), k -> new ArrayList<>()).add(renderer);
+      }
+    }
+  }
+
+  /**
+   * Remove the render handler from the grid.
+   */
+  public synchronized void remove(RenderHandler renderer) {
+    int[] range = ranges.remove(renderer);
+    if (range != null) {
+      removeFromCells(renderer, range);
+    }
+  }
+
+  /**
+   * Add the render handlers whose cells overlap the given AABB into the results, each of them once.
+   */
+  public synchronized void query(double minX, double minY, double maxX, double maxY, List<RenderHandler> results) {
+    int minCellX = cellOf(minX);
+    int minCellY = cellOf(minY);
+    int maxCellX = cellOf(maxX);
+    int maxCellY = cellOf(maxY);
+    results.addAll(oversized);
+
+    // A zoomed out view is answered by walking the occupied cells instead of the cells of the view
+    long viewCells = (long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1);
+    if (viewCells > cells.size()) {
+      for (Map.Entry<Long, ArrayList<RenderHandler>> entry : cells.entrySet()) {
+        int cellX = (int) (entry.getKey() >> 32);
+        int cellY = (int) (long) entry.getKey();
+        for (RenderHandler renderer : entry.getValue()) {
+          addOnce(renderer, minCellX, minCellY, maxCellX, maxCellY, cellX, cellY, results);
+        }
+      }
+      return;
+    }
+
+    for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+      for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+        ArrayList<RenderHandler> cell = cells.get(key(cellX, cellY));
+        if (cell == null) {
+          continue;
+        }
+        for (RenderHandler renderer : cell) {
+          addOnce(renderer, minCellX, minCellY, maxCellX, maxCellY, cellX, cellY, results);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the number of render handlers in the grid.
+   */
+  public synchronized int size() {
+    return ranges.size();
+  }
+
+  /* private methods below */
+
+  private void addOnce(RenderHandler renderer, int minCellX, int minCellY, int maxCellX, int maxCellY,
+      int cellX, int cellY, List<RenderHandler> results) {
+    int[] range = ranges.get(renderer);
+    if (range[0] > maxCellX || range[2] < minCellX || range[1] > maxCellY || range[3] < minCellY) {
+      return;
+    }
+
+    // A render handler in several cells is only added from the first of its cells in the view
+    if (cellX == Math.max(range[0], minCellX) && cellY == Math.max(range[1], minCellY)) {
+      results.add(renderer);
+    }
+  }
+
+  private void removeFromCells(RenderHandler renderer, int[] range) {
+    if (isOversized(range)) {
+      oversized.remove(renderer);
+      return;
+    }
+    for (int cellY = range[1]; cellY <= range[3]; cellY++) {
+      for (int cellX = range[0]; cellX <= range[2]; cellX++) {
+        long key = key(cellX, cellY);
+        ArrayList<RenderHandler> cell = cells.get(key);
+        cell.remove(renderer);
+        if (cell.isEmpty()) {
+          cells.remove(key);
+        }
+      }
+    }
+  }
+
+  private boolean isOversized(int[] range) {
+    return (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1) > MAX_CELLS_PER_RENDERER;
+  }
+
+  private int cellOf(double coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static long key(int cellX, int cellY) {
+    return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,130 @@
+package ecs.engine.render;
+
+import ecs.engine.component.RenderHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The render handlers of a scene in buckets by their render order, which replaces sorting all the render handlers
+ * whenever one is attached or changes its render order.
+ * Adding, moving and removing a render handler only touches its buckets. The draw order is merged from the buckets
+ * once per frame, and only when something has been changed, in the ascending render order, and in the order of the
+ * attachment within a bucket.
+ * The render handlers update the buckets on the logic thread, and the scene merges them on the JavaFX thread,
+ * so every method is synchronized.
+ */
+public class RenderQueue {
+
+  private static final Comparator<RenderHandler> ATTACH_ORDER = Comparator.comparingLong(
+      RenderHandler::getRenderSequence);
+
+  // instance variables
+  private final HashMap<Integer, ArrayList<RenderHandler>> buckets = new HashMap<>();
+  private final HashMap<RenderHandler, int[]> slots = new HashMap<>(); // The render order and the index in the bucket
+  private final HashSet<Integer> unsortedOrders = new HashSet<>(); // The buckets out of the order of the attachment
+  private int[] sortedOrders = new int[0];
+  private final ArrayList<RenderHandler> drawOrder = new ArrayList<>();
+  private boolean isChanged;
+
+  /**
+   * Add the render handler to the bucket of its render order, or move it there if it is already in the queue.
+   */
+  public synchronized void add(RenderHandler renderer) {
+    int[] slot = slots.get(renderer);
+    if (slot != null) {
+      if (slot[0] == renderer.renderOrder) {
+        return;
+      }
+      removeFromBucket(slot);
+    } else {
+      slot = new int[2];
+      slots.put(renderer, slot);
+    }
+
+    ArrayList<RenderHandler> bucket = buckets.get(renderer.renderOrder);
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      buckets.put(renderer.renderOrder, bucket);
+      addSortedOrder(renderer.renderOrder);
+    }
+
+    // A render handler attached later goes to the end, a moved one may have to be sorted into the bucket
+    if (!bucket.isEmpty() && bucket.get(bucket.size() - 1).getRenderSequence() > renderer.getRenderSequence()) {
+      unsortedOrders.add(renderer.renderOrder);
+    }
+    slot[0] = renderer.renderOrder;
+    slot[1] = bucket.size();
+    bucket.add(renderer);
+    isChanged = true;
+  }
+
+  /**
+   * Remove the render handler from the queue.
+   */
+  public synchronized void remove(RenderHandler renderer) {
+    int[] slot = slots.remove(renderer);
+    if (slot != null) {
+      removeFromBucket(slot);
+      isChanged = true;
+    }
+  }
+
+  /**
+   * Get the render handlers in the draw order.
+   * The list is merged from the buckets if something has been changed since the last call, and must only be used on
+   * the thread that draws the scene.
+   */
+  public synchronized List<RenderHandler> getDrawOrder() {
+    if (!isChanged) {
+      return drawOrder;
+    }
+    for (int renderOrder : unsortedOrders) {
+      ArrayList<RenderHandler> bucket = buckets.get(renderOrder);
+      bucket.sort(ATTACH_ORDER);
+      for (int i = 0; i < bucket.size(); i++) {
+        slots.get(bucket.get(i))[1] = i;
+      }
+    }
+    unsortedOrders.clear();
+
+    drawOrder.clear();
+    for (int renderOrder : sortedOrders) {
+      drawOrder.addAll(buckets.get(renderOrder));
+    }
+    isChanged = false;
+    return drawOrder;
+  }
+
+  /**
+   * Get the number of render handlers in the queue.
+   */
+  public synchronized int size() {
+    return slots.size();
+  }
+
+  /* private methods below */
+
+  private void removeFromBucket(int[] slot) {
+    // The last render handler of the bucket fills the hole, so the bucket has to be sorted again
+    ArrayList<RenderHandler> bucket = buckets.get(slot[0]);
+    RenderHandler last = bucket.remove(bucket.size() - 1);
+    if (slot[1] < bucket.size()) {
+      bucket.set(slot[1], last);
+      slots.get(last)[1] = slot[1];
+      unsortedOrders.add(slot[0]);
+    }
+  }
+
+  private void addSortedOrder(int renderOrder) {
+    int index = -Arrays.binarySearch(sortedOrders, renderOrder) - 1;
+    int[] orders = new int[sortedOrders.length + 1];
+    System.arraycopy(sortedOrders, 0, orders, 0, index);
+    orders[index] = renderOrder;
+    System.arraycopy(sortedOrders, index, orders, index + 1, sortedOrders.length - index);
+    sortedOrders = orders;
+  }
+}
@@ -0,0 +1,203 @@
+package ecs.engine.render;
+
+import ecs.engine.component.ParticleEmitter;
+import ecs.engine.component.RenderHandler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+
+/**
+ * The retained mode backend that keeps the nodes of the render handlers in the render pane across the frames.
+ * A node is added when its render handler is first drawn, and removed in the first frame it is not drawn,
+ * which is when its render handler has been detached or destroyed or its image has been replaced.
+ * The render order is applied with the fewest moves: the nodes that are already in order are kept in place,
+ * so a frame where nothing has been added, removed or reordered does not touch the children of the pane.
+ */
+public class RetainedRenderBackend implements RenderBackend {
+
+  // instance variables
+  private Pane renderPane;
+  private final Affine view = new Affine(); // The only transform of the render pane
+  private final Affine inverseView = new Affine();
+  private final Map<ParticleEmitter, ParticleLayer> particleLayers = new WeakHashMap<>();
+  private final IdentityHashMap<Node, Long> drawnFrames = new IdentityHashMap<>(); // The last frame of every node
+  private long frame;
+  private Node[] frameNodes = new Node[64]; // The nodes of the frame in the render order
+  private int frameCount;
+  private int retainedCount; // The nodes of the frame that were already in the pane
+
+  // The buffers of the reordering
+  private int[] currentIndices = new int[64];
+  private int[] tails = new int[64];
+  private int[] previous = new int[64];
+  private boolean[] isKept = new boolean[64];
+
+  @Override
+  public void attach(Pane renderPane) {
+    this.renderPane = renderPane;
+    renderPane.getTransforms().setAll(view);
+    renderPane.getChildren().clear();
+    drawnFrames.clear();
+  }
+
+  @Override
+  public void detach(Pane renderPane) {
+    renderPane.getChildren().clear();
+    renderPane.getTransforms().clear();
+    particleLayers.clear();
+    drawnFrames.clear();
+    Arrays.fill(frameNodes, 0, frameCount, null);
+    frameCount = 0;
+    this.renderPane = null;
+  }
+
+  @Override
+  public void beginFrame(Affine view) {
+    this.view.setToTransform(view);
+    inverseView.setToTransform(view);
+    try {
+      inverseView.invert();
+    } catch (NonInvertibleTransformException e) {
+      inverseView.setToIdentity();
+    }
+    frame++;
+    frameCount = 0;
+    retainedCount = 0;
+  }
+
+  @Override
+  public void draw(RenderHandler renderer) {
+    drawNode(renderer.getImage());
+  }
+
+  @Override
+  public void drawParticles(ParticleEmitter emitter) {
+    ParticleLayer layer = particleLayers.computeIfAbsent(emitter, key -> new ParticleLayer());
+    drawNode(layer.paint(emitter, renderPane, view, inverseView));
+  }
+
+  @Override
+  public void endFrame() {
+    ObservableList<Node> children = renderPane.getChildren();
+
+    // Remove the nodes that were not drawn in this frame
+    if (children.size() != retainedCount) {
+      children.removeIf(node -> {
+        Long lastFrame = drawnFrames.get(node);
+        if (lastFrame == null || lastFrame != frame) {
+          drawnFrames.remove(node);
+          return true;
+        }
+        return false;
+      });
+    }
+
+    if (!isInOrder(children)) {
+      reorder(children);
+    }
+    Arrays.fill(frameNodes, 0, frameCount, null);
+  }
+
+  /* private methods below */
+
+  private void drawNode(Node node) {
+    Long lastFrame = drawnFrames.put(node, frame);
+    if (lastFrame != null && lastFrame == frame) {
+      return;
+    }
+    if (lastFrame != null) {
+      retainedCount++;
+    }
+
+    if (frameCount == frameNodes.length) {
+      frameNodes = Arrays.copyOf(frameNodes, frameCount * 2);
+    }
+    frameNodes[frameCount++] = node;
+  }
+
+  private boolean isInOrder(List<Node> children) {
+    if (children.size() != frameCount) {
+      return false;
+    }
+    for (int i = 0; i < frameCount; i++) {
+      if (children.get(i) != frameNodes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void reorder(ObservableList<Node> children) {
+    if (currentIndices.length < frameCount) {
+      int capacity = frameCount * 2;
+      currentIndices = new int[capacity];
+      tails = new int[capacity];
+      previous = new int[capacity];
+      isKept = new boolean[capacity];
+    }
+
+    // The index of every node of the frame among the children, or -1 for a new node
+    IdentityHashMap<Node, Integer> childIndices = new IdentityHashMap<>(children.size() * 2);
+    for (int i = 0; i < children.size(); i++) {
+      childIndices.put(children.get(i), i);
+    }
+    for (int i = 0; i < frameCount; i++) {
+      Integer index = childIndices.get(frameNodes[i]);
+      currentIndices[i] = index == null ? -1 : index;
+    }
+
+    // The longest increasing run of the current indices stays in place, every other node is moved
+    markLongestIncreasing();
+    Set<Node> movedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < frameCount; i++) {
+      if (!isKept[i] && currentIndices[i] >= 0) {
+        movedNodes.add(frameNodes[i]);
+      }
+    }
+    if (!movedNodes.isEmpty()) {
+      children.removeIf(movedNodes::contains);
+    }
+    for (int i = 0; i < frameCount; i++) {
+      if (!isKept[i]) {
+        children.add(i, frameNodes[i]);
+      }
+    }
+  }
+
+  private void markLongestIncreasing() {
+    // Patience sorting: tails[k] is the position of the smallest tail of an increasing run of length k + 1
+    int length = 0;
+    for (int i = 0; i < frameCount; i++) {
+      isKept[i] = false;
+      if (currentIndices[i] < 0) {
+        continue;
+      }
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (currentIndices[tails[middle]] < currentIndices[i]) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      previous[i] = low > 0 ? tails[low - 1] : -1;
+      tails[low] = i;
+      length = Math.max(length, low + 1);
+    }
+
+    for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+      isKept[i] = true;
+    }
+  }
+}
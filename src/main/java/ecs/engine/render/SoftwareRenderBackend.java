@@ -0,0 +1,599 @@
+package ecs.engine.render;
+
+import ecs.engine.component.ParticleEmitter;
+import ecs.engine.component.RenderHandler;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Affine;
+import javax.imageio.ImageIO;
+
+/**
+ * The pure Java backend that rasterizes the frame into an int[] framebuffer of ARGB pixels, without the GPU or a
+ * display, so frames can be rendered on headless machines, for thumbnails, golden images and benchmarks.
+ * See GameScene.setHeadlessSize() to run the scenes without a JavaFX scene.
+ * The JavaFX toolkit is still started, by the first node that is created, so a headless run should choose the
+ * software pipeline with -Dprism.order=sw to skip the attempt to open a GPU pipeline.
+ * The draws of a frame are recorded as commands, binned into the screen tiles they cover, and the tiles are
+ * rasterized in parallel, each one applying its commands in the render order, so the result does not depend on
+ * the number of threads.
+ * Rectangles, circles, ellipses and polygons are filled with their colors, image views are sampled from their
+ * pixels (the nearest pixel), and particles are drawn as squares. Strokes, gradients and other nodes are skipped.
+ * The backend also draws the static render handlers, in their render order.
+ */
+public class SoftwareRenderBackend implements RenderBackend {
+
+  ////////////// Backend Settings //////////////
+
+  /// The ARGB color that the framebuffer is cleared to at the beginning of every frame.
+  public int clearColor = 0xFF000000;
+  /// Whether the tiles are rasterized in parallel.
+  public boolean isParallel = true;
+
+  ////////////// Backend Constants //////////////
+
+  /// The width and height of a screen tile in pixels.
+  public static final int TILE_SIZE = 64;
+
+  ///////////////////////////////////////////////
+
+  private static final int RECTANGLE = 0;
+  private static final int ELLIPSE = 1;
+  private static final int POLYGON = 2;
+  private static final int IMAGE = 3;
+
+  // readonly variables
+  private final int width;
+  private final int height;
+  private final int[] framebuffer;
+  private final int tileColumns;
+  private final int tileRows;
+  private long frameCount;
+
+  // The commands of the frame in the render order
+  private int commandCount;
+  private int[] types = new int[256];
+  private int[] colors = new int[256]; // The fill of a shape, or the opacity of an image in the alpha
+  private double[] inverses = new double[256 * 6]; // The transform from the screen to the local space
+  private double[] geometries = new double[256 * 4]; // The rectangle, the ellipse, or the destination of an image
+  private int[] screenBounds = new int[256 * 4]; // The covered pixels, inclusive
+  private int[] polygonStarts = new int[256]; // The first point of a polygon, and its number of points
+  private int[] polygonCounts = new int[256];
+  private double[] polygonPoints = new double[256];
+  private int polygonPointCount;
+  private int[][] imagePixels = new int[256][];
+  private int[] imageWidths = new int[256];
+  private double[] imageSources = new double[256 * 4]; // The region of the image that is drawn
+
+  // instance variables
+  private final Affine view = new Affine();
+  private final double[] drawTransform = new double[6];
+  private final Map<Image, int[]> pixelCache = new WeakHashMap<>();
+  private int[][] tileCommands;
+  private int[] tileCommandCounts;
+  private double[] particlePositions = new double[0];
+  private int[] particleColors = new int[0];
+  private Path pngDirectory;
+  private Pane renderPane;
+  private ImageView preview; // The framebuffer shown in the render pane, when the game has a JavaFX scene
+  private WritableImage previewImage;
+
+  public SoftwareRenderBackend(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new RuntimeException("The size of the framebuffer must be positive: " + width + "x" + height);
+    }
+    this.width = width;
+    this.height = height;
+    this.framebuffer = new int[width * height];
+    this.tileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+    this.tileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+    this.tileCommands = new int[tileColumns * tileRows][16];
+    this.tileCommandCounts = new int[tileColumns * tileRows];
+  }
+
+  @Override
+  public void attach(Pane renderPane) {
+    // Without a JavaFX scene, the frames are only kept in the framebuffer
+    this.renderPane = renderPane;
+    if (renderPane != null) {
+      previewImage = new WritableImage(width, height);
+      preview = new ImageView(previewImage);
+      renderPane.getChildren().setAll(preview);
+    }
+  }
+
+  @Override
+  public void detach(Pane renderPane) {
+    if (renderPane != null) {
+      renderPane.getChildren().remove(preview);
+    }
+    this.renderPane = null;
+    preview = null;
+    previewImage = null;
+    pixelCache.clear();
+  }
+
+  @Override
+  public void beginFrame(Affine view) {
+    this.view.setToTransform(view);
+    Arrays.fill(imagePixels, 0, commandCount, null);
+    commandCount = 0;
+    polygonPointCount = 0;
+  }
+
+  @Override
+  public void draw(RenderHandler renderer) {
+    Node node = renderer.getImage();
+    if (!node.isVisible() || node.getOpacity() <= 0) {
+      return;
+    }
+
+    // The view is applied after the affine of the render handler
+    Affine affine = renderer.getAffine();
+    drawTransform[0] = view.getMxx() * affine.getMxx() + view.getMxy() * affine.getMyx();
+    drawTransform[1] = view.getMxx() * affine.getMxy() + view.getMxy() * affine.getMyy();
+    drawTransform[2] = view.getMxx() * affine.getTx() + view.getMxy() * affine.getTy() + view.getTx();
+    drawTransform[3] = view.getMyx() * affine.getMxx() + view.getMyy() * affine.getMyx();
+    drawTransform[4] = view.getMyx() * affine.getMxy() + view.getMyy() * affine.getMyy();
+    drawTransform[5] = view.getMyx() * affine.getTx() + view.getMyy() * affine.getTy() + view.getTy();
+
+    double opacity = node.getOpacity();
+    if (node instanceof Rectangle rectangle) {
+      addShape(RECTANGLE, rectangle.getFill(), opacity, rectangle.getX(), rectangle.getY(), rectangle.getWidth(),
+          rectangle.getHeight());
+    } else if (node instanceof Circle circle) {
+      addShape(ELLIPSE, circle.getFill(), opacity, circle.getCenterX(), circle.getCenterY(), circle.getRadius(),
+          circle.getRadius());
+    } else if (node instanceof Ellipse ellipse) {
+      addShape(ELLIPSE, ellipse.getFill(), opacity, ellipse.getCenterX(), ellipse.getCenterY(),
+          ellipse.getRadiusX(), ellipse.getRadiusY());
+    } else if (node instanceof Polygon polygon) {
+      addPolygon(polygon, opacity);
+    } else if (node instanceof ImageView imageView) {
+      addImage(imageView, opacity);
+    }
+  }
+
+  @Override
+  public void drawParticles(ParticleEmitter emitter) {
+    // The particles are in the world, so only the view is applied
+    drawTransform[0] = view.getMxx();
+    drawTransform[1] = view.getMxy();
+    drawTransform[2] = view.getTx();
+    drawTransform[3] = view.getMyx();
+    drawTransform[4] = view.getMyy();
+    drawTransform[5] = view.getTy();
+
+    int count = emitter.getParticleCount();
+    if (particleColors.length < count) {
+      particlePositions = new double[count * 4];
+      particleColors = new int[count * 2];
+    }
+    count = emitter.copyParticles(particlePositions, particleColors);
+    double half = emitter.size / 2;
+    for (int i = 0; i < count; i++) {
+      int command = particleColors[i] >>> 24 == 0 ? -1 : addCommand(RECTANGLE, particleColors[i]);
+      if (command >= 0) {
+        setGeometry(command, particlePositions[2 * i] - half, particlePositions[2 * i + 1] - half, emitter.size,
+            emitter.size);
+        setScreenBounds(command, geometries[4 * command], geometries[4 * command + 1],
+            geometries[4 * command] + emitter.size, geometries[4 * command + 1] + emitter.size);
+      }
+    }
+  }
+
+  @Override
+  public void endFrame() {
+    Arrays.fill(framebuffer, clearColor);
+    binCommands();
+    if (isParallel && tileCommandCounts.length > 1) {
+      ForkJoinPool.commonPool().invoke(new TileTask(0, tileCommandCounts.length));
+    } else {
+      for (int tile = 0; tile < tileCommandCounts.length; tile++) {
+        rasterizeTile(tile);
+      }
+    }
+
+    if (preview != null) {
+      previewImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), framebuffer, 0,
+          width);
+    }
+    if (pngDirectory != null) {
+      writePng(pngDirectory.resolve(String.format("frame_%06d.png", frameCount)));
+    }
+    frameCount++;
+  }
+
+  @Override
+  public boolean drawsStaticRenderers() {
+    return true;
+  }
+
+  /**
+   * Get the framebuffer of the last frame, as ARGB pixels in rows from the top left corner.
+   */
+  public int[] getFramebuffer() {
+    return framebuffer;
+  }
+
+  /**
+   * Get the width of the framebuffer.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the height of the framebuffer.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Write every following frame as a PNG file into the directory, named by the number of the frame,
+   * or stop writing them with null.
+   */
+  public void setPngSequence(Path directory) {
+    if (directory != null) {
+      try {
+        Files.createDirectories(directory);
+      } catch (IOException e) {
+        throw new RuntimeException("Cannot create the directory of the PNG sequence: " + directory, e);
+      }
+    }
+    pngDirectory = directory;
+  }
+
+  /**
+   * Write the framebuffer of the last frame into a PNG file.
+   */
+  public void writePng(Path file) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    image.setRGB(0, 0, width, height, framebuffer, 0, width);
+    try {
+      ImageIO.write(image, "png", file.toFile());
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot write the frame: " + file, e);
+    }
+  }
+
+  /* private methods below */
+
+  private void addShape(int type, Paint fill, double opacity, double x, double y, double width, double height) {
+    if (!(fill instanceof Color color)) {
+      return;
+    }
+    int command = addCommand(type, toArgb(color, opacity));
+    if (command < 0) {
+      return;
+    }
+    setGeometry(command, x, y, width, height);
+    if (type == ELLIPSE) {
+      setScreenBounds(command, x - width, y - height, x + width, y + height);
+    } else {
+      setScreenBounds(command, x, y, x + width, y + height);
+    }
+  }
+
+  private void addPolygon(Polygon polygon, double opacity) {
+    if (!(polygon.getFill() instanceof Color color)) {
+      return;
+    }
+    List<Double> points = polygon.getPoints();
+    int count = points.size() / 2;
+    int command = count < 3 ? -1 : addCommand(POLYGON, toArgb(color, opacity));
+    if (command < 0) {
+      return;
+    }
+    if (polygonPoints.length < 2 * (polygonPointCount + count)) {
+      polygonPoints = Arrays.copyOf(polygonPoints, 4 * (polygonPointCount + count));
+    }
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < count; i++) {
+      double x = points.get(2 * i);
+      double y = points.get(2 * i + 1);
+      polygonPoints[2 * (polygonPointCount + i)] = x;
+      polygonPoints[2 * (polygonPointCount + i) + 1] = y;
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+    polygonStarts[command] = polygonPointCount;
+    polygonCounts[command] = count;
+    polygonPointCount += count;
+    setScreenBounds(command, minX, minY, maxX, maxY);
+  }
+
+  private void addImage(ImageView imageView, double opacity) {
+    Image image = imageView.getImage();
+    int[] pixels = getPixels(image);
+    if (pixels == null) {
+      return;
+    }
+    int command = addCommand(IMAGE, (int) Math.round(opacity * 255) << 24);
+    if (command < 0) {
+      return;
+    }
+    Rectangle2D viewport = imageView.getViewport();
+    Bounds bounds = imageView.getLayoutBounds();
+    imagePixels[command] = pixels;
+    imageWidths[command] = (int) image.getWidth();
+    if (viewport == null) {
+      setSource(command, 0, 0, image.getWidth(), image.getHeight());
+    } else {
+      setSource(command, viewport.getMinX(), viewport.getMinY(), viewport.getWidth(), viewport.getHeight());
+    }
+    setGeometry(command, bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
+    setScreenBounds(command, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+  }
+
+  private int[] getPixels(Image image) {
+    if (image == null) {
+      return null;
+    }
+    int[] pixels = pixelCache.get(image);
+    PixelReader reader = image.getPixelReader();
+    if (pixels == null && reader != null && image.getWidth() > 0 && image.getHeight() > 0) {
+      int imageWidth = (int) image.getWidth();
+      int imageHeight = (int) image.getHeight();
+      pixels = new int[imageWidth * imageHeight];
+      reader.getPixels(0, 0, imageWidth, imageHeight, PixelFormat.getIntArgbInstance(), pixels, 0, imageWidth);
+      pixelCache.put(image, pixels);
+    }
+    return pixels;
+  }
+
+  /**
+   * Add a command with the draw transform, or return -1 if the transform cannot be inverted.
+   */
+  private int addCommand(int type, int color) {
+    double a = drawTransform[0];
+    double b = drawTransform[1];
+    double c = drawTransform[3];
+    double d = drawTransform[4];
+    double determinant = a * d - b * c;
+    if (determinant == 0 || Double.isNaN(determinant)) {
+      return -1;
+    }
+    if (commandCount == types.length) {
+      grow(commandCount * 2);
+    }
+    int command = commandCount++;
+    types[command] = type;
+    colors[command] = color;
+
+    // The inverse maps the center of a pixel back into the local space of the shape
+    double tx = drawTransform[2];
+    double ty = drawTransform[5];
+    int i = 6 * command;
+    inverses[i] = d / determinant;
+    inverses[i + 1] = -b / determinant;
+    inverses[i + 2] = (b * ty - d * tx) / determinant;
+    inverses[i + 3] = -c / determinant;
+    inverses[i + 4] = a / determinant;
+    inverses[i + 5] = (c * tx - a * ty) / determinant;
+    return command;
+  }
+
+  private void setGeometry(int command, double x, double y, double width, double height) {
+    geometries[4 * command] = x;
+    geometries[4 * command + 1] = y;
+    geometries[4 * command + 2] = width;
+    geometries[4 * command + 3] = height;
+  }
+
+  private void setSource(int command, double x, double y, double width, double height) {
+    imageSources[4 * command] = x;
+    imageSources[4 * command + 1] = y;
+    imageSources[4 * command + 2] = width;
+    imageSources[4 * command + 3] = height;
+  }
+
+  private void setScreenBounds(int command, double minX, double minY, double maxX, double maxY) {
+    // The local AABB is transformed by its corners, then clipped to the framebuffer
+    double screenMinX = Double.POSITIVE_INFINITY;
+    double screenMinY = Double.POSITIVE_INFINITY;
+    double screenMaxX = Double.NEGATIVE_INFINITY;
+    double screenMaxY = Double.NEGATIVE_INFINITY;
+    for (int corner = 0; corner < 4; corner++) {
+      double x = (corner & 1) == 0 ? minX : maxX;
+      double y = (corner & 2) == 0 ? minY : maxY;
+      double sx = drawTransform[0] * x + drawTransform[1] * y + drawTransform[2];
+      double sy = drawTransform[3] * x + drawTransform[4] * y + drawTransform[5];
+      screenMinX = Math.min(screenMinX, sx);
+      screenMinY = Math.min(screenMinY, sy);
+      screenMaxX = Math.max(screenMaxX, sx);
+      screenMaxY = Math.max(screenMaxY, sy);
+    }
+    int i = 4 * command;
+    screenBounds[i] = (int) Math.max(0, Math.floor(screenMinX));
+    screenBounds[i + 1] = (int) Math.max(0, Math.floor(screenMinY));
+    screenBounds[i + 2] = (int) Math.min(width - 1, Math.ceil(screenMaxX));
+    screenBounds[i + 3] = (int) Math.min(height - 1, Math.ceil(screenMaxY));
+  }
+
+  private void binCommands() {
+    Arrays.fill(tileCommandCounts, 0);
+    for (int command = 0; command < commandCount; command++) {
+      int i = 4 * command;
+      if (screenBounds[i] > screenBounds[i + 2] || screenBounds[i + 1] > screenBounds[i + 3]) {
+        continue;
+      }
+      int minColumn = screenBounds[i] / TILE_SIZE;
+      int minRow = screenBounds[i + 1] / TILE_SIZE;
+      int maxColumn = screenBounds[i + 2] / TILE_SIZE;
+      int maxRow = screenBounds[i + 3] / TILE_SIZE;
+      for (int row = minRow; row <= maxRow; row++) {
+        for (int column = minColumn; column <= maxColumn; column++) {
+          int tile = row * tileColumns + column;
+          if (tileCommandCounts[tile] == tileCommands[tile].length) {
+            tileCommands[tile] = Arrays.copyOf(tileCommands[tile], tileCommandCounts[tile] * 2);
+          }
+          tileCommands[tile][tileCommandCounts[tile]++] = command;
+        }
+      }
+    }
+  }
+
+  private void rasterizeTile(int tile) {
+    int tileMinX = (tile % tileColumns) * TILE_SIZE;
+    int tileMinY = (tile / tileColumns) * TILE_SIZE;
+    int tileMaxX = Math.min(tileMinX + TILE_SIZE, width) - 1;
+    int tileMaxY = Math.min(tileMinY + TILE_SIZE, height) - 1;
+    int[] commands = tileCommands[tile];
+    for (int c = 0; c < tileCommandCounts[tile]; c++) {
+      int command = commands[c];
+      int minX = Math.max(tileMinX, screenBounds[4 * command]);
+      int minY = Math.max(tileMinY, screenBounds[4 * command + 1]);
+      int maxX = Math.min(tileMaxX, screenBounds[4 * command + 2]);
+      int maxY = Math.min(tileMaxY, screenBounds[4 * command + 3]);
+      for (int y = minY; y <= maxY; y++) {
+        for (int x = minX; x <= maxX; x++) {
+          int color = shade(command, x + 0.5, y + 0.5);
+          if (color >>> 24 != 0) {
+            framebuffer[y * width + x] = blend(color, framebuffer[y * width + x]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the color of the command at the center of a pixel, or 0 if the pixel is outside of it.
+   */
+  private int shade(int command, double screenX, double screenY) {
+    int i = 6 * command;
+    double x = inverses[i] * screenX + inverses[i + 1] * screenY + inverses[i + 2];
+    double y = inverses[i + 3] * screenX + inverses[i + 4] * screenY + inverses[i + 5];
+    int g = 4 * command;
+    int type = types[command];
+    if (type == RECTANGLE) {
+      boolean isInside = x >= geometries[g] && x < geometries[g] + geometries[g + 2]
+          && y >= geometries[g + 1] && y < geometries[g + 1] + geometries[g + 3];
+      return isInside ? colors[command] : 0;
+    } else if (type == ELLIPSE) {
+      double dx = (x - geometries[g]) / geometries[g + 2];
+      double dy = (y - geometries[g + 1]) / geometries[g + 3];
+      return dx * dx + dy * dy <= 1 ? colors[command] : 0;
+    } else if (type == POLYGON) {
+      return isInsidePolygon(command, x, y) ? colors[command] : 0;
+    }
+
+    // The image is sampled at the nearest pixel of its region
+    double u = (x - geometries[g]) / geometries[g + 2];
+    double v = (y - geometries[g + 1]) / geometries[g + 3];
+    if (u < 0 || u >= 1 || v < 0 || v >= 1) {
+      return 0;
+    }
+    int sourceX = (int) (imageSources[g] + u * imageSources[g + 2]);
+    int sourceY = (int) (imageSources[g + 1] + v * imageSources[g + 3]);
+    int pixel = imagePixels[command][sourceY * imageWidths[command] + sourceX];
+    int alpha = ((pixel >>> 24) * (colors[command] >>> 24) + 127) / 255;
+    return (alpha << 24) | (pixel & 0xFFFFFF);
+  }
+
+  private boolean isInsidePolygon(int command, double x, double y) {
+    // The even-odd rule, like the default fill rule of the polygon
+    int start = 2 * polygonStarts[command];
+    int count = polygonCounts[command];
+    boolean isInside = false;
+    for (int i = 0, j = count - 1; i < count; j = i++) {
+      double xi = polygonPoints[start + 2 * i];
+      double yi = polygonPoints[start + 2 * i + 1];
+      double xj = polygonPoints[start + 2 * j];
+      double yj = polygonPoints[start + 2 * j + 1];
+      if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+        isInside = !isInside;
+      }
+    }
+    return isInside;
+  }
+
+  private static int blend(int source, int destination) {
+    // Source over, on non premultiplied colors
+    int sourceAlpha = source >>> 24;
+    if (sourceAlpha == 255) {
+      return source;
+    }
+    int destinationAlpha = (destination >>> 24) * (255 - sourceAlpha) / 255;
+    int alpha = sourceAlpha + destinationAlpha;
+    if (alpha == 0) {
+      return 0;
+    }
+    int red = (((source >> 16) & 0xFF) * sourceAlpha + ((destination >> 16) & 0xFF) * destinationAlpha) / alpha;
+    int green = (((source >> 8) & 0xFF) * sourceAlpha + ((destination >> 8) & 0xFF) * destinationAlpha) / alpha;
+    int blue = ((source & 0xFF) * sourceAlpha + (destination & 0xFF) * destinationAlpha) / alpha;
+    return (alpha << 24) | (red << 16) | (green << 8) | blue;
+  }
+
+  private static int toArgb(Color color, double opacity) {
+    int alpha = (int) Math.round(color.getOpacity() * opacity * 255);
+    int red = (int) Math.round(color.getRed() * 255);
+    int green = (int) Math.round(color.getGreen() * 255);
+    int blue = (int) Math.round(color.getBlue() * 255);
+    return (alpha << 24) | (red << 16) | (green << 8) | blue;
+  }
+
+  private void grow(int capacity) {
+    types = Arrays.copyOf(types, capacity);
+    colors = Arrays.copyOf(colors, capacity);
+    inverses = Arrays.copyOf(inverses, capacity * 6);
+    geometries = Arrays.copyOf(geometries, capacity * 4);
+    screenBounds = Arrays.copyOf(screenBounds, capacity * 4);
+    polygonStarts = Arrays.copyOf(polygonStarts, capacity);
+    polygonCounts = Arrays.copyOf(polygonCounts, capacity);
+    imagePixels = Arrays.copyOf(imagePixels, capacity);
+    imageWidths = Arrays.copyOf(imageWidths, capacity);
+    imageSources = Arrays.copyOf(imageSources, capacity * 4);
+  }
+
+  private class TileTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int fromTile;
+    private final int toTile;
+
+    TileTask(int fromTile, int toTile) {
+      this.fromTile = fromTile;
+      this.toTile = toTile;
+    }
+
+    @Override
+    protected void compute() {
+      if (toTile - fromTile == 1) {
+        rasterizeTile(fromTile);
+        return;
+      }
+      int middle = (fromTile + toTile) >>> 1;
+      invokeAll(new TileTask(fromTile, middle), new TileTask(middle, toTile));
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package ecs.engine.render;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A set of large textures (pages) that the images are packed into, with the index from the name of an image to its
+ * region. The sprites made from the atlas share the pages, so thousands of sprites only use a handful of textures,
+ * and consecutive draws from the same page can be batched by the renderer.
+ * The images are packed into shelves, from the tallest to the shortest, with a transparent padding between them so
+ * that the smoothing of a region never samples its neighbours.
+ */
+public class SpriteAtlas {
+
+  ////////////// Atlas Settings //////////////
+
+  /// The default width and height of a page.
+  public static final int DEFAULT_PAGE_SIZE = 2048;
+  /// The transparent gap between the regions.
+  public static final int PADDING = 2;
+
+  ////////////////////////////////////////////
+
+  // readonly variables
+  private final List<Image> pages = new ArrayList<>();
+  private final Map<String, Integer> regionIndices = new HashMap<>();
+  private final List<Image> regionPages = new ArrayList<>();
+  private final List<Rectangle2D> regions = new ArrayList<>();
+
+  /**
+   * Pack the images into pages of the given size.
+   * An image that does not fit in a page, or whose pixels cannot be read, keeps its own texture as a page.
+   *
+   * @param images The images by name
+   * @param pageSize The width and height of a page
+   * @return The atlas of the images
+   */
+  public static SpriteAtlas pack(Map<String, Image> images, int pageSize) {
+    if (pageSize <= 2 * PADDING) {
+      throw new RuntimeException("The page size of the atlas is too small: " + pageSize);
+    }
+    SpriteAtlas atlas = new SpriteAtlas();
+
+    // Place the images from the tallest to the shortest, so the shelves waste little height
+    List<String> names = new ArrayList<>(images.keySet());
+    names.sort((a, b) -> {
+      int compare = Double.compare(images.get(b).getHeight(), images.get(a).getHeight());
+      return compare != 0 ? compare : a.compareTo(b);
+    });
+
+    List<String> placedNames = new ArrayList<>();
+    List<int[]> placements = new ArrayList<>(); // page, x, y, width, height
+    List<int[]> pageSizes = new ArrayList<>(); // used width, used height
+    int page = -1;
+    int shelfX = 0;
+    int shelfY = 0;
+    int shelfHeight = 0;
+    for (String name : names) {
+      Image image = images.get(name);
+      int width = (int) Math.ceil(image.getWidth());
+      int height = (int) Math.ceil(image.getHeight());
+      if (width + 2 * PADDING > pageSize || height + 2 * PADDING > pageSize || image.getPixelReader() == null
+          || width == 0 || height == 0) {
+        atlas.addRegion(name, image, new Rectangle2D(0, 0, image.getWidth(), image.getHeight()));
+        continue;
+      }
+
+      // Open a new shelf when the image does not fit in the current one, and a new page when the shelf does not fit
+      if (page >= 0 && shelfX + width + PADDING > pageSize) {
+        shelfY += shelfHeight + PADDING;
+        shelfX = PADDING;
+        shelfHeight = 0;
+      }
+      if (page < 0 || shelfY + height + PADDING > pageSize) {
+        page++;
+        pageSizes.add(new int[2]);
+        shelfX = PADDING;
+        shelfY = PADDING;
+        shelfHeight = 0;
+      }
+
+      placedNames.add(name);
+      placements.add(new int[] {page, shelfX, shelfY, width, height});
+      int[] used = pageSizes.get(page);
+      used[0] = Math.max(used[0], shelfX + width + PADDING);
+      used[1] = Math.max(used[1], shelfY + height + PADDING);
+      shelfX += width + PADDING;
+      shelfHeight = Math.max(shelfHeight, height);
+    }
+
+    // Copy the pixels of the images into the pages, which are only as large as they need to be
+    WritableImage[] packedPages = new WritableImage[pageSizes.size()];
+    for (int i = 0; i < packedPages.length; i++) {
+      packedPages[i] = new WritableImage(pageSizes.get(i)[0], pageSizes.get(i)[1]);
+      atlas.pages.add(packedPages[i]);
+    }
+    for (int i = 0; i < placements.size(); i++) {
+      int[] placement = placements.get(i);
+      PixelReader reader = images.get(placedNames.get(i)).getPixelReader();
+      WritableImage packedPage = packedPages[placement[0]];
+      packedPage.getPixelWriter().setPixels(placement[1], placement[2], placement[3], placement[4], reader, 0, 0);
+      atlas.addRegion(placedNames.get(i), packedPage,
+          new Rectangle2D(placement[1], placement[2], placement[3], placement[4]));
+    }
+    return atlas;
+  }
+
+  /* API BELOW */
+
+  /**
+   * Create a sprite of the image, which is an image view of its region in the page.
+   *
+   * @param name The name of the image
+   * @return The sprite of the image
+   */
+  public ImageView createSprite(String name) {
+    int index = getRegionIndex(name);
+    ImageView sprite = new ImageView(regionPages.get(index));
+    sprite.setViewport(regions.get(index));
+    return sprite;
+  }
+
+  /**
+   * Check if the atlas contains the image.
+   */
+  public boolean contains(String name) {
+    return regionIndices.containsKey(name);
+  }
+
+  /**
+   * Get the page that the image has been packed into.
+   */
+  public Image getPage(String name) {
+    return regionPages.get(getRegionIndex(name));
+  }
+
+  /**
+   * Get the region of the image in its page.
+   */
+  public Rectangle2D getRegion(String name) {
+    return regions.get(getRegionIndex(name));
+  }
+
+  /**
+   * Get the pages of the atlas, which do not include the images that keep their own texture.
+   */
+  public List<Image> getPages() {
+    return pages;
+  }
+
+  /* private methods below */
+
+  private void addRegion(String name, Image page, Rectangle2D region) {
+    regionIndices.put(name, regions.size());
+    regionPages.add(page);
+    regions.add(region);
+  }
+
+  private int getRegionIndex(String name) {
+    Integer index = regionIndices.get(name);
+    if (index == null) {
+      throw new RuntimeException("The image is not in the atlas: " + name);
+    }
+    return index;
+  }
+}
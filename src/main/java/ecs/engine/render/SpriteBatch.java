@@ -0,0 +1,151 @@
+package ecs.engine.render;
+
+import java.util.Arrays;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+
+/**
+ * The run of image draws that the canvas backend collects between two other draws.
+ * The draws are kept in flat arrays and replayed in their order. The consecutive draws that only differ in their
+ * translation, such as the unrotated sprites of the same scale, share the transform of the first one: their
+ * translation is moved into their destination instead, so the graphics context keeps its state and the renderer
+ * draws the sprites of an atlas page as one textured batch. The alpha is also only written when it changes.
+ * The arrays are kept between the frames, so adding a draw does not allocate.
+ */
+public class SpriteBatch {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  // The draws in the order they were added
+  private int count;
+  private Image[] images = new Image[INITIAL_CAPACITY];
+  private double[] sources = new double[INITIAL_CAPACITY * 4]; // x, y, width, height in the image
+  private double[] destinations = new double[INITIAL_CAPACITY * 4]; // x, y, width, height in the local space
+  private double[] transforms = new double[INITIAL_CAPACITY * 6]; // mxx, myx, mxy, myy, tx, ty
+  private double[] alphas = new double[INITIAL_CAPACITY];
+  private int runCount; // The number of the transforms set by the last flush
+
+  /**
+   * Add the draw of a region of an image.
+   *
+   * @param image The image, or the atlas page
+   * @param sx The X of the region in the image
+   * @param sy The Y of the region in the image
+   * @param sw The width of the region in the image
+   * @param sh The height of the region in the image
+   * @param dx The X of the draw in the local space
+   * @param dy The Y of the draw in the local space
+   * @param dw The width of the draw in the local space
+   * @param dh The height of the draw in the local space
+   * @param transform The transform from the local space to the canvas, in the order of GraphicsContext.setTransform
+   * @param alpha The alpha of the draw
+   */
+  public void add(Image image, double sx, double sy, double sw, double sh, double dx, double dy, double dw,
+      double dh, double[] transform, double alpha) {
+    if (count == images.length) {
+      grow(count * 2);
+    }
+    images[count] = image;
+    sources[4 * count] = sx;
+    sources[4 * count + 1] = sy;
+    sources[4 * count + 2] = sw;
+    sources[4 * count + 3] = sh;
+    destinations[4 * count] = dx;
+    destinations[4 * count + 1] = dy;
+    destinations[4 * count + 2] = dw;
+    destinations[4 * count + 3] = dh;
+    System.arraycopy(transform, 0, transforms, 6 * count, 6);
+    alphas[count] = alpha;
+    count++;
+  }
+
+  /**
+   * Draw all the added draws into the graphics context, and clear the batch.
+   * The transform of the graphics context is only set when the scale, rotation or shear of a draw changes.
+   */
+  public void flush(GraphicsContext graphics) {
+    double alpha = Double.NaN;
+    runCount = 0;
+
+    // The transform of the graphics context, with the inverse of its linear part
+    double mxx = Double.NaN;
+    double myx = Double.NaN;
+    double mxy = Double.NaN;
+    double myy = Double.NaN;
+    double tx = 0;
+    double ty = 0;
+    double inverseXX = 0;
+    double inverseXY = 0;
+    double inverseYX = 0;
+    double inverseYY = 0;
+    for (int i = 0; i < count; i++) {
+      if (alphas[i] != alpha) {
+        alpha = alphas[i];
+        graphics.setGlobalAlpha(alpha);
+      }
+      int t = 6 * i;
+      if (transforms[t] != mxx || transforms[t + 1] != myx || transforms[t + 2] != mxy || transforms[t + 3] != myy) {
+        mxx = transforms[t];
+        myx = transforms[t + 1];
+        mxy = transforms[t + 2];
+        myy = transforms[t + 3];
+        tx = transforms[t + 4];
+        ty = transforms[t + 5];
+        graphics.setTransform(mxx, myx, mxy, myy, tx, ty);
+        runCount++;
+
+        double determinant = mxx * myy - mxy * myx;
+        inverseXX = myy / determinant;
+        inverseXY = -mxy / determinant;
+        inverseYX = -myx / determinant;
+        inverseYY = mxx / determinant;
+        if (determinant == 0) {
+          // A singular transform has no inverse, so the next draw sets its own transform again
+          mxx = Double.NaN;
+        }
+      }
+
+      // The difference of the translations is moved back into the local space of the shared transform
+      double offsetX = transforms[t + 4] - tx;
+      double offsetY = transforms[t + 5] - ty;
+      int r = 4 * i;
+      graphics.drawImage(images[i], sources[r], sources[r + 1], sources[r + 2], sources[r + 3],
+          destinations[r] + inverseXX * offsetX + inverseXY * offsetY,
+          destinations[r + 1] + inverseYX * offsetX + inverseYY * offsetY, destinations[r + 2], destinations[r + 3]);
+    }
+    clear();
+  }
+
+  /**
+   * Remove all the draws and release the references to the images.
+   */
+  public void clear() {
+    Arrays.fill(images, 0, count, null);
+    count = 0;
+  }
+
+  /**
+   * Get the number of draws in the batch.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get the number of the runs of draws that shared a transform in the last flush, which is the number of the times
+   * the transform of the graphics context was set.
+   */
+  public int getRunCount() {
+    return runCount;
+  }
+
+  /* private methods below */
+
+  private void grow(int capacity) {
+    images = Arrays.copyOf(images, capacity);
+    sources = Arrays.copyOf(sources, capacity * 4);
+    destinations = Arrays.copyOf(destinations, capacity * 4);
+    transforms = Arrays.copyOf(transforms, capacity * 6);
+    alphas = Arrays.copyOf(alphas, capacity);
+  }
+}
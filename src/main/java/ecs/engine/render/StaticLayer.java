@@ -0,0 +1,291 @@
+package ecs.engine.render;
+
+import ecs.engine.component.RenderHandler;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Scale;
+
+/**
+ * The cached layer of the static render handlers of a scene, which is drawn in the background pane of the game,
+ * behind all the other render handlers.
+ * The world is split into square chunks, and the images of the static render handlers are drawn once into the
+ * bitmaps of the chunks they cover. When a static render handler has been added, removed or changed, only the chunks
+ * that its old and its new AABB touch are drawn again. Only the chunks in the view of the camera are shown, and a
+ * changed chunk out of the view is only drawn again once it comes into the view. In every other frame, the layer only
+ * moves with the view, so a large tiled background costs nothing per frame.
+ * The render handlers update the layer on the logic thread, and the scene draws it on the JavaFX thread,
+ * so the methods that the render handlers call are synchronized.
+ */
+public class StaticLayer {
+
+  ////////////// Layer Settings //////////////
+
+  /// The number of pixels of the bitmap per unit of the world. Larger values keep the layer sharp when zoomed in.
+  public double resolution = 1;
+  /// The width and height of a chunk in units of the world. A chunk is a bitmap of chunkSize * resolution pixels.
+  public double chunkSize = 1024;
+
+  ////////////////////////////////////////////
+
+  private static final Comparator<RenderHandler> RENDER_ORDER = Comparator
+      .comparingInt((RenderHandler renderer) -> renderer.renderOrder)
+      .thenComparingLong(RenderHandler::getRenderSequence);
+
+  // instance variables
+  private final LinkedHashSet<RenderHandler> renderers = new LinkedHashSet<>();
+  private final HashSet<RenderHandler> changedRenderers = new HashSet<>();
+  private boolean isAllChanged;
+
+  // The state of the chunks, which is only used on the JavaFX thread
+  private final ArrayList<RenderHandler> drawnRenderers = new ArrayList<>();
+  private final ArrayList<RenderHandler> drawnChangedRenderers = new ArrayList<>();
+  private final ArrayList<RenderHandler> drawnRemovedRenderers = new ArrayList<>();
+  private final HashMap<RenderHandler, Bounds> drawnBounds = new HashMap<>(); // The AABB of the last drawn image
+  private final HashMap<Long, Chunk> chunks = new HashMap<>();
+  private final ArrayList<Node> visibleViews = new ArrayList<>();
+  private final Group chunkViews = new Group();
+  private final Group images = new Group(); // The images of the static render handlers, out of the scene graph
+  private final Affine view = new Affine(); // The only transform of the background pane
+  private final SnapshotParameters parameters = new SnapshotParameters();
+  private double drawnResolution;
+  private double drawnChunkSize;
+
+  public StaticLayer() {
+    parameters.setFill(Color.TRANSPARENT);
+  }
+
+  /**
+   * Add the static render handler to the layer.
+   */
+  public synchronized void add(RenderHandler renderer) {
+    renderers.add(renderer);
+    changedRenderers.add(renderer);
+  }
+
+  /**
+   * Remove the render handler from the layer.
+   */
+  public synchronized void remove(RenderHandler renderer) {
+    if (renderers.remove(renderer)) {
+      changedRenderers.add(renderer);
+    }
+  }
+
+  /**
+   * Mark the chunks of the render handler to be drawn again, when it has been changed.
+   */
+  public synchronized void invalidate(RenderHandler renderer) {
+    changedRenderers.add(renderer);
+  }
+
+  /**
+   * Mark all the chunks to be made and drawn again.
+   */
+  public synchronized void invalidate() {
+    isAllChanged = true;
+  }
+
+  /**
+   * Show the chunks in the view in the background pane, and draw again the ones that have been changed.
+   * This is called by the scene on the JavaFX thread, after the other render handlers are drawn.
+   *
+   * @param backgroundPane The background pane of the game
+   * @param view The transform from the world to the screen, see Camera
+   */
+  public void update(Pane backgroundPane, Affine view) {
+    if (backgroundPane.getChildren().size() != 1 || backgroundPane.getChildren().get(0) != chunkViews) {
+      backgroundPane.getChildren().setAll(chunkViews);
+    }
+    if (backgroundPane.getTransforms().size() != 1 || backgroundPane.getTransforms().get(0) != this.view) {
+      backgroundPane.getTransforms().setAll(this.view);
+    }
+    this.view.setToTransform(view);
+
+    boolean isResized = resolution != drawnResolution || chunkSize != drawnChunkSize;
+    boolean isChanged;
+    boolean isAllDrawn;
+    synchronized (this) {
+      isChanged = isResized || isAllChanged || !changedRenderers.isEmpty();
+      isAllDrawn = isResized || isAllChanged;
+      if (isChanged) {
+        drawnRenderers.clear();
+        drawnRenderers.addAll(renderers);
+      }
+      for (RenderHandler renderer : isAllDrawn ? renderers : changedRenderers) {
+        (renderers.contains(renderer) ? drawnChangedRenderers : drawnRemovedRenderers).add(renderer);
+      }
+      isAllChanged = false;
+      changedRenderers.clear();
+    }
+    if (isAllDrawn) {
+      // The chunks are all made again, such as when they have another size in the bitmap or in the world
+      drawnResolution = resolution;
+      drawnChunkSize = chunkSize;
+      chunks.clear();
+      drawnBounds.clear();
+    }
+    if (isChanged) {
+      invalidateChunks();
+    }
+    showChunks(backgroundPane);
+  }
+
+  /**
+   * Get the number of the static render handlers.
+   */
+  public synchronized int size() {
+    return renderers.size();
+  }
+
+  /**
+   * Get the number of the chunks that have images drawn into them, or are to be drawn.
+   */
+  public int getChunkCount() {
+    return chunks.size();
+  }
+
+  /* private methods below */
+
+  private void invalidateChunks() {
+    // The chunks under the old and the new AABB of every changed render handler are drawn again
+    for (RenderHandler renderer : drawnRemovedRenderers) {
+      Bounds oldBounds = drawnBounds.remove(renderer);
+      if (oldBounds != null) {
+        markChunks(oldBounds);
+      }
+    }
+    for (RenderHandler renderer : drawnChangedRenderers) {
+      Bounds oldBounds = drawnBounds.remove(renderer);
+      if (oldBounds != null) {
+        markChunks(oldBounds);
+      }
+      Node image = renderer.getImage();
+      Bounds bounds = image == null ? null : image.getBoundsInParent();
+      if (bounds != null && !bounds.isEmpty()) {
+        drawnBounds.put(renderer, bounds);
+        markChunks(bounds);
+      }
+    }
+    drawnRemovedRenderers.clear();
+    drawnChangedRenderers.clear();
+    drawnRenderers.sort(RENDER_ORDER);
+  }
+
+  private void markChunks(Bounds bounds) {
+    int minChunkX = (int) Math.floor(bounds.getMinX() / chunkSize);
+    int minChunkY = (int) Math.floor(bounds.getMinY() / chunkSize);
+    int maxChunkX = (int) Math.floor(bounds.getMaxX() / chunkSize);
+    int maxChunkY = (int) Math.floor(bounds.getMaxY() / chunkSize);
+    for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+      for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+        long key = chunkKey(chunkX, chunkY);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+          chunk = new Chunk(chunkX, chunkY);
+          chunks.put(key, chunk);
+        }
+        chunk.isDirty = true;
+      }
+    }
+  }
+
+  private void showChunks(Pane backgroundPane) {
+    // The view of the camera in the world, or all the chunks if the view cannot be inverted
+    Bounds viewBounds;
+    try {
+      viewBounds = view.inverseTransform(new BoundingBox(0, 0, backgroundPane.getWidth(),
+          backgroundPane.getHeight()));
+    } catch (NonInvertibleTransformException e) {
+      viewBounds = null;
+    }
+
+    visibleViews.clear();
+    Iterator<Chunk> iterator = chunks.values().iterator();
+    while (iterator.hasNext()) {
+      Chunk chunk = iterator.next();
+      if (viewBounds != null && !viewBounds.intersects(chunk.chunkX * chunkSize, chunk.chunkY * chunkSize,
+          chunkSize, chunkSize)) {
+        continue;
+      }
+      if (chunk.isDirty && !drawChunk(chunk)) {
+        // The chunk has no images left in it
+        iterator.remove();
+        continue;
+      }
+      visibleViews.add(chunk.bitmapView);
+    }
+    if (!chunkViews.getChildren().equals(visibleViews)) {
+      chunkViews.getChildren().setAll(visibleViews);
+    }
+  }
+
+  private boolean drawChunk(Chunk chunk) {
+    chunk.isDirty = false;
+    double minX = chunk.chunkX * chunkSize;
+    double minY = chunk.chunkY * chunkSize;
+
+    // The images that touch the chunk are drawn in the render order, in the world
+    ArrayList<Node> nodes = new ArrayList<>();
+    for (RenderHandler renderer : drawnRenderers) {
+      Bounds bounds = drawnBounds.get(renderer);
+      if (bounds != null && bounds.intersects(minX, minY, chunkSize, chunkSize)) {
+        nodes.add(renderer.getImage());
+      }
+    }
+    if (nodes.isEmpty()) {
+      images.getChildren().clear();
+      return false;
+    }
+    images.getChildren().setAll(nodes);
+
+    // The bitmap is reused by the snapshot, since every chunk has the same size
+    int size = (int) Math.ceil(chunkSize * resolution);
+    parameters.setTransform(new Scale(resolution, resolution));
+    parameters.setViewport(new Rectangle2D(minX * resolution, minY * resolution, size, size));
+    chunk.bitmap = images.snapshot(parameters, chunk.bitmap);
+    images.getChildren().clear();
+    chunk.bitmapView.setImage(chunk.bitmap);
+    chunk.bitmapView.setX(minX);
+    chunk.bitmapView.setY(minY);
+    chunk.bitmapView.setFitWidth(size / resolution);
+    chunk.bitmapView.setFitHeight(size / resolution);
+    return true;
+  }
+
+  private static long chunkKey(int chunkX, int chunkY) {
+    return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+  }
+
+  /**
+   * A square of the world with the bitmap of the static images that touch it.
+   */
+  private static class Chunk {
+
+    private final int chunkX;
+    private final int chunkY;
+    private final ImageView bitmapView = new ImageView();
+    private WritableImage bitmap;
+    private boolean isDirty;
+
+    Chunk(int chunkX, int chunkY) {
+      this.chunkX = chunkX;
+      this.chunkY = chunkY;
+    }
+  }
+}
@@ -2,6 +2,9 @@ package ecs.sandbox;
 
 import ecs.engine.base.Game;
 import ecs.sandbox.scene.ExampleScene;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
@@ -17,7 +20,7 @@ public class Main extends Application {
      * @param stage The primary stage.
      */
     @Override
-    public void start(Stage stage) {
+    public void start(Stage stage) throws IOException {
         // Create the game instance
         Game game = new Game(stage);
 
@@ -27,6 +30,15 @@ public class Main extends Application {
         // Set the start scene
         game.setStartScene(ExampleScene.class);
 
+        // Optional deterministic run: --seed=<n> or --record=<file>
+        Map<String, String> options = getParameters().getNamed();
+        if (options.containsKey("seed")) {
+            game.setDeterministic(Long.parseLong(options.get("seed")));
+        }
+        if (options.containsKey("record")) {
+            game.recordReplay(Path.of(options.get("record")));
+        }
+
         // Start the game
         game.start();
     }
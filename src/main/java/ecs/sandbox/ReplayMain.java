@@ -0,0 +1,35 @@
+package ecs.sandbox;
+
+import ecs.engine.base.Game;
+import ecs.engine.base.GameScene;
+import ecs.engine.base.ReplayResult;
+import ecs.sandbox.scene.ExampleScene;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The headless entry point that plays back a replay recorded by Main with --record=<file>.
+ * It is not a JavaFX Application, so the launcher does not open a window and it runs without a display.
+ */
+public class ReplayMain {
+
+    /**
+     * Plays back the replay file and prints the state hash after the last tick.
+     *
+     * @param args The path of the replay file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new RuntimeException("Usage: ReplayMain <replay file>");
+        }
+
+        // Add the same scenes as Main, in the size of the game window
+        GameScene.setHeadlessSize(Game.WIDTH, Game.HEIGHT);
+        GameScene.addScene(ExampleScene.class);
+        GameScene.setActiveScene(ExampleScene.class);
+
+        ReplayResult result = Game.playReplay(Path.of(args[0]));
+        System.out.println("Replayed " + result.getTickCount() + " ticks in " + result.getElapsedNanos() / 1_000_000
+                + " ms, state hash " + Long.toHexString(result.getStateHash()));
+    }
+}
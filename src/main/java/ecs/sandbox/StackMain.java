@@ -0,0 +1,52 @@
+package ecs.sandbox;
+
+import ecs.engine.base.Game;
+import ecs.engine.base.GameScene;
+import ecs.engine.physics.PhysicsWorld;
+import ecs.sandbox.scene.StackScene;
+
+/**
+ * The headless check of the contact solver, which drops a stack of crates on the ground and fails unless they
+ * settle in their order with every contact within the penetration slop.
+ */
+public class StackMain {
+
+    // The number of fixed steps that the stack has to settle in
+    private static final int MAX_STEPS = 500;
+
+    /**
+     * Runs the stack until it settles and prints the number of steps and the largest depth.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        GameScene.setHeadlessSize(Game.WIDTH, Game.HEIGHT);
+        GameScene.addScene(StackScene.class);
+        GameScene.setActiveScene(StackScene.class);
+        GameScene.setDeterministic(0);
+        StackScene scene = GameScene.getGameScene(StackScene.class);
+
+        // The depth of the last step before the stack falls asleep, since the sleeping crates are not solved
+        int step = 0;
+        double largestDepth = 0;
+        while (step < MAX_STEPS && (step == 0 || !scene.isSettled())) {
+            GameScene.tick(Game.FIXED_TIME_STEP);
+            step++;
+            if (!scene.isSettled()) {
+                largestDepth = scene.getLargestContactDepth();
+            }
+        }
+
+        PhysicsWorld physicsWorld = scene.getPhysicsWorld();
+        if (!scene.isSettled()) {
+            throw new RuntimeException("The stack has not settled in " + MAX_STEPS + " steps");
+        }
+        if (largestDepth > physicsWorld.penetrationSlop + 1e-6) {
+            throw new RuntimeException("The stack settled with a contact depth of " + largestDepth);
+        }
+        if (!scene.isInOrder()) {
+            throw new RuntimeException("The crates are not in the order they were dropped in");
+        }
+        System.out.println("The stack settled in " + step + " steps, largest contact depth " + largestDepth);
+    }
+}
@@ -3,6 +3,7 @@ package ecs.sandbox.behavior;
 import ecs.engine.component.CircleCollider;
 import ecs.engine.component.EntityBehavior;
 import ecs.engine.component.PhysicsHandler;
+import java.util.Random;
 import javafx.geometry.Point2D;
 
 public class BouncerBehavior extends EntityBehavior {
@@ -56,7 +57,8 @@ public class BouncerBehavior extends EntityBehavior {
     // Reset the position if the circle is out of bounds
     if (transform.position.getY() > sceneHeight + collider.getRadiusY()) {
       transform.position = new Point2D(sceneWidth / 2, - collider.getRadiusY());
-      physicsHandler.velocity = new Point2D(Math.random() * 1000 - 500, Math.random() * 1000 - 500);
+      Random random = gameObject.getScene().getRandom();
+      physicsHandler.velocity = new Point2D(random.nextDouble() * 1000 - 500, random.nextDouble() * 1000 - 500);
     }
   }
 }
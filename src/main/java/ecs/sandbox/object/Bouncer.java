@@ -6,6 +6,7 @@ import ecs.engine.component.PhysicsHandler;
 import ecs.engine.component.RenderHandler;
 import ecs.engine.tag.ObjectTag;
 import ecs.sandbox.behavior.BouncerBehavior;
+import java.util.Random;
 import javafx.geometry.Point2D;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
@@ -32,11 +33,12 @@ public class Bouncer extends GameObject {
     transform.position = new Point2D(50 * getScene().uW, 50 * getScene().uH);
     transform.scale = new Point2D(0.35, 0.35);
 
+    Random random = getScene().getRandom();
     renderHandler.setImage(new Circle(5 * getScene().uW, Color.WHITE));
-    Color color = Color.color(Math.random(), Math.random(), Math.random());
+    Color color = Color.color(random.nextDouble(), random.nextDouble(), random.nextDouble());
     ((Circle) renderHandler.getImage()).setFill(color);
 
-    physicsHandler.velocity = new Point2D(Math.random() * 1000 - 500, Math.random() * 1000 - 500);
+    physicsHandler.velocity = new Point2D(random.nextDouble() * 1000 - 500, random.nextDouble() * 1000 - 500);
     physicsHandler.applyGravity = true;
     physicsHandler.applyAirResistance = true;
 
@@ -0,0 +1,38 @@
+package ecs.sandbox.object;
+
+import ecs.engine.base.GameObject;
+import ecs.engine.component.BoxCollider;
+import ecs.engine.component.PhysicsHandler;
+import ecs.engine.component.RenderHandler;
+import ecs.engine.tag.ObjectTag;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+public class Crate extends GameObject {
+
+  // The width and height of the crate
+  public static final double SIZE = 20;
+
+  @Override
+  public ObjectTag OBJECT_TAG() {
+    return ObjectTag.ITEM;
+  }
+
+  // The position is set by the scene that stacks the crates
+  @Override
+  public void init() {
+    // Attach the components
+    RenderHandler renderHandler = attachComponent(RenderHandler.class);
+    BoxCollider collider = attachComponent(BoxCollider.class);
+    PhysicsHandler physicsHandler = attachComponent(PhysicsHandler.class);
+
+    // Configure the components' settings
+    renderHandler.setImage(new Rectangle(SIZE, SIZE, Color.BURLYWOOD));
+
+    physicsHandler.applyGravity = true;
+    physicsHandler.restitution = 0;
+
+    collider.setShape(new Rectangle(SIZE, SIZE));
+    collider.canCollideSameTag = true;
+  }
+}
@@ -0,0 +1,38 @@
+package ecs.sandbox.object;
+
+import ecs.engine.base.GameObject;
+import ecs.engine.component.BoxCollider;
+import ecs.engine.component.RenderHandler;
+import ecs.engine.tag.ObjectTag;
+import javafx.geometry.Point2D;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+public class Ground extends GameObject {
+
+  // The width and height of the ground
+  public static final double WIDTH = 400;
+  public static final double HEIGHT = 20;
+
+  @Override
+  public ObjectTag OBJECT_TAG() {
+    return ObjectTag.GROUND;
+  }
+
+  // The ground has no physics handler, so its collider is baked into the static BVH
+  @Override
+  public void init() {
+    // The position is set before the shape, so the collider is baked in place
+    transform.position = new Point2D(50 * getScene().uW, 80 * getScene().uH);
+
+    // Attach the components
+    RenderHandler renderHandler = attachComponent(RenderHandler.class);
+    BoxCollider collider = attachComponent(BoxCollider.class);
+
+    // Configure the components' settings
+    renderHandler.setImage(new Rectangle(WIDTH, HEIGHT, Color.DIMGRAY));
+    renderHandler.isStatic = true;
+
+    collider.setShape(new Rectangle(WIDTH, HEIGHT));
+  }
+}
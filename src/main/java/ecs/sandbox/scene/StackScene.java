@@ -0,0 +1,79 @@
+package ecs.sandbox.scene;
+
+import ecs.engine.base.GameScene;
+import ecs.engine.component.PhysicsHandler;
+import ecs.engine.physics.Contact;
+import ecs.sandbox.object.Crate;
+import ecs.sandbox.object.Ground;
+import java.util.ArrayList;
+import javafx.geometry.Point2D;
+
+/**
+ * The scene that drops a stack of crates on the ground, to check that the contact solver stacks them.
+ */
+public class StackScene extends GameScene {
+
+  // The number of the crates in the stack
+  public static final int CRATE_COUNT = 5;
+
+  // Store the game objects
+  private Ground ground;
+  private final ArrayList<Crate> crates = new ArrayList<>();
+
+  // Ths is used for setting up the game objects in the scene
+  @Override
+  public void setUp() {
+    ground = instantiateObject(Ground.class);
+
+    // The crates are dropped from a little above each other, the lowest one first
+    for (int i = 0; i < CRATE_COUNT; i++) {
+      Crate crate = instantiateObject(Crate.class);
+      crate.transform.position = ground.transform.position.subtract(0, (Ground.HEIGHT + Crate.SIZE) / 2 + 10
+          + i * (Crate.SIZE + 5));
+      crates.add(crate);
+    }
+  }
+
+  // This is called every frame to update the interactions between the objects
+  @Override
+  public void interact() {
+    // Do nothing
+  }
+
+  /**
+   * Get the largest penetration depth of the contacts solved in the last fixed step.
+   */
+  public double getLargestContactDepth() {
+    double largestDepth = 0;
+    for (Contact contact : getPhysicsWorld().getContacts()) {
+      largestDepth = Math.max(largestDepth, contact.depth);
+    }
+    return largestDepth;
+  }
+
+  /**
+   * Check if all the crates have fallen asleep.
+   */
+  public boolean isSettled() {
+    for (Crate crate : crates) {
+      if (!crate.getComponent(PhysicsHandler.class).isSleeping()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if the crates are still stacked in the order they were dropped in, each one above the previous one.
+   */
+  public boolean isInOrder() {
+    Point2D below = ground.transform.position;
+    for (Crate crate : crates) {
+      if (crate.transform.position.getY() >= below.getY()) {
+        return false;
+      }
+      below = crate.transform.position;
+    }
+    return true;
+  }
+}